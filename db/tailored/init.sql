@@ -1,3 +1,4 @@
+-- postgres schema. SqlDialect.TABLES / INDEXES repeat it for the in-process engines, change both together
 CREATE TABLE nodes (
 	  id               BIGINT PRIMARY KEY,
 	  age              INTEGER,
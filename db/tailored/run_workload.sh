@@ -2,7 +2,7 @@
 set -euo pipefail
 
 COMMAND="$1"
-DBMS="$2"
+DBMS="${2-}"
 WORKLOAD="${3-}"
 DEPTH=${4:-1}
 
@@ -17,12 +17,26 @@ OUT_DIR="/results/${DBMS}/workload-${WORKLOAD}"
 NODES_PATH="$BASE_DIR/dataset/nodes.txt"
 EDGES_PATH="$BASE_DIR/dataset/edges.txt"
 
-OPERATIONS=100000
-THREADS=8
+# defaults of run and sweep, the bench command takes everything from its definition file
+OPERATIONS=${OPERATIONS:-100000}
+THREADS=${THREADS:-8}
 
 case "$COMMAND" in
 	load)
-		exec java -jar "${JAR_PATH}" load "${DBMS}" "${NODES_PATH}" "${EDGES_PATH}"
+		# run_workload.sh load <dbms> [--mode=resume] [--batch-size=N]
+		exec java -jar "${JAR_PATH}" load "${DBMS}" "${NODES_PATH}" "${EDGES_PATH}" "${@:3}"
+		;;
+	delta)
+		# run_workload.sh delta <dbms> <nodes_delta|-> <edges_delta|-> [--batch-size=N]
+		exec java -jar "${JAR_PATH}" load "${DBMS}" "${3:--}" "${4:--}" --mode=delta "${@:5}"
+		;;
+	generate)
+		# run_workload.sh generate <nodes_output> <edges_output> [--model=rmat|ba|lfr] [--scale=N] ...
+		exec java -jar "${JAR_PATH}" generate "${@:2}"
+		;;
+	schema)
+		# run_workload.sh schema postgres <profile,...> [--partitions=N]
+		exec java -jar "${JAR_PATH}" schema "${DBMS}" "${WORKLOAD}" "${@:4}"
 		;;
 	run)
 		if [[ -z "${WORKLOAD}" ]]; then
@@ -47,8 +61,22 @@ case "$COMMAND" in
         "${DEPTH}" "${OPERATIONS}" "${THREADS}" "${OUT_FILE}"
     done
 		;;
+	sweep)
+		# run_workload.sh sweep <dbms,...> <workload,...> <depth,...> <threads,...> [--warmup=N] [--repetitions=N]
+		mkdir -p /results/sweep
+		shift
+		exec java -jar "${JAR_PATH}" sweep "$1" "$2" "$3" "$4" "${OPERATIONS}" \
+			"/results/sweep/sweep-${TIMESTAMP}.csv" "${@:5}"
+		;;
+	bench)
+		# run_workload.sh bench [definition_file] [--key=value overrides]
+		DEFINITION="${2:-$BASE_DIR/benchmark.properties}"
+		OUT_DIR="/results/bench/bench-${TIMESTAMP}"
+		mkdir -p "${OUT_DIR}"
+		exec java -jar "${JAR_PATH}" bench "${DEFINITION}" "${OUT_DIR}" "${@:3}"
+		;;
 		*)
-			echo "Unknown command '${COMMAND}'. Expected 'load' or 'run'." >&2
+			echo "Unknown command '${COMMAND}'. Expected 'load', 'delta', 'generate', 'schema', 'run', 'sweep' or 'bench'." >&2
 			exit 1
 		;;
 esac
@@ -3,6 +3,7 @@ package tailored;
 import reactor.util.annotation.Nullable;
 
 import java.nio.file.Path;
+import java.util.Map;
 
 public record BenchmarkConfig (
     Dbms dbms,
@@ -11,12 +12,14 @@ public record BenchmarkConfig (
     int operations,
     int threads,
     @Nullable Path outputPath,
-    @Nullable String pgUrl,
+    @Nullable String pgUrl, // jdbc url of every sql dbms, not just postgres
     @Nullable String pgUser,
     @Nullable String pgPassword,
     @Nullable String neo4jUri,
     @Nullable String neo4jUser,
-    @Nullable String neo4jPassword
+    @Nullable String neo4jPassword,
+    @Nullable Path neo4jStore, // NEO4J_EMBEDDED only
+    Map<String, String> options // free-form --key=value arguments
 ) {
     public static BenchmarkConfig create(Dbms dbms,
                            WorkloadType type,
@@ -24,6 +27,17 @@ public record BenchmarkConfig (
                            int operations,
                            int threads,
                            Path outputPath) {
+        return create(dbms, type, depth, operations, threads, outputPath, Map.of());
+    }
+
+    public static BenchmarkConfig create(Dbms dbms,
+                           WorkloadType type,
+                           int depth,
+                           int operations,
+                           int threads,
+                           Path outputPath,
+                           Map<String, String> options) {
+        DriverTuning.validate(dbms, options);
 
         String pgUri = System.getenv("PG_URI");
         String pgUser = System.getenv("PG_USER");
@@ -40,7 +54,7 @@ public record BenchmarkConfig (
 
             return new BenchmarkConfig(dbms, type, depth, operations, threads, outputPath,
                     pgUri, pgUser, pgPass,
-                    null, null, null);
+                    null, null, null, null, options);
         } else if (dbms == Dbms.NEO4J) {
             if (neoUri == null || neoUser == null || neoPass == null) {
                 throw new IllegalStateException("environment variables missing");
@@ -48,9 +62,50 @@ public record BenchmarkConfig (
 
             return new BenchmarkConfig(dbms, type, depth, operations, threads, outputPath,
                     null, null, null,
-                    neoUri, neoUser, neoPass);
+                    neoUri, neoUser, neoPass, null, options);
+        } else if (dbms == Dbms.NEO4J_EMBEDDED) {
+            String store = System.getenv("NEO4J_STORE");
+
+            return new BenchmarkConfig(dbms, type, depth, operations, threads, outputPath,
+                    null, null, null,
+                    null, null, null, Path.of(store == null ? "neo4j-store" : store), options);
+        } else if (dbms.sql() && dbms.dialect().embedded()) {
+            // in-process engine on the file at SQL_STORE, no credentials
+            String store = System.getenv("SQL_STORE");
+            Path storePath = Path.of(store == null ? dbms.name().toLowerCase() + "-store.db" : store);
+
+            return new BenchmarkConfig(dbms, type, depth, operations, threads, outputPath,
+                    dbms.dialect().jdbcUrl(storePath), null, null,
+                    null, null, null, null, options);
         } else {
             throw new IllegalStateException("unknown Dbms type");
         }
     }
-}
\ No newline at end of file
+
+    // same connection settings, different cell of a sweep
+    public BenchmarkConfig withRun(WorkloadType type, int depth, int threads) {
+        return new BenchmarkConfig(dbms, type, depth, operations, threads, outputPath,
+                pgUrl, pgUser, pgPassword,
+                neo4jUri, neo4jUser, neo4jPassword, neo4jStore, options);
+    }
+
+    // same settings, sized for another number of operations
+    public BenchmarkConfig withOperations(int operations) {
+        return new BenchmarkConfig(dbms, workloadType, depth, operations, threads, outputPath,
+                pgUrl, pgUser, pgPassword,
+                neo4jUri, neo4jUser, neo4jPassword, neo4jStore, options);
+    }
+
+    public String option(String name, String defaultValue) {
+        return options.getOrDefault(name, defaultValue);
+    }
+
+    public int intOption(String name, int defaultValue) {
+        String v = options.get(name);
+        return v == null ? defaultValue : Integer.parseInt(v);
+    }
+
+    public boolean boolOption(String name) {
+        return Boolean.parseBoolean(options.getOrDefault(name, "false"));
+    }
+}
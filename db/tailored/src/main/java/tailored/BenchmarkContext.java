@@ -3,11 +3,19 @@
 package tailored;
 
 import org.neo4j.driver.Driver;
+import org.neo4j.driver.Result;
 import org.neo4j.driver.Session;
+import org.neo4j.driver.SimpleQueryRunner;
+import org.neo4j.driver.TransactionConfig;
+import org.neo4j.configuration.GraphDatabaseSettings;
+import org.neo4j.dbms.api.DatabaseManagementService;
+import org.neo4j.graphdb.GraphDatabaseService;
 import reactor.util.annotation.Nullable;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Map;
 import java.util.Random;
 
 public final class BenchmarkContext implements AutoCloseable {
@@ -15,25 +23,94 @@ public final class BenchmarkContext implements AutoCloseable {
     @Nullable public final Connection pgConn;
     @Nullable public final Driver neoDriver;
     @Nullable public final Session neoSession;
+    @Nullable public final GraphDatabaseService neoDb; // NEO4J_EMBEDDED, thread safe and shared by all threads
     public final ThreadLocal<Random> random;
+    public final OperationRecorder recorder;
+    public final TransactionConfig neoTxConfig; // carries --timeout-ms, pass it to every measured session.run
+    private final boolean ownsConnection; // pgConn / neoSession
+    private final boolean ownsDriver;     // neoDriver / the embedded database
+    @Nullable private final DatabaseManagementService neoDbms;
+    private SimpleQueryRunner neoTx; // open explicit / managed transaction of this thread, see TransactionFrame
 
     public BenchmarkContext(BenchmarkConfig config, Connection pgConn, Driver neoDriver, Session neoSession) {
+        this(config, pgConn, neoDriver, neoSession, null, true, true);
+    }
+
+    private BenchmarkContext(BenchmarkConfig config, Connection pgConn, Driver neoDriver, Session neoSession,
+                             DatabaseManagementService neoDbms, boolean ownsConnection, boolean ownsDriver) {
+        this(config, pgConn, neoDriver, neoSession, neoDbms, ownsConnection, ownsDriver, new OperationRecorder());
+    }
+
+    private BenchmarkContext(BenchmarkConfig config, Connection pgConn, Driver neoDriver, Session neoSession,
+                             DatabaseManagementService neoDbms, boolean ownsConnection, boolean ownsDriver,
+                             OperationRecorder recorder) {
         this.config = config;
         this.pgConn = pgConn;
         this.neoDriver = neoDriver;
         this.neoSession = neoSession;
+        this.neoDbms = neoDbms;
+        this.neoDb = neoDbms == null ? null : neoDbms.database(GraphDatabaseSettings.DEFAULT_DATABASE_NAME);
         this.random = ThreadLocal.withInitial(() -> new Random(123));
+        this.recorder = recorder;
+        int timeoutMs = config.intOption("timeout-ms", 0);
+        this.neoTxConfig = timeoutMs > 0
+                ? TransactionConfig.builder().withTimeout(Duration.ofMillis(timeoutMs)).build()
+                : TransactionConfig.empty();
+        this.ownsConnection = ownsConnection;
+        this.ownsDriver = ownsDriver;
+    }
+
+    // context for a worker thread: owns its own connection / session, shares the neo4j driver
+    public static BenchmarkContext forThread(BenchmarkConfig config, Connection pgConn, Driver neoDriver, Session neoSession) {
+        return new BenchmarkContext(config, pgConn, neoDriver, neoSession, null, true, false);
+    }
+
+    // context owning an embedded database, shutting it down on close
+    public static BenchmarkContext embedded(BenchmarkConfig config, DatabaseManagementService neoDbms) {
+        return new BenchmarkContext(config, null, null, null, neoDbms, false, true);
+    }
+
+    // same connections under a different config, closing the view leaves the connections open
+    public BenchmarkContext withConfig(BenchmarkConfig config) {
+        return new BenchmarkContext(config, pgConn, neoDriver, neoSession, neoDbms, false, false);
+    }
+
+    // this thread's connections, recorder and open transaction under another config, for the operations of a
+    // replayed trace that differ from the run's workload type or depth. Only valid for the current operation
+    BenchmarkContext view(BenchmarkConfig config) {
+        BenchmarkContext view = new BenchmarkContext(config, pgConn, neoDriver, neoSession, neoDbms, false, false, recorder);
+        view.neoTx = neoTx;
+        return view;
+    }
+
+    // measured neo4j queries go through here, so they run in the transaction the --tx-mode opened
+    public Result neoRun(String cypher, Map<String, Object> params) {
+        if (neoTx != null) {
+            return neoTx.run(cypher, params);
+        }
+        assert neoSession != null;
+        return neoSession.run(cypher, params, neoTxConfig);
+    }
+
+    void bindTransaction(SimpleQueryRunner tx) {
+        this.neoTx = tx;
     }
 
     @Override
     public void close() throws Exception {
-        if (pgConn != null)
-            try {
-                pgConn.close();
-            } catch (SQLException e) {
-                throw new RuntimeException("Failed to close PostgreSQL connection", e);
-            }
-        else if (neoDriver != null)
+        if (ownsConnection) {
+            if (pgConn != null)
+                try {
+                    pgConn.close();
+                } catch (SQLException e) {
+                    throw new RuntimeException("Failed to close PostgreSQL connection", e);
+                }
+            if (neoSession != null)
+                neoSession.close();
+        }
+        if (ownsDriver && neoDriver != null)
             neoDriver.close();
+        if (ownsDriver && neoDbms != null)
+            neoDbms.shutdown();
     }
 }
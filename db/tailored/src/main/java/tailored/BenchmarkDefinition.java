@@ -0,0 +1,165 @@
+package tailored;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+// a benchmark described in a properties file (bench command), so a tuning experiment is one file instead of a
+// command line. Every combination of dbms x workload x depth x threads is run like a sweep:
+//   dbms=postgres,neo4j          required
+//   workloads=fof,reciprocal     required
+//   depths=1,2,3                 default 1
+//   threads=1,8                  default 1
+//   operations=100000            required, per measured run
+//   warmup=1                     unmeasured runs per combination
+//   repetitions=3                measured runs per combination
+//   rate=0                       load shape, 0 = closed loop, otherwise open loop at rate ops/sec
+// every other key is an option of the run command without the leading --, e.g. key-distribution=zipf,
+// tx-mode=read-only or the driver settings of DriverTuning. Options on the command line override the file.
+// Every option goes to every dbms, so like on the command line a driver setting is refused unless all the
+// listed dbms use it: tune postgres and neo4j in a definition each
+public record BenchmarkDefinition(
+    Path source,
+    List<Dbms> dbmss,
+    List<WorkloadType> workloadTypes,
+    List<Integer> depths,
+    List<Integer> threadCounts,
+    int operations,
+    int warmups,
+    int repetitions,
+    double rate,
+    Map<String, String> options
+) {
+    private static final List<String> KEYS =
+            List.of("dbms", "workloads", "depths", "threads", "operations", "warmup", "repetitions", "rate");
+
+    public static BenchmarkDefinition read(Path path, Map<String, String> overrides) throws IOException {
+        Properties props = new Properties();
+        try (Reader r = Files.newBufferedReader(path)) {
+            props.load(r);
+        }
+        Map<String, String> settings = new HashMap<>();
+        for (String key : props.stringPropertyNames()) {
+            settings.put(key, props.getProperty(key).trim());
+        }
+        settings.putAll(overrides);
+
+        Map<String, String> options = new HashMap<>(settings);
+        KEYS.forEach(options::remove);
+
+        try {
+            BenchmarkDefinition def = new BenchmarkDefinition(path,
+                    list(settings, "dbms", null, s -> Dbms.valueOf(s.toUpperCase().replace('-', '_'))),
+                    list(settings, "workloads", null, s -> WorkloadType.valueOf(s.toUpperCase())),
+                    list(settings, "depths", "1", Integer::parseInt),
+                    list(settings, "threads", "1", Integer::parseInt),
+                    Integer.parseInt(required(settings, "operations")),
+                    Integer.parseInt(settings.getOrDefault("warmup", "1")),
+                    Integer.parseInt(settings.getOrDefault("repetitions", "3")),
+                    Double.parseDouble(settings.getOrDefault("rate", "0")),
+                    options);
+            def.validate();
+            return def;
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid benchmark definition " + path + ": " + e.getMessage(), e);
+        }
+    }
+
+    // the settings as they were run, defaults included. Reading the file again repeats the benchmark
+    public void write(Path path) throws IOException {
+        Map<String, String> settings = new TreeMap<>(options);
+        try (BufferedWriter w = Files.newBufferedWriter(path)) {
+            w.write("# resolved from " + source);
+            w.newLine();
+            w.write("dbms=" + join(dbmss));
+            w.newLine();
+            w.write("workloads=" + join(workloadTypes));
+            w.newLine();
+            w.write("depths=" + join(depths));
+            w.newLine();
+            w.write("threads=" + join(threadCounts));
+            w.newLine();
+            w.write("operations=" + operations);
+            w.newLine();
+            w.write("warmup=" + warmups);
+            w.newLine();
+            w.write("repetitions=" + repetitions);
+            w.newLine();
+            w.write("rate=" + rate);
+            w.newLine();
+            for (Map.Entry<String, String> e : settings.entrySet()) {
+                w.write(e.getKey() + "=" + e.getValue());
+                w.newLine();
+            }
+        }
+    }
+
+    // everything that can be checked without a connection, before the first run
+    private void validate() {
+        if (operations <= 0 || warmups < 0 || repetitions <= 0 || rate < 0) {
+            throw new IllegalArgumentException("operations and repetitions must be positive, warmup and rate not negative");
+        }
+        if (depths.stream().anyMatch(d -> d < 1) || threadCounts.stream().anyMatch(t -> t < 1)) {
+            throw new IllegalArgumentException("depths and threads must be at least 1");
+        }
+        for (Dbms dbms : dbmss) {
+            DriverTuning.validate(dbms, runOptions());
+        }
+        String distribution = options.getOrDefault("key-distribution", "uniform");
+        if (!distribution.equalsIgnoreCase("uniform") && !distribution.equalsIgnoreCase("zipf")) {
+            throw new IllegalArgumentException("unknown key-distribution " + distribution + ", expected uniform or zipf");
+        }
+        // the analytical workloads have no node ids to skew, KeyDistribution would only refuse them mid-benchmark
+        List<WorkloadType> analytical = workloadTypes.stream().filter(WorkloadType::analytical).toList();
+        if (distribution.equalsIgnoreCase("zipf") && !analytical.isEmpty()) {
+            throw new IllegalArgumentException("key-distribution=zipf needs workloads that run on node ids, not " + join(analytical));
+        }
+        if (Double.parseDouble(options.getOrDefault("zipf-exponent", "1.0")) <= 0) {
+            throw new IllegalArgumentException("zipf-exponent must be positive");
+        }
+    }
+
+    // the options every run gets, the definition's plus where it came from
+    public Map<String, String> runOptions() {
+        Map<String, String> own = new HashMap<>(options);
+        own.put("definition", source.toString());
+        return own;
+    }
+
+    private static String required(Map<String, String> settings, String key) {
+        String value = settings.get(key);
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException("missing " + key);
+        }
+        return value;
+    }
+
+    private static <T> List<T> list(Map<String, String> settings, String key, String defaultValue, Function<String, T> parse) {
+        String value = defaultValue == null ? required(settings, key) : settings.getOrDefault(key, defaultValue);
+        List<T> values = new ArrayList<>();
+        for (String s : value.split(",")) {
+            try {
+                values.add(parse.apply(s.trim()));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("invalid " + key + " value " + s.trim()
+                        + (key.equals("dbms") ? ", expected one of " + Arrays.toString(Dbms.values()) : "")
+                        + (key.equals("workloads") ? ", expected one of " + Arrays.toString(WorkloadType.values()) : ""));
+            }
+        }
+        return List.copyOf(values);
+    }
+
+    private static String join(List<?> values) {
+        return String.join(",", values.stream().map(v -> v.toString().toLowerCase()).toList());
+    }
+}
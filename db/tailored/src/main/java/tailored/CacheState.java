@@ -0,0 +1,253 @@
+package tailored;
+
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.QueryConfig;
+import org.neo4j.driver.Record;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.io.pagecache.monitoring.PageCacheCounters;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// state of the buffer pool / page cache a run starts from (--cache-state), applied right before the measurement:
+//   cold   drop what the client can reach: DISCARD PLANS on every worker connection (plus pg_buffercache_evict on
+//          postgres 17), the neo4j query caches. --restart-cmd=<shell> restarts a local server before connecting,
+//          it has to block until the server accepts connections again
+//   warm   pg_prewarm of nodes, edges and their indexes, apoc.warmup.run (or a full scan) on neo4j
+//   as-is  whatever the previous run or load left behind
+// the state and the buffer hit ratio of the run's own lookups end up in the result as CACHESTATE lines. The
+// counters are cumulative, so the ratio is the difference over the run: a lifetime ratio reads the same after
+// a cold and a warm start
+public enum CacheState {
+    COLD, WARM, AS_IS;
+
+    private static final String NEO_SCAN_CYPHER =
+            "MATCH (p:Person) OPTIONAL MATCH (p)-[r:FRIENDS_WITH]->() RETURN count(p.id) AS nodes, count(r) AS rels";
+
+    private static boolean restarted;
+
+    public static CacheState parse(String name) {
+        return valueOf(name.toUpperCase().replace('-', '_'));
+    }
+
+    public static CacheState of(BenchmarkConfig config) {
+        return parse(config.option("cache-state", "as-is"));
+    }
+
+    // runs --restart-cmd once per process, before the first connection of a cold run
+    static synchronized void restartIfCold(BenchmarkConfig config) throws Exception {
+        String cmd = config.option("restart-cmd", null);
+        if (restarted || cmd == null || of(config) != COLD) {
+            return;
+        }
+        restarted = true;
+
+        System.out.println("Restarting the server: " + cmd);
+        Process process = new ProcessBuilder("sh", "-c", cmd).inheritIO().start();
+        if (!process.waitFor(5, TimeUnit.MINUTES)) {
+            process.destroyForcibly();
+            throw new IllegalStateException("--restart-cmd did not finish within 5 minutes");
+        }
+        if (process.exitValue() != 0) {
+            throw new IllegalStateException("--restart-cmd exited with " + process.exitValue());
+        }
+    }
+
+    // brings the caches into the chosen state and describes it, call right before the measurement starts
+    static Map<String, String> prepare(List<BenchmarkContext> threadCtxs) {
+        BenchmarkContext ctx = threadCtxs.get(0);
+        CacheState state = of(ctx.config);
+        Dbms dbms = ctx.config.dbms();
+
+        String action;
+        try {
+            action = switch (state) {
+                case AS_IS -> "none";
+                case COLD -> cold(dbms, threadCtxs);
+                case WARM -> warm(dbms, ctx);
+            };
+        } catch (Exception e) {
+            System.err.println("Could not bring the caches into state " + state + ": " + e.getMessage());
+            action = "failed";
+        }
+
+        Map<String, String> lines = new LinkedHashMap<>();
+        lines.put("CACHESTATE State", state.name());
+        lines.put("CACHESTATE Action", action);
+        return lines;
+    }
+
+    // hit ratio of the buffer lookups between two counters() snapshots, nothing where there are no counters
+    static Map<String, String> describe(long[] before, long[] after) {
+        if (before == null || after == null) {
+            return Map.of();
+        }
+        long hits = after[0] - before[0];
+        long lookups = after[1] - before[1];
+        Map<String, String> lines = new LinkedHashMap<>();
+        lines.put("CACHESTATE BufferHitRatio", ratio(hits, lookups));
+        lines.put("CACHESTATE BufferLookups", String.valueOf(lookups));
+        return lines;
+    }
+
+    private static String cold(Dbms dbms, List<BenchmarkContext> threadCtxs) throws SQLException {
+        BenchmarkContext ctx = threadCtxs.get(0);
+        return switch (dbms) {
+            case POSTGRES -> {
+                for (BenchmarkContext threadCtx : threadCtxs) {
+                    try (Statement st = threadCtx.pgConn.createStatement()) {
+                        // not DISCARD ALL, that also resets the session settings (statement_timeout, track_functions)
+                        // and drops the workloads' temp tables. Not DEALLOCATE ALL either, pgjdbc keeps using its
+                        // named statements. Shared buffers are only evicted by pg_buffercache_evict
+                        st.execute("DISCARD PLANS");
+                    }
+                }
+                long evicted = evictPostgres(ctx.pgConn);
+                yield evicted < 0 ? "discard plans" : "discard plans, evicted " + evicted + " buffers";
+            }
+            case NEO4J -> {
+                assert ctx.neoDriver != null;
+                run(ctx.neoDriver, "CALL db.clearQueryCaches()");
+                yield "cleared query caches";
+            }
+            case NEO4J_EMBEDDED -> {
+                assert ctx.neoDb != null;
+                ctx.neoDb.executeTransactionally("CALL db.clearQueryCaches()");
+                yield "cleared query caches";
+            }
+            case SQLITE -> {
+                for (BenchmarkContext threadCtx : threadCtxs) {
+                    try (Statement st = threadCtx.pgConn.createStatement()) {
+                        st.execute("PRAGMA shrink_memory");
+                    }
+                }
+                yield "shrink memory";
+            }
+            case DUCKDB, H2 -> "none"; // no client side way to drop their buffers short of reopening the file
+        };
+    }
+
+    // pg_buffercache_evict exists from postgres 17 on, -1 when it isn't available
+    private static long evictPostgres(Connection conn) {
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("""
+                     SELECT count(*) FILTER (WHERE pg_buffercache_evict(b.bufferid))
+                     FROM pg_buffercache b
+                     JOIN pg_class c ON c.relfilenode = b.relfilenode
+                     WHERE c.oid IN (SELECT unnest(ARRAY['nodes'::regclass, 'edges'::regclass])
+                                     UNION SELECT indexrelid FROM pg_index
+                                     WHERE indrelid IN ('nodes'::regclass, 'edges'::regclass))
+                     """)) {
+            rs.next();
+            return rs.getLong(1);
+        } catch (SQLException e) {
+            return -1;
+        }
+    }
+
+    private static String warm(Dbms dbms, BenchmarkContext ctx) throws SQLException {
+        return switch (dbms) {
+            case POSTGRES -> {
+                try (Statement st = ctx.pgConn.createStatement()) {
+                    st.execute("CREATE EXTENSION IF NOT EXISTS pg_prewarm");
+                    try (ResultSet rs = st.executeQuery("""
+                            SELECT COALESCE(SUM(pg_prewarm(rel)), 0)
+                            FROM (SELECT unnest(ARRAY['nodes'::regclass, 'edges'::regclass]) AS rel
+                                  UNION SELECT indexrelid FROM pg_index
+                                  WHERE indrelid IN ('nodes'::regclass, 'edges'::regclass)) r
+                            """)) {
+                        rs.next();
+                        yield "pg_prewarm " + rs.getLong(1) + " blocks";
+                    }
+                }
+            }
+            case NEO4J -> {
+                assert ctx.neoDriver != null;
+                try {
+                    run(ctx.neoDriver, "CALL apoc.warmup.run(true, true, true)");
+                    yield "apoc.warmup.run";
+                } catch (Exception e) {
+                    run(ctx.neoDriver, NEO_SCAN_CYPHER); // no apoc on the server
+                    yield "full scan";
+                }
+            }
+            case NEO4J_EMBEDDED -> {
+                assert ctx.neoDb != null;
+                ctx.neoDb.executeTransactionally(NEO_SCAN_CYPHER);
+                yield "full scan";
+            }
+            case DUCKDB, H2, SQLITE -> {
+                try (Statement st = ctx.pgConn.createStatement()) {
+                    st.executeQuery("SELECT COUNT(*), SUM(start_id), SUM(end_id) FROM edges").close();
+                    st.executeQuery("SELECT COUNT(*), SUM(age) FROM nodes").close();
+                }
+                yield "full scan";
+            }
+        };
+    }
+
+    // {hits, lookups} of the buffer pool / page cache so far, null where the engine doesn't expose its counters
+    static long[] counters(List<BenchmarkContext> threadCtxs) {
+        BenchmarkContext ctx = threadCtxs.get(0);
+        try {
+            return switch (ctx.config.dbms()) {
+                case POSTGRES -> {
+                    ServerStats.flush(threadCtxs); // the workers' counters, not only this connection's
+                    try (Statement st = ctx.pgConn.createStatement()) {
+                        st.execute("SELECT pg_stat_clear_snapshot()");
+                        try (ResultSet rs = st.executeQuery("""
+                                SELECT SUM(heap_blks_hit + COALESCE(idx_blks_hit, 0)),
+                                       SUM(heap_blks_read + heap_blks_hit + COALESCE(idx_blks_read, 0) + COALESCE(idx_blks_hit, 0))
+                                FROM pg_statio_user_tables
+                                WHERE relname IN ('nodes', 'edges')
+                                """)) {
+                            rs.next();
+                            yield new long[]{rs.getLong(1), rs.getLong(2)};
+                        }
+                    }
+                }
+                case NEO4J -> {
+                    assert ctx.neoDriver != null;
+                    List<Record> records = run(ctx.neoDriver,
+                            "CALL dbms.queryJmx('org.neo4j:*') YIELD name, attributes "
+                                    + "WHERE name CONTAINS 'Page cache' RETURN attributes.Hits.value AS hits, attributes.Faults.value AS faults");
+                    if (records.isEmpty()) {
+                        yield null;
+                    }
+                    long hits = records.get(0).get("hits").asLong(0);
+                    yield new long[]{hits, hits + records.get(0).get("faults").asLong(0)};
+                }
+                case NEO4J_EMBEDDED -> {
+                    assert ctx.neoDb != null;
+                    PageCacheCounters pageCache = pageCache(ctx.neoDb);
+                    yield new long[]{pageCache.hits(), pageCache.hits() + pageCache.faults()};
+                }
+                case DUCKDB, H2, SQLITE -> null;
+            };
+        } catch (Exception e) {
+            return null; // statistics views or jmx not accessible
+        }
+    }
+
+    private static PageCacheCounters pageCache(GraphDatabaseService db) {
+        return ((GraphDatabaseAPI) db).getDependencyResolver().resolveDependency(PageCacheCounters.class);
+    }
+
+    private static String ratio(long hits, long total) {
+        return total == 0 ? "n/a" : String.format("%.4f", (double) hits / total);
+    }
+
+    private static List<Record> run(Driver driver, String cypher) {
+        return driver.executableQuery(cypher)
+                .withConfig(QueryConfig.builder().withDatabase("neo4j").build())
+                .execute()
+                .records();
+    }
+}
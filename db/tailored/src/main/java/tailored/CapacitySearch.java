@@ -0,0 +1,134 @@
+// finds the highest offered load a dbms sustains while a latency percentile stays under an SLA
+
+package tailored;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public final class CapacitySearch {
+  private static final double KEEP_UP_RATIO = 0.95; // achieved / offered below this means saturation
+  private static final double RESOLUTION = 0.05;    // stop bisecting when bounds are within 5%
+  private static final int MAX_BISECTIONS = 8;
+
+  private final int percentile;
+  private final long slaUs;
+  private final double startOpsPerSec;
+  private final double stepSeconds;
+  private final double maxOpsPerSec; // the ramp stops here even if the SLA still holds
+
+  private final List<CapacityStep> steps = new ArrayList<>();
+  private boolean maxRateReached;
+
+  public CapacitySearch(int percentile, long slaUs, double startOpsPerSec, double stepSeconds, double maxOpsPerSec) {
+    if (percentile != 95 && percentile != 99) {
+      throw new IllegalArgumentException("Only the 95th and 99th percentile are supported, got " + percentile);
+    }
+    // the ramp doubles the rate, from 0 it would stay at 0, a closed loop run that always meets the SLA
+    if (startOpsPerSec <= 0) {
+      throw new IllegalArgumentException("--start-rate must be positive, got " + startOpsPerSec);
+    }
+    if (stepSeconds <= 0) {
+      throw new IllegalArgumentException("--step-seconds must be positive, got " + stepSeconds);
+    }
+    if (maxOpsPerSec < startOpsPerSec) {
+      throw new IllegalArgumentException("--max-rate must be at least the start rate " + startOpsPerSec);
+    }
+    this.percentile = percentile;
+    this.slaUs = slaUs;
+    this.startOpsPerSec = startOpsPerSec;
+    this.stepSeconds = stepSeconds;
+    this.maxOpsPerSec = maxOpsPerSec;
+  }
+
+  // returns the chosen operating point, or null if even the start rate violates the SLA
+  public CapacityStep search(Workload workload, List<BenchmarkContext> threadCtxs, int maxOperations) throws Exception {
+    steps.clear();
+    maxRateReached = false;
+
+    // ramp up by doubling until the SLA breaks, the system can't keep up any more or --max-rate is reached
+    CapacityStep good = null;
+    CapacityStep bad = null;
+    double rate = startOpsPerSec;
+    while (bad == null) {
+      CapacityStep step = measure(workload, threadCtxs, maxOperations, rate);
+      if (!step.withinSla() || !step.keepsUp()) {
+        bad = step;
+      } else if (rate >= maxOpsPerSec) {
+        maxRateReached = true;
+        return step; // the capacity is at least this, nothing left to bisect
+      } else {
+        good = step;
+        rate = Math.min(rate * 2, maxOpsPerSec);
+      }
+    }
+
+    if (good == null) {
+      return null;
+    }
+
+    // bisect between the last good and the first bad rate
+    for (int i = 0; i < MAX_BISECTIONS; i++) {
+      double lo = good.offeredOpsPerSec();
+      double hi = bad.offeredOpsPerSec();
+      if ((hi - lo) / lo < RESOLUTION) {
+        break;
+      }
+
+      CapacityStep step = measure(workload, threadCtxs, maxOperations, (lo + hi) / 2);
+      if (step.withinSla() && step.keepsUp()) {
+        good = step;
+      } else {
+        bad = step;
+      }
+    }
+
+    return good;
+  }
+
+  // every measured step in the order it was run, i.e. the capacity curve
+  public List<CapacityStep> steps() {
+    return steps;
+  }
+
+  // first step (by offered load) where throughput stopped following the offered load
+  public CapacityStep knee() {
+    return steps.stream()
+        .filter(s -> !s.keepsUp())
+        .min((a, b) -> Double.compare(a.offeredOpsPerSec(), b.offeredOpsPerSec()))
+        .orElse(null);
+  }
+
+  // true if the search stopped at --max-rate with the SLA still met, the real capacity is higher
+  public boolean maxRateReached() {
+    return maxRateReached;
+  }
+
+  public double maxOpsPerSec() {
+    return maxOpsPerSec;
+  }
+
+  public int percentile() {
+    return percentile;
+  }
+
+  public long slaUs() {
+    return slaUs;
+  }
+
+  private CapacityStep measure(Workload workload, List<BenchmarkContext> threadCtxs,
+                               int maxOperations, double rate) throws Exception {
+    int ops = (int) Math.min(maxOperations, Math.max(threadCtxs.size(), rate * stepSeconds));
+    System.out.printf("Capacity step: offered=%.1f ops/sec, ops=%d%n", rate, ops);
+
+    RunResult res = new WorkloadRunner(rate).run(workload, threadCtxs, ops);
+    long latencyUs = percentile == 95 ? res.p95LatencyUs() : res.p99LatencyUs();
+    boolean keepsUp = res.throughputOpsPerSec() >= KEEP_UP_RATIO * rate;
+    boolean withinSla = latencyUs <= slaUs && res.failedCount() == 0;
+
+    CapacityStep step = new CapacityStep(rate, res, latencyUs, keepsUp, withinSla);
+    steps.add(step);
+    System.out.printf("  achieved=%.1f ops/sec, p%d=%d us, %s%n", res.throughputOpsPerSec(), percentile, latencyUs,
+        withinSla && keepsUp ? "ok" : "violated");
+    return step;
+  }
+}
@@ -0,0 +1,10 @@
+package tailored;
+
+// one offered-load level tried by CapacitySearch
+public record CapacityStep(
+    double offeredOpsPerSec,
+    RunResult result,
+    long percentileLatencyUs,
+    boolean keepsUp,   // achieved throughput close to the offered load
+    boolean withinSla
+) {}
@@ -0,0 +1,120 @@
+package tailored;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// what the harness itself spends during the measurement, reported as OVERHEAD lines: cpu time and allocations of
+// the worker threads per operation, gc pauses and safepoints of the whole jvm. A saturated client queues operations
+// inside the harness and inflates the latencies, such a result gets an OVERHEAD Warning.
+// Safepoint time comes from a hotspot internal bean, exported to the harness by the jar's manifest
+final class ClientOverhead {
+  private static final double SATURATED = 0.9;
+  private static final com.sun.management.ThreadMXBean THREADS =
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+  private static final com.sun.management.OperatingSystemMXBean OS =
+      (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+  private static final Object HOTSPOT_RUNTIME;
+  private static final Method SAFEPOINT_TIME;
+
+  static {
+    Object runtime = null;
+    Method safepointTime = null;
+    try {
+      runtime = Class.forName("sun.management.ManagementFactoryHelper").getMethod("getHotspotRuntimeMBean").invoke(null);
+      safepointTime = Class.forName("sun.management.HotspotRuntimeMBean").getMethod("getTotalSafepointTime");
+      safepointTime.invoke(runtime);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      runtime = null; // not exported, e.g. started from an ide without --add-exports
+      safepointTime = null;
+    }
+    HOTSPOT_RUNTIME = runtime;
+    SAFEPOINT_TIME = safepointTime;
+  }
+
+  private final LongAdder workerCpuNs = new LongAdder();
+  private final LongAdder workerAllocatedBytes = new LongAdder();
+  private final long startNs;
+  private final long processCpuNs;
+  private final long gcMs;
+  private final long gcCount;
+  private final long safepointMs;
+
+  private ClientOverhead() {
+    this.startNs = System.nanoTime();
+    this.processCpuNs = OS.getProcessCpuTime();
+    this.gcMs = gcTotal(true);
+    this.gcCount = gcTotal(false);
+    this.safepointMs = safepointMs();
+  }
+
+  static ClientOverhead start() {
+    return new ClientOverhead();
+  }
+
+  // by every worker before its first operation, the counters of the calling thread
+  long[] threadStart() {
+    return new long[]{THREADS.getCurrentThreadCpuTime(), THREADS.getCurrentThreadAllocatedBytes()};
+  }
+
+  // by every worker after its last operation
+  void threadEnd(long[] start) {
+    workerCpuNs.add(THREADS.getCurrentThreadCpuTime() - start[0]);
+    workerAllocatedBytes.add(THREADS.getCurrentThreadAllocatedBytes() - start[1]);
+  }
+
+  Map<String, String> describe(int operations, int threads, Dbms dbms) {
+    long wallNs = Math.max(1, System.nanoTime() - startNs);
+    int ops = Math.max(1, operations);
+    double workerUtilisation = workerCpuNs.sum() / ((double) wallNs * threads);
+    double processUtilisation = (OS.getProcessCpuTime() - processCpuNs)
+        / ((double) wallNs * Runtime.getRuntime().availableProcessors());
+    long safepoint = safepointMs();
+
+    Map<String, String> lines = new LinkedHashMap<>();
+    lines.put("OVERHEAD ClientCpuPerOp(us)", String.format("%.2f", workerCpuNs.sum() / 1000.0 / ops));
+    lines.put("OVERHEAD AllocatedPerOp(bytes)", String.valueOf(workerAllocatedBytes.sum() / ops));
+    lines.put("OVERHEAD WorkerCpu(%)", String.format("%.1f", 100 * workerUtilisation));
+    lines.put("OVERHEAD ProcessCpu(%)", String.format("%.1f", 100 * processUtilisation));
+    lines.put("OVERHEAD GcCount", String.valueOf(gcTotal(false) - gcCount));
+    lines.put("OVERHEAD GcPause(%)", String.format("%.2f", (gcTotal(true) - gcMs) * 1e8 / wallNs));
+    if (safepoint >= 0) {
+      lines.put("OVERHEAD Safepoint(%)", String.format("%.2f", (safepoint - safepointMs) * 1e8 / wallNs));
+    }
+
+    // the in-process engines execute the operations on the worker threads, busy workers are expected there
+    boolean inProcess = dbms == Dbms.NEO4J_EMBEDDED || (dbms.sql() && dbms.dialect().embedded());
+    if (processUtilisation >= SATURATED) {
+      lines.put("OVERHEAD Warning", "the harness process used " + Math.round(100 * processUtilisation)
+          + "% of all cores, the client may be the bottleneck");
+    } else if (!inProcess && workerUtilisation >= SATURATED) {
+      lines.put("OVERHEAD Warning", "the worker threads were on cpu " + Math.round(100 * workerUtilisation)
+          + "% of the time instead of waiting for the database, the client may be the bottleneck");
+    }
+    return lines;
+  }
+
+  // collection time in ms or number of collections over all collectors
+  private static long gcTotal(boolean time) {
+    long total = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      total += Math.max(0, time ? gc.getCollectionTime() : gc.getCollectionCount());
+    }
+    return total;
+  }
+
+  // -1 if the hotspot bean isn't accessible
+  private static long safepointMs() {
+    if (SAFEPOINT_TIME == null) {
+      return -1;
+    }
+    try {
+      return (Long) SAFEPOINT_TIME.invoke(HOTSPOT_RUNTIME);
+    } catch (ReflectiveOperationException e) {
+      return -1;
+    }
+  }
+}
@@ -2,30 +2,35 @@
 
 package tailored;
 
+import org.neo4j.configuration.GraphDatabaseSettings;
+import org.neo4j.dbms.api.DatabaseManagementService;
+import org.neo4j.dbms.api.DatabaseManagementServiceBuilder;
 import org.neo4j.driver.*;
+import org.neo4j.io.ByteUnit;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.sql.Statement;
 
 public final class ConnectionFactory {
   private ConnectionFactory() {
   }
 
   public static BenchmarkContext openContext(BenchmarkConfig config) throws Exception {
+    CacheState.restartIfCold(config);
     return switch (config.dbms()) {
-      case POSTGRES -> openPostgresContext(config);
+      case POSTGRES, DUCKDB, H2, SQLITE -> openSqlContext(config);
       case NEO4J -> openNeo4jContext(config);
+      case NEO4J_EMBEDDED -> openEmbeddedContext(config);
     };
   }
 
-  private static BenchmarkContext openPostgresContext(BenchmarkConfig config) throws Exception {
-    if (config.dbms() != Dbms.POSTGRES) {
+  private static BenchmarkContext openSqlContext(BenchmarkConfig config) throws Exception {
+    if (!config.dbms().sql()) {
       throw new IllegalStateException();
     }
 
-    assert config.pgUrl() != null;
-    Connection conn = DriverManager.getConnection(config.pgUrl(), config.pgUser(), config.pgPassword());
+    Connection conn = SqlDialect.connect(config);
 
     return new BenchmarkContext(config, conn, null, null);
   }
@@ -40,7 +45,8 @@ public final class ConnectionFactory {
     try {
       assert config.neo4jUser() != null;
       assert config.neo4jPassword() != null;
-      driver = GraphDatabase.driver(config.neo4jUri(), AuthTokens.basic(config.neo4jUser(), config.neo4jPassword()));
+      driver = GraphDatabase.driver(config.neo4jUri(), AuthTokens.basic(config.neo4jUser(), config.neo4jPassword()),
+          DriverTuning.neo4jConfig(config));
       driver.verifyConnectivity();
       System.out.println("Neo4j client connection created with " + config.neo4jUri());
     } catch (Exception e) {
@@ -52,19 +58,43 @@ public final class ConnectionFactory {
     return new BenchmarkContext(config, null, driver, session);
   }
 
-  // Necessary for postgres, because the jdbc connection isn't thread safe.
+  // starts neo4j inside this process on the store at NEO4J_STORE, --page-cache sizes its page cache
+  private static BenchmarkContext openEmbeddedContext(BenchmarkConfig config) {
+    assert config.neo4jStore() != null;
+    DatabaseManagementService dbms = new DatabaseManagementServiceBuilder(config.neo4jStore())
+        .setConfig(GraphDatabaseSettings.pagecache_memory, ByteUnit.parse(config.option("page-cache", "2g")))
+        .build();
+    System.out.println("Embedded Neo4j started on " + config.neo4jStore().toAbsolutePath());
+
+    return BenchmarkContext.embedded(config, dbms);
+  }
+
+  // Necessary for the sql dbmss, because the jdbc connection isn't thread safe.
   // Also necessary for neo4j to re-use sessions that aren't thread safe
   public static BenchmarkContext cloneForThread(BenchmarkContext base) throws SQLException {
     Dbms dbms = base.config.dbms();
-    if (dbms == Dbms.POSTGRES) {
-      assert base.config.pgUrl() != null;
-      Connection conn = DriverManager.getConnection(
-              base.config.pgUrl(), base.config.pgUser(), base.config.pgPassword());
-      return new BenchmarkContext(base.config, conn, null, null);
+    if (dbms.sql()) {
+      Connection conn = dbms.dialect().connectForThread(base.config, base.pgConn);
+      if (dbms == Dbms.POSTGRES && base.config.boolOption("server-stats")) {
+        ServerStats.enable(conn);
+      }
+      int timeoutMs = base.config.intOption("timeout-ms", 0);
+      if (dbms == Dbms.POSTGRES && timeoutMs > 0) {
+        // enforced and cancelled by the server, fails the statement with sqlstate 57014
+        try (Statement st = conn.createStatement()) {
+          st.execute("SET statement_timeout = " + timeoutMs);
+        }
+      }
+      return BenchmarkContext.forThread(base.config, conn, null, null);
     } else if (dbms == Dbms.NEO4J) {
       assert base.neoDriver != null;
-      Session session = base.neoDriver.session(SessionConfig.forDatabase("neo4j"));
-      return new BenchmarkContext(base.config, null, base.neoDriver, session);
+      SessionConfig sessionConfig = TransactionFrame.mode(base.config) == TransactionFrame.Mode.AUTOCOMMIT
+          ? SessionConfig.forDatabase("neo4j")
+          : SessionConfig.builder().withDatabase("neo4j").withDefaultAccessMode(AccessMode.READ).build();
+      Session session = base.neoDriver.session(sessionConfig);
+      return BenchmarkContext.forThread(base.config, null, base.neoDriver, session);
+    } else if (dbms == Dbms.NEO4J_EMBEDDED) {
+      return base.withConfig(base.config); // the embedded database is thread safe, only the recorder is per thread
     } else {
       throw new IllegalStateException("Unsupported DBMS: " + dbms);
     }
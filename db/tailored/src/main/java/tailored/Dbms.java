@@ -1,5 +1,19 @@
 package tailored;
 
 public enum Dbms {
-    POSTGRES, NEO4J
+    POSTGRES, NEO4J,
+    NEO4J_EMBEDDED, // in-process neo4j on a local store, no bolt or network in between
+    DUCKDB,         // in-process, vectorized columnar engine
+    H2,             // in-process row store
+    SQLITE;         // in-process row store
+
+    // null for the neo4j backends
+    public SqlDialect dialect() {
+        return SqlDialect.of(this);
+    }
+
+    // reached through jdbc, ctx.pgConn holds the connection
+    public boolean sql() {
+        return dialect() != null;
+    }
 }
@@ -0,0 +1,111 @@
+package tailored;
+
+import org.neo4j.driver.Config;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// client driver settings, given as options like everything else (or in a benchmark definition file) and written
+// to the results with them. Checked when the config is created, so a typo fails before anything is loaded or run.
+//   --pg-fetch-size=N          pgjdbc defaultRowFetchSize, rows per round trip. Only used by pgjdbc with
+//                              autocommit off, i.e. --tx-mode=read-only
+//   --pg-prepare-threshold=N   pgjdbc prepareThreshold, executions before a server side prepared statement
+//                              (0 never, -1 always, default 5)
+//   --pg-binary-transfer=B     pgjdbc binaryTransfer
+//   --neo4j-fetch-size=N       records per PULL, -1 for all at once (driver default 1000)
+//   --neo4j-max-pool-size=N    connections of the driver's pool (default 100)
+//   --neo4j-acquire-timeout-ms=N   wait for a free pooled connection (default 60000)
+final class DriverTuning {
+  static final String PG_FETCH_SIZE = "pg-fetch-size";
+  static final String PG_PREPARE_THRESHOLD = "pg-prepare-threshold";
+  static final String PG_BINARY_TRANSFER = "pg-binary-transfer";
+  static final String NEO4J_FETCH_SIZE = "neo4j-fetch-size";
+  static final String NEO4J_MAX_POOL_SIZE = "neo4j-max-pool-size";
+  static final String NEO4J_ACQUIRE_TIMEOUT_MS = "neo4j-acquire-timeout-ms";
+
+  private static final Set<String> PG = Set.of(PG_FETCH_SIZE, PG_PREPARE_THRESHOLD, PG_BINARY_TRANSFER);
+  private static final Set<String> NEO4J = Set.of(NEO4J_FETCH_SIZE, NEO4J_MAX_POOL_SIZE, NEO4J_ACQUIRE_TIMEOUT_MS);
+
+  private DriverTuning() {
+  }
+
+  static void validate(Dbms dbms, Map<String, String> options) {
+    for (String key : options.keySet()) {
+      if (key.startsWith("pg-") && !PG.contains(key) || key.startsWith("neo4j-") && !NEO4J.contains(key)) {
+        throw new IllegalArgumentException("Unknown driver setting --" + key + ", expected one of "
+            + List.copyOf(PG) + " or " + List.copyOf(NEO4J));
+      }
+      if (PG.contains(key) && dbms != Dbms.POSTGRES || NEO4J.contains(key) && dbms != Dbms.NEO4J) {
+        // the in-process engines have no driver, a setting there would silently be ignored
+        throw new IllegalArgumentException("--" + key + " doesn't apply to " + dbms);
+      }
+    }
+
+    atLeast(options, PG_FETCH_SIZE, 0);
+    atLeast(options, PG_PREPARE_THRESHOLD, -1);
+    bool(options, PG_BINARY_TRANSFER);
+    atLeast(options, NEO4J_FETCH_SIZE, -1);
+    if ("0".equals(options.get(NEO4J_FETCH_SIZE))) {
+      throw new IllegalArgumentException("--" + NEO4J_FETCH_SIZE + " must be positive or -1 for all records");
+    }
+    atLeast(options, NEO4J_MAX_POOL_SIZE, 1);
+    atLeast(options, NEO4J_ACQUIRE_TIMEOUT_MS, 0);
+  }
+
+  // connection properties of every postgres connection
+  static Properties pgProperties(BenchmarkConfig config) {
+    Properties props = new Properties();
+    props.setProperty("user", config.pgUser());
+    props.setProperty("password", config.pgPassword());
+    copy(config, PG_FETCH_SIZE, props, "defaultRowFetchSize");
+    copy(config, PG_PREPARE_THRESHOLD, props, "prepareThreshold");
+    copy(config, PG_BINARY_TRANSFER, props, "binaryTransfer");
+    return props;
+  }
+
+  static Config neo4jConfig(BenchmarkConfig config) {
+    Config.ConfigBuilder builder = Config.builder();
+    if (config.options().containsKey(NEO4J_FETCH_SIZE)) {
+      builder.withFetchSize(config.intOption(NEO4J_FETCH_SIZE, 0));
+    }
+    if (config.options().containsKey(NEO4J_MAX_POOL_SIZE)) {
+      builder.withMaxConnectionPoolSize(config.intOption(NEO4J_MAX_POOL_SIZE, 0));
+    }
+    if (config.options().containsKey(NEO4J_ACQUIRE_TIMEOUT_MS)) {
+      builder.withConnectionAcquisitionTimeout(config.intOption(NEO4J_ACQUIRE_TIMEOUT_MS, 0), TimeUnit.MILLISECONDS);
+    }
+    return builder.build();
+  }
+
+  private static void copy(BenchmarkConfig config, String option, Properties props, String property) {
+    String value = config.option(option, null);
+    if (value != null) {
+      props.setProperty(property, value);
+    }
+  }
+
+  private static void atLeast(Map<String, String> options, String key, int min) {
+    String value = options.get(key);
+    if (value == null) {
+      return;
+    }
+    try {
+      if (Integer.parseInt(value) >= min) {
+        return;
+      }
+    } catch (NumberFormatException e) {
+      // reported below
+    }
+    throw new IllegalArgumentException("--" + key + " must be an integer >= " + min + ", got " + value);
+  }
+
+  private static void bool(Map<String, String> options, String key) {
+    String value = options.get(key);
+    if (value != null && !value.equalsIgnoreCase("true") && !value.equalsIgnoreCase("false")) {
+      throw new IllegalArgumentException("--" + key + " must be true or false, got " + value);
+    }
+  }
+}
@@ -0,0 +1,436 @@
+package tailored;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// external merge sort of an edges file with bounded memory. The input is cut into runs that fill
+// off-heap buffers; worker threads sort and dedupe each run and spill it to a binary temp file while
+// the next buffer is being filled. The runs are then merged k ways (in several passes if there are
+// more runs than merge buffers) into a tsv file without duplicates and, optionally, without self-loops
+public class EdgeSorter {
+  public enum Order {
+    START {   // (start_id, end_id), every adjacency list ends up contiguous
+      @Override
+      int compare(long u1, long v1, long u2, long v2) {
+        int c = Long.compare(u1, u2);
+        return c != 0 ? c : Long.compare(v1, v2);
+      }
+    },
+    ZORDER {  // morton order of (start_id, end_id), edges between nearby ids end up close to each other
+      @Override
+      int compare(long u1, long v1, long u2, long v2) {
+        long du = u1 ^ u2;
+        long dv = v1 ^ v2;
+        // the coordinate with the highest differing bit decides, start_id wins a tie
+        boolean vHigher = Long.compareUnsigned(du, dv) < 0 && Long.compareUnsigned(du, du ^ dv) < 0;
+        return vHigher ? Long.compare(v1, v2) : Long.compare(u1, u2);
+      }
+    };
+
+    abstract int compare(long u1, long v1, long u2, long v2);
+
+    static Order parse(String name) {
+      return valueOf(name.toUpperCase().replace('-', '_'));
+    }
+  }
+
+  private static final int MERGE_BUFFER_BYTES = 1 << 20;
+
+  private final long memoryBytes;
+  private final int threads;
+  private final Order order;
+  private final boolean symmetrize;
+  private final boolean keepSelfLoops;
+  private final Path tmpBase;
+
+  private final AtomicLong readEdges = new AtomicLong();
+  private final AtomicLong selfLoops = new AtomicLong();
+  private final AtomicLong emitted = new AtomicLong();
+  private final AtomicLong corruptLines = new AtomicLong();
+  private final AtomicInteger runCounter = new AtomicInteger();
+
+  public EdgeSorter(long memoryBytes, int threads, Order order, boolean symmetrize, boolean keepSelfLoops, Path tmpBase) {
+    if (memoryBytes < 4L * MERGE_BUFFER_BYTES) {
+      throw new IllegalArgumentException("Edge sort needs at least " + 4 * MERGE_BUFFER_BYTES / (1 << 20) + " MB");
+    }
+    this.memoryBytes = memoryBytes;
+    this.threads = Math.max(1, threads);
+    this.order = order;
+    this.symmetrize = symmetrize;
+    this.keepSelfLoops = keepSelfLoops;
+    this.tmpBase = tmpBase;
+  }
+
+  // builds an EdgeSorter from --memory-mb, --threads, --order, --symmetrize, --keep-self-loops and --tmp-dir
+  public static EdgeSorter fromOptions(Map<String, String> options, Path defaultTmp) {
+    return new EdgeSorter(
+        Long.parseLong(options.getOrDefault("memory-mb", "512")) << 20,
+        Integer.parseInt(options.getOrDefault("threads", String.valueOf(Runtime.getRuntime().availableProcessors()))),
+        Order.parse(options.getOrDefault("order", "start")),
+        Boolean.parseBoolean(options.getOrDefault("symmetrize", "false")),
+        Boolean.parseBoolean(options.getOrDefault("keep-self-loops", "false")),
+        options.containsKey("tmp-dir") ? Path.of(options.get("tmp-dir")) : defaultTmp
+    );
+  }
+
+  // file name suffix describing the settings that change the output, so differently sorted files don't mix
+  public String suffix() {
+    return ".sorted-" + order.name().toLowerCase() + (symmetrize ? "-sym" : "") + (keepSelfLoops ? "-loops" : "");
+  }
+
+  public void sort(Path in, Path out) throws Exception {
+    long start = System.nanoTime();
+    Files.createDirectories(tmpBase);
+    Path tmpDir = Files.createTempDirectory(tmpBase, "edge-sort");
+    try {
+      List<Path> runs = generateRuns(in, tmpDir);
+      System.out.println("Generated " + runs.size() + " sorted runs from " + readEdges.get() + " edges");
+
+      int fanIn = (int) Math.max(2, Math.min(256, memoryBytes / MERGE_BUFFER_BYTES - 1));
+      int passes = 0;
+      while (runs.size() > fanIn) {
+        List<Path> merged = new ArrayList<>();
+        for (int i = 0; i < runs.size(); i += fanIn) {
+          List<Path> group = runs.subList(i, Math.min(runs.size(), i + fanIn));
+          Path run = tmpDir.resolve("run-" + runCounter.getAndIncrement());
+          try (BinaryRunWriter w = new BinaryRunWriter(run)) {
+            merge(group, w);
+          }
+          for (Path p : group) {
+            Files.delete(p);
+          }
+          merged.add(run);
+        }
+        runs = merged;
+        System.out.println("Merge pass " + ++passes + " left " + runs.size() + " runs");
+      }
+
+      long written;
+      try (TsvWriter w = new TsvWriter(out)) {
+        written = merge(runs, w);
+      }
+
+      System.out.printf("Sorted %d edges into %s in %.1f s: %d self-loops and %d duplicates removed, %d corrupt lines skipped%n",
+          readEdges.get(), out, (System.nanoTime() - start) / 1e9,
+          selfLoops.get(), emitted.get() - written, corruptLines.get());
+    } finally {
+      try (var files = Files.list(tmpDir)) {
+        for (Path p : (Iterable<Path>) files::iterator) {
+          Files.deleteIfExists(p);
+        }
+      }
+      Files.deleteIfExists(tmpDir);
+    }
+  }
+
+  // the reading thread fills one buffer while up to `threads` others are sorted and spilled
+  private List<Path> generateRuns(Path in, Path tmpDir) throws Exception {
+    int buffers = threads + 1;
+    int bufferBytes = (int) Math.min(Integer.MAX_VALUE & ~15, (memoryBytes / buffers) & ~15L);
+    BlockingQueue<RunBuffer> free = new ArrayBlockingQueue<>(buffers);
+    for (int i = 0; i < buffers; i++) {
+      free.add(new RunBuffer(bufferBytes));
+    }
+
+    List<Path> runs = Collections.synchronizedList(new ArrayList<>());
+    List<Future<?>> futures = new ArrayList<>();
+    ExecutorService exec = Executors.newFixedThreadPool(threads);
+    try (LineReader reader = LineReader.open(in, 0)) {
+      RunBuffer buf = free.take();
+      String line;
+      while ((line = reader.readLine()) != null) {
+        int tab = line.indexOf('\t');
+        if (tab < 0) {
+          corruptLines.incrementAndGet();
+          continue;
+        }
+        int end = line.indexOf('\t', tab + 1);
+        long u = Long.parseLong(line, 0, tab, 10);
+        long v = Long.parseLong(line, tab + 1, end < 0 ? line.length() : end, 10);
+        readEdges.incrementAndGet();
+        if (u == v && !keepSelfLoops) {
+          selfLoops.incrementAndGet();
+          continue;
+        }
+
+        for (int copy = 0; copy < (symmetrize && u != v ? 2 : 1); copy++) {
+          if (buf.longs.remaining() < 2) {
+            futures.add(spill(exec, buf, free, runs, tmpDir));
+            buf = free.take();
+          }
+          buf.longs.put(copy == 0 ? u : v).put(copy == 0 ? v : u);
+          emitted.incrementAndGet();
+        }
+      }
+      if (buf.longs.position() > 0) {
+        futures.add(spill(exec, buf, free, runs, tmpDir));
+      }
+      for (Future<?> f : futures) {
+        f.get();
+      }
+    } finally {
+      exec.shutdownNow();
+    }
+    return runs;
+  }
+
+  private Future<?> spill(ExecutorService exec, RunBuffer buf, BlockingQueue<RunBuffer> free, List<Path> runs, Path tmpDir) {
+    Path run = tmpDir.resolve("run-" + runCounter.getAndIncrement());
+    return exec.submit(() -> {
+      try {
+        int n = buf.longs.position() / 2;
+        quickSort(buf.longs, 0, n);
+        int unique = dedupe(buf.longs, n);
+
+        ByteBuffer bytes = buf.bytes.duplicate().position(0).limit(unique * 16);
+        try (FileChannel ch = FileChannel.open(run, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+          while (bytes.hasRemaining()) {
+            ch.write(bytes);
+          }
+        }
+        runs.add(run);
+      } finally {
+        buf.longs.clear();
+        free.add(buf); // even after a failure, or the reading thread would wait forever
+      }
+      return null;
+    });
+  }
+
+  // off-heap run buffer, filled and sorted through the long view and spilled through the byte view
+  private static final class RunBuffer {
+    final ByteBuffer bytes;
+    final LongBuffer longs;
+
+    RunBuffer(int capacity) {
+      this.bytes = ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+      this.longs = bytes.asLongBuffer();
+    }
+  }
+
+  // collapses equal neighbouring pairs in place, returns the number of pairs left
+  private static int dedupe(LongBuffer b, int n) {
+    if (n == 0) {
+      return 0;
+    }
+    int w = 1;
+    for (int r = 1; r < n; r++) {
+      long u = b.get(2 * r);
+      long v = b.get(2 * r + 1);
+      if (u != b.get(2 * (w - 1)) || v != b.get(2 * (w - 1) + 1)) {
+        b.put(2 * w, u).put(2 * w + 1, v);
+        w++;
+      }
+    }
+    return w;
+  }
+
+  // quicksort of pairs [lo, hi) with the median of three moved to lo as pivot, small ranges by insertion
+  private void quickSort(LongBuffer b, int lo, int hi) {
+    while (hi - lo > 16) {
+      int mid = (lo + hi) >>> 1;
+      if (less(b, mid, lo)) swap(b, mid, lo);
+      if (less(b, hi - 1, lo)) swap(b, hi - 1, lo);
+      if (less(b, hi - 1, mid)) swap(b, hi - 1, mid);
+      swap(b, lo, mid); // median now at lo
+
+      long pu = b.get(2 * lo);
+      long pv = b.get(2 * lo + 1);
+      int i = lo - 1;
+      int j = hi;
+      while (true) {
+        do {
+          i++;
+        } while (order.compare(b.get(2 * i), b.get(2 * i + 1), pu, pv) < 0);
+        do {
+          j--;
+        } while (order.compare(b.get(2 * j), b.get(2 * j + 1), pu, pv) > 0);
+        if (i >= j) {
+          break;
+        }
+        swap(b, i, j);
+      }
+
+      // recurse into the smaller half so the stack stays logarithmic
+      if (j + 1 - lo < hi - j - 1) {
+        quickSort(b, lo, j + 1);
+        lo = j + 1;
+      } else {
+        quickSort(b, j + 1, hi);
+        hi = j + 1;
+      }
+    }
+
+    for (int i = lo + 1; i < hi; i++) {
+      long u = b.get(2 * i);
+      long v = b.get(2 * i + 1);
+      int j = i - 1;
+      while (j >= lo && order.compare(b.get(2 * j), b.get(2 * j + 1), u, v) > 0) {
+        b.put(2 * (j + 1), b.get(2 * j)).put(2 * (j + 1) + 1, b.get(2 * j + 1));
+        j--;
+      }
+      b.put(2 * (j + 1), u).put(2 * (j + 1) + 1, v);
+    }
+  }
+
+  private boolean less(LongBuffer b, int i, int j) {
+    return order.compare(b.get(2 * i), b.get(2 * i + 1), b.get(2 * j), b.get(2 * j + 1)) < 0;
+  }
+
+  private static void swap(LongBuffer b, int i, int j) {
+    long u = b.get(2 * i);
+    long v = b.get(2 * i + 1);
+    b.put(2 * i, b.get(2 * j)).put(2 * i + 1, b.get(2 * j + 1));
+    b.put(2 * j, u).put(2 * j + 1, v);
+  }
+
+  // k-way merge dropping duplicates across runs, returns the number of pairs written
+  private long merge(List<Path> runs, PairSink out) throws IOException {
+    PriorityQueue<RunReader> heap = new PriorityQueue<>((a, b) -> order.compare(a.u, a.v, b.u, b.v));
+    List<RunReader> readers = new ArrayList<>();
+    try {
+      for (Path run : runs) {
+        RunReader r = new RunReader(run);
+        readers.add(r);
+        if (r.next()) {
+          heap.add(r);
+        }
+      }
+
+      long written = 0;
+      boolean any = false;
+      long lastU = 0;
+      long lastV = 0;
+      while (!heap.isEmpty()) {
+        RunReader r = heap.poll();
+        if (!any || r.u != lastU || r.v != lastV) {
+          out.accept(r.u, r.v);
+          written++;
+          any = true;
+          lastU = r.u;
+          lastV = r.v;
+        }
+        if (r.next()) {
+          heap.add(r);
+        }
+      }
+      return written;
+    } finally {
+      for (RunReader r : readers) {
+        r.close();
+      }
+    }
+  }
+
+  private interface PairSink extends AutoCloseable {
+    void accept(long u, long v) throws IOException;
+
+    @Override
+    void close() throws IOException;
+  }
+
+  private static final class RunReader implements AutoCloseable {
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(MERGE_BUFFER_BYTES).order(ByteOrder.nativeOrder());
+    long u;
+    long v;
+
+    RunReader(Path path) throws IOException {
+      this.channel = FileChannel.open(path, StandardOpenOption.READ);
+      buffer.flip();
+    }
+
+    boolean next() throws IOException {
+      if (buffer.remaining() < 16) {
+        buffer.compact();
+        while (buffer.position() < 16 && channel.read(buffer) > 0) {
+          // keep reading until a whole pair is there or the run ends
+        }
+        buffer.flip();
+        if (buffer.remaining() < 16) {
+          return false;
+        }
+      }
+      u = buffer.getLong();
+      v = buffer.getLong();
+      return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+      channel.close();
+    }
+  }
+
+  private static final class BinaryRunWriter implements PairSink {
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(MERGE_BUFFER_BYTES).order(ByteOrder.nativeOrder());
+
+    BinaryRunWriter(Path path) throws IOException {
+      this.channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+
+    @Override
+    public void accept(long u, long v) throws IOException {
+      if (buffer.remaining() < 16) {
+        flush();
+      }
+      buffer.putLong(u).putLong(v);
+    }
+
+    private void flush() throws IOException {
+      buffer.flip();
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+      flush();
+      channel.close();
+    }
+  }
+
+  private static final class TsvWriter implements PairSink {
+    private final BufferedWriter writer;
+
+    TsvWriter(Path path) throws IOException {
+      this.writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void accept(long u, long v) throws IOException {
+      writer.write(Long.toString(u));
+      writer.write('\t');
+      writer.write(Long.toString(v));
+      writer.write('\n');
+    }
+
+    @Override
+    public void close() throws IOException {
+      writer.close();
+    }
+  }
+}
@@ -0,0 +1,48 @@
+package tailored;
+
+import org.neo4j.driver.exceptions.Neo4jException;
+import org.neo4j.driver.exceptions.ServiceUnavailableException;
+import org.neo4j.driver.exceptions.SessionExpiredException;
+import org.neo4j.driver.exceptions.TransientException;
+import org.neo4j.graphdb.TransientFailureException;
+import org.neo4j.kernel.api.exceptions.Status;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientException;
+
+// what kind of failure ended an operation, decides whether the runner retries it
+public enum ErrorClass {
+    TIMEOUT,    // hit --timeout-ms, the server cancelled the statement / terminated the transaction
+    TRANSIENT,  // deadlock, serialization failure, lock timeout, leader switch: safe to retry
+    CONNECTION, // connection lost or the server is unreachable
+    OTHER;
+
+    public static ErrorClass of(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLException sql) {
+                String state = sql.getSQLState() == null ? "" : sql.getSQLState();
+                if (sql instanceof SQLTimeoutException || state.equals("57014")) { // query_canceled
+                    return TIMEOUT;
+                }
+                if (state.equals("40001") || state.equals("40P01") || state.equals("55P03") || sql instanceof SQLTransientException) {
+                    return TRANSIENT;
+                }
+                if (state.startsWith("08") || state.equals("57P01")) { // connection exception, admin_shutdown
+                    return CONNECTION;
+                }
+            } else if (t instanceof Neo4jException neo && neo.code() != null && neo.code().contains("TimedOut")) {
+                return TIMEOUT; // TransactionTimedOut / TransactionTimedOutClientConfiguration
+            } else if (t instanceof Status.HasStatus embedded && embedded.status().code().serialize().contains("TimedOut")) {
+                return TIMEOUT; // embedded transaction past its beginTx timeout
+            } else if (t instanceof TransientFailureException) {
+                return TRANSIENT;
+            } else if (t instanceof ServiceUnavailableException || t instanceof SessionExpiredException) {
+                return CONNECTION;
+            } else if (t instanceof TransientException) {
+                return TRANSIENT;
+            }
+        }
+        return OTHER;
+    }
+}
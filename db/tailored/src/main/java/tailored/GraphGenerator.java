@@ -0,0 +1,308 @@
+package tailored;
+
+import java.io.BufferedOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+// writes a synthetic social graph in the layout of the pokec files the loader reads. Work is cut into
+// fixed chunks of node ids, each chunk draws from its own generator seeded by (seed, chunk) and the chunks
+// are written in order, so the output only depends on the options and not on the thread count
+public class GraphGenerator {
+  public enum Model {
+    RMAT, // recursive matrix (graph500 probabilities), skewed degrees and self-similar structure
+    BA,   // barabasi-albert preferential attachment, every node makes m links picked by degree among the earlier slots
+    LFR;  // lfr-style planted communities with power-law sizes and degrees and a mixing parameter
+
+    static Model parse(String name) {
+      return valueOf(name.toUpperCase().replace('-', '_'));
+    }
+  }
+
+  // size of the soc-pokec dataset, --scale=1 generates a graph of the same size
+  public static final long POKEC_NODES = 1_632_803;
+  public static final double POKEC_AVG_DEGREE = 18.75;
+
+  private static final int CHUNK = 1 << 16;
+  private static final long NODE_SALT = 0x6A09E667F3BCC909L;
+  private static final long EDGE_SALT = 0xBB67AE8584CAA73BL;
+
+  private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.0");
+  private static final long FIRST_REGISTRATION = LocalDateTime.of(2002, 1, 1, 0, 0).toEpochSecond(ZoneOffset.UTC);
+  private static final long LAST_LOGIN = LocalDateTime.of(2012, 5, 25, 23, 59).toEpochSecond(ZoneOffset.UTC);
+  private static final String[] EDUCATION = {"zakladne", "stredoskolske", "vysokoskolske", "ucnovske"};
+  private static final String[] SMOKING = {"nefajcim", "fajcim prilezitostne", "fajcim pravidelne"};
+  private static final String[] ALCOHOL = {"abstinent", "pijem prilezitostne", "pijem pravidelne"};
+  private static final int REGIONS = 188;
+
+  private final Model model;
+  private final long nodes;
+  private final double avgDegree;
+  private final long seed;
+  private final int threads;
+  private final double mixing;
+
+  private long[] communityStart; // LFR only, first id of every community in ascending order
+  private final AtomicLong edgesWritten = new AtomicLong();
+
+  public GraphGenerator(Model model, long nodes, double avgDegree, long seed, int threads, double mixing) {
+    if (nodes < 2) {
+      throw new IllegalArgumentException("A graph needs at least 2 nodes");
+    }
+    this.model = model;
+    this.nodes = nodes;
+    this.avgDegree = avgDegree;
+    this.seed = seed;
+    this.threads = Math.max(1, threads);
+    this.mixing = mixing;
+  }
+
+  // --model, --scale (multiple of the pokec size) or --nodes, --avg-degree, --seed, --threads and --mixing (lfr)
+  public static GraphGenerator fromOptions(Map<String, String> options) {
+    long nodes = options.containsKey("nodes")
+        ? Long.parseLong(options.get("nodes"))
+        : Math.round(POKEC_NODES * Double.parseDouble(options.getOrDefault("scale", "1")));
+
+    return new GraphGenerator(
+        Model.parse(options.getOrDefault("model", "rmat")),
+        nodes,
+        Double.parseDouble(options.getOrDefault("avg-degree", String.valueOf(POKEC_AVG_DEGREE))),
+        Long.parseLong(options.getOrDefault("seed", "42")),
+        Integer.parseInt(options.getOrDefault("threads", String.valueOf(Runtime.getRuntime().availableProcessors()))),
+        Double.parseDouble(options.getOrDefault("mixing", "0.1"))
+    );
+  }
+
+  public void generate(Path nodesOut, Path edgesOut) throws Exception {
+    long start = System.nanoTime();
+    if (model == Model.LFR) {
+      buildCommunities();
+    }
+
+    long chunks = (nodes + CHUNK - 1) / CHUNK;
+    writeChunks(nodesOut, chunks, this::nodeChunk);
+    System.out.println("Wrote " + nodes + " nodes to " + nodesOut);
+    writeChunks(edgesOut, chunks, this::edgeChunk);
+    System.out.printf("Wrote %d edges (average out-degree %.2f) to %s in %.1f s%n",
+        edgesWritten.get(), edgesWritten.get() / (double) nodes, edgesOut, (System.nanoTime() - start) / 1e9);
+    // every model: ba resolves each slot on its own, so a node can pick one of its own earlier slots or the
+    // same target twice
+    System.out.println("The edges may contain duplicates and self-loops, the sort command removes them");
+  }
+
+  private interface ChunkWriter {
+    void write(long chunk, StringBuilder out);
+  }
+
+  // chunks are generated in parallel but written strictly in order, with a bounded number in flight
+  private void writeChunks(Path path, long chunks, ChunkWriter writer) throws Exception {
+    ExecutorService exec = Executors.newFixedThreadPool(threads);
+    try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(path), 1 << 20)) {
+      Deque<Future<byte[]>> window = new ArrayDeque<>();
+      for (long c = 0; c < chunks; c++) {
+        long chunk = c;
+        window.add(exec.submit(() -> {
+          StringBuilder sb = new StringBuilder(CHUNK * 32);
+          writer.write(chunk, sb);
+          return sb.toString().getBytes(StandardCharsets.UTF_8);
+        }));
+        if (window.size() >= threads * 2) {
+          out.write(window.poll().get());
+        }
+      }
+      while (!window.isEmpty()) {
+        out.write(window.poll().get());
+      }
+    } finally {
+      exec.shutdownNow();
+    }
+  }
+
+  private SplittableRandom random(long salt, long chunk) {
+    return new SplittableRandom(mix(seed ^ salt) + chunk * 0x9E3779B97F4A7C15L);
+  }
+
+  // 24 tab separated columns, the loader reads 0-7, 19, 22 and 23 and the rest stay null like in pokec
+  private void nodeChunk(long chunk, StringBuilder out) {
+    SplittableRandom r = random(NODE_SALT, chunk);
+    long first = chunk * CHUNK;
+    long last = Math.min(nodes, first + CHUNK);
+    for (long id = first; id < last; id++) {
+      long registration = FIRST_REGISTRATION + r.nextLong(LAST_LOGIN - FIRST_REGISTRATION);
+      long lastLogin = registration + r.nextLong(LAST_LOGIN - registration + 1);
+      int age = r.nextDouble() < 0.18 ? 0 : Math.min(90, 14 + (int) Math.abs(r.nextGaussian() * 12));
+      // lfr communities share a region, so filters on region correlate with the graph structure
+      int region = model == Model.LFR ? community(id) % REGIONS : r.nextInt(REGIONS);
+
+      out.append(id).append('\t')
+          .append(r.nextInt(2)).append('\t')
+          .append(r.nextInt(101)).append('\t')
+          .append(r.nextInt(2)).append('\t')
+          .append("region ").append(region).append('\t')
+          .append(TIMESTAMP.format(LocalDateTime.ofEpochSecond(lastLogin, 0, ZoneOffset.UTC))).append('\t')
+          .append(TIMESTAMP.format(LocalDateTime.ofEpochSecond(registration, 0, ZoneOffset.UTC))).append('\t')
+          .append(age);
+      for (int col = 8; col < 24; col++) {
+        out.append('\t');
+        switch (col) {
+          case 19 -> out.append(pick(r, EDUCATION));
+          case 22 -> out.append(pick(r, SMOKING));
+          case 23 -> out.append(pick(r, ALCOHOL));
+          default -> out.append("null");
+        }
+      }
+      out.append('\n');
+    }
+  }
+
+  // half of the profiles leave an answer empty
+  private static String pick(SplittableRandom r, String[] values) {
+    return r.nextBoolean() ? "null" : values[r.nextInt(values.length)];
+  }
+
+  private void edgeChunk(long chunk, StringBuilder out) {
+    SplittableRandom r = random(EDGE_SALT, chunk);
+    long first = chunk * CHUNK;
+    long last = Math.min(nodes, first + CHUNK);
+    long count = 0;
+
+    switch (model) {
+      case RMAT -> {
+        // the edges of a chunk are spread evenly over the chunks, independent of where they land
+        long total = Math.round(nodes * avgDegree);
+        long chunks = (nodes + CHUNK - 1) / CHUNK;
+        long edges = total * (chunk + 1) / chunks - total * chunk / chunks;
+        for (long e = 0; e < edges; e++) {
+          appendRmatEdge(out, r);
+        }
+        count = edges;
+      }
+      case BA -> {
+        int m = (int) Math.max(1, Math.round(avgDegree));
+        for (long id = Math.max(1, first); id < last; id++) {
+          for (int j = 0; j < m; j++) {
+            appendEdge(out, id, baTarget((id - 1) * m + j, m));
+          }
+          count += m;
+        }
+      }
+      case LFR -> {
+        // pareto out-degrees with exponent 2.5, scaled so the mean is close to avgDegree
+        double alpha = 1.5;
+        double minDegree = avgDegree * (alpha - 1) / alpha;
+        long maxDegree = Math.min(nodes - 1, Math.round(avgDegree * 50));
+        for (long id = first; id < last; id++) {
+          long degree = Math.min(maxDegree, Math.round(minDegree * Math.pow(1 - r.nextDouble(), -1 / alpha)));
+          int c = community(id);
+          long cStart = communityStart[c];
+          long cEnd = c + 1 < communityStart.length ? communityStart[c + 1] : nodes;
+          for (long k = 0; k < degree; k++) {
+            long target = r.nextDouble() < mixing || cEnd - cStart < 2
+                ? r.nextLong(nodes)
+                : cStart + r.nextLong(cEnd - cStart);
+            appendEdge(out, id, target);
+          }
+          count += degree;
+        }
+      }
+    }
+    edgesWritten.addAndGet(count);
+  }
+
+  private static void appendEdge(StringBuilder out, long u, long v) {
+    out.append(u).append('\t').append(v).append('\n');
+  }
+
+  // one rmat edge: descend the adjacency matrix picking a quadrant per bit (graph500 probabilities
+  // a = 0.57, b = 0.19, c = 0.19, d = 0.05), then scramble both ids so the hubs don't all sit at the low
+  // ids. Edges with an id past the end are drawn again when nodes isn't a power of two
+  private void appendRmatEdge(StringBuilder out, SplittableRandom r) {
+    int scale = 64 - Long.numberOfLeadingZeros(nodes - 1);
+    while (true) {
+      long u = 0;
+      long v = 0;
+      for (int bit = 0; bit < scale; bit++) {
+        double p = r.nextDouble();
+        if (p >= 0.57 + 0.19) {
+          u |= 1L << bit;
+        }
+        if ((p >= 0.57 && p < 0.57 + 0.19) || p >= 0.57 + 0.19 + 0.19) {
+          v |= 1L << bit;
+        }
+      }
+      u = scramble(u ^ seed, scale);
+      v = scramble(v ^ seed, scale);
+      if (u < nodes && v < nodes) {
+        appendEdge(out, u, v);
+        return;
+      }
+    }
+  }
+
+  // a bijection on [0, 2^scale), the caller xors in the seed so the top hub isn't always id 0
+  private static long scramble(long id, int scale) {
+    long mask = scale == 64 ? -1L : (1L << scale) - 1;
+    id = (id * 0x9E3779B97F4A7C15L) & mask;
+    id ^= id >>> Math.max(1, scale / 2);
+    return (id * 0xBF58476D1CE4E5B9L) & mask;
+  }
+
+  // target of edge slot k in the batagelj-brandes formulation: a uniform pick among all earlier endpoints
+  // is proportional to degree. Even picks are the source of an earlier slot, odd ones its target, which
+  // is resolved the same way, so every slot is computed on its own without the preceding ones
+  private long baTarget(long k, int m) {
+    while (k > 0) {
+      long pick = Long.remainderUnsigned(mix(seed ^ EDGE_SALT ^ k), 2 * k);
+      if ((pick & 1) == 0) {
+        return pick / 2 / m + 1;
+      }
+      k = pick / 2;
+    }
+    return 0;
+  }
+
+  // power-law community sizes between 20 and 1000 (exponent 1.5), drawn once up front
+  private void buildCommunities() {
+    SplittableRandom r = new SplittableRandom(mix(seed));
+    List<Long> starts = new ArrayList<>();
+    double min = 20;
+    double max = 1000;
+    double beta = -0.5; // 1 - exponent
+    long next = 0;
+    while (next < nodes) {
+      double u = r.nextDouble();
+      long size = Math.round(Math.pow(Math.pow(min, beta) + u * (Math.pow(max, beta) - Math.pow(min, beta)), 1 / beta));
+      starts.add(next);
+      next += size;
+    }
+    communityStart = starts.stream().mapToLong(Long::longValue).toArray();
+    System.out.println("Planted " + communityStart.length + " communities");
+  }
+
+  private int community(long id) {
+    int i = Arrays.binarySearch(communityStart, id);
+    return i >= 0 ? i : -i - 2;
+  }
+
+  // splitmix64 finalizer
+  private static long mix(long z) {
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+}
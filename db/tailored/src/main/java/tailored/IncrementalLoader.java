@@ -0,0 +1,367 @@
+package tailored;
+
+import org.neo4j.driver.Record;
+import org.neo4j.driver.Session;
+import org.neo4j.driver.SessionConfig;
+import org.neo4j.driver.TransactionContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+// load --mode=resume and --mode=delta. Every batch is committed on its own, together with a checkpoint
+// (stage, byte offset of the next line, batch number) written in the same transaction, so an interrupted
+// load continues after the last committed batch and never applies a batch twice.
+// Delta files use the layout of the normal files with an extra first column: + adds or updates the row,
+// - removes it (for nodes only the id is needed, and its edges are removed as well)
+public class IncrementalLoader {
+  enum Stage {
+    NODES, EDGES, DONE
+  }
+
+  // source identifies the files being loaded, a checkpoint is only resumed for the same files
+  record Checkpoint(String source, Stage stage, long offset, long batch) {
+    String encode() {
+      return stage + "|" + offset + "|" + batch + "|" + source;
+    }
+
+    static Checkpoint decode(String value) {
+      String[] parts = value.split("\\|", 4);
+      return new Checkpoint(parts[3], Stage.valueOf(parts[0]), Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+    }
+  }
+
+  record Row(char op, String[] cols) {
+  }
+
+  private interface Sink extends AutoCloseable {
+    Checkpoint checkpoint() throws Exception;
+
+    void truncate() throws Exception;
+
+    // applies rows in file order and stores next, all in one transaction
+    void apply(Stage stage, List<Row> rows, Checkpoint next) throws Exception;
+
+    @Override
+    void close() throws Exception;
+  }
+
+  public static void runLoad(Dbms dbms, Path nodesPath, Path edgesPath, boolean delta, int batchSize) {
+    BenchmarkConfig config = BenchmarkConfig.create(dbms, WorkloadType.FOF, 1, 0, 0, null);
+
+    try (BenchmarkContext ctx = ConnectionFactory.openContext(config);
+         Sink sink = switch (dbms) {
+           case POSTGRES -> new PostgresSink(ctx.pgConn, delta);
+           case NEO4J -> new Neo4jSink(ctx.neoDriver.session(SessionConfig.forDatabase("neo4j")));
+           case NEO4J_EMBEDDED, DUCKDB, H2, SQLITE -> throw new IllegalArgumentException("Resume and delta loads are not available for " + dbms);
+         }) {
+      load(sink, nodesPath, edgesPath, delta, batchSize);
+      if (delta && dbms == Dbms.POSTGRES) {
+        String profile = SchemaProfile.current(ctx.pgConn);
+        if (!profile.equals(SchemaProfile.BASELINE.label())) {
+          System.out.println("Schema profile " + profile + " was applied before this delta, run schema again to rebuild it");
+        }
+      }
+    } catch (Exception e) {
+      throw new RuntimeException("Failed to load data", e);
+    }
+  }
+
+  private static void load(Sink sink, Path nodesPath, Path edgesPath, boolean delta, int batchSize) throws Exception {
+    String source = source(delta, nodesPath, edgesPath);
+    Checkpoint checkpoint = sink.checkpoint();
+
+    if (checkpoint != null && checkpoint.source().equals(source)) {
+      if (checkpoint.stage() == Stage.DONE) {
+        System.out.println("These files were already " + (delta ? "applied" : "loaded") + ", nothing to do");
+        return;
+      }
+      System.out.println("Resuming " + checkpoint.stage() + " at byte " + checkpoint.offset() + " after batch " + checkpoint.batch());
+    } else {
+      if (!delta) {
+        sink.truncate();
+      }
+      checkpoint = new Checkpoint(source, Stage.NODES, 0, 0);
+    }
+
+    long batch = checkpoint.batch();
+    for (Stage stage : List.of(Stage.NODES, Stage.EDGES)) {
+      Path path = stage == Stage.NODES ? nodesPath : edgesPath;
+      if (stage.ordinal() < checkpoint.stage().ordinal() || path == null) {
+        continue;
+      }
+      long start = stage == checkpoint.stage() ? checkpoint.offset() : 0;
+      int minCols = stage == Stage.NODES ? (delta ? 2 : 8) : (delta ? 3 : 2);
+
+      try (LineReader reader = LineReader.open(path, start)) {
+        List<Row> rows = new ArrayList<>(batchSize);
+        String line;
+        while ((line = reader.readLine()) != null) {
+          String[] cols = line.split("\t", -1);
+          if (cols.length < minCols) {
+            continue; // corrupt line, ignore
+          }
+          rows.add(delta ? delta(cols, stage) : new Row('+', cols));
+
+          if (rows.size() >= batchSize) {
+            sink.apply(stage, rows, new Checkpoint(source, stage, reader.offset(), ++batch));
+            System.out.println("Batch " + batch + " committed (" + stage + " up to byte " + reader.offset() + ")");
+            rows.clear();
+          }
+        }
+        if (!rows.isEmpty()) {
+          sink.apply(stage, rows, new Checkpoint(source, stage, reader.offset(), ++batch));
+          System.out.println("Batch " + batch + " committed (" + stage + " up to byte " + reader.offset() + ")");
+        }
+      }
+    }
+    sink.apply(Stage.DONE, List.of(), new Checkpoint(source, Stage.DONE, 0, batch));
+  }
+
+  private static Row delta(String[] cols, Stage stage) {
+    char op = cols[0].isEmpty() ? ' ' : cols[0].charAt(0);
+    if (cols[0].length() != 1 || (op != '+' && op != '-')) {
+      throw new IllegalArgumentException("Delta " + stage + " line must start with + or -, got: " + String.join("\t", cols));
+    }
+    String[] rest = Arrays.copyOfRange(cols, 1, cols.length);
+    if (op == '+' && stage == Stage.NODES && rest.length < 8) {
+      throw new IllegalArgumentException("Added node needs all node columns: " + String.join("\t", cols));
+    }
+    return new Row(op, rest);
+  }
+
+  // changes whenever a file is replaced or modified, so a stale checkpoint is never resumed
+  private static String source(boolean delta, Path nodesPath, Path edgesPath) throws IOException {
+    return (delta ? "delta" : "load") + " " + describe(nodesPath) + " " + describe(edgesPath);
+  }
+
+  private static String describe(Path path) throws IOException {
+    if (path == null) {
+      return "-";
+    }
+    return path.toAbsolutePath() + ":" + Files.size(path) + ":" + Files.getLastModifiedTime(path).toMillis();
+  }
+
+  // runs of consecutive rows with the same op, so adds and removes keep their file order
+  private static List<List<Row>> runs(List<Row> rows) {
+    List<List<Row>> runs = new ArrayList<>();
+    int from = 0;
+    for (int i = 1; i <= rows.size(); i++) {
+      if (i == rows.size() || rows.get(i).op() != rows.get(from).op()) {
+        runs.add(rows.subList(from, i));
+        from = i;
+      }
+    }
+    return runs;
+  }
+
+  private static final class PostgresSink implements Sink {
+    private static final String NODE_UPSERT_SQL = Loader.NODE_SQL.replace("DO NOTHING", """
+        DO UPDATE SET
+          public = EXCLUDED.public,
+          completion_pct = EXCLUDED.completion_pct,
+          gender = EXCLUDED.gender,
+          region = EXCLUDED.region,
+          last_login = EXCLUDED.last_login,
+          registration = EXCLUDED.registration,
+          age = EXCLUDED.age,
+          education = EXCLUDED.education,
+          smoking = EXCLUDED.smoking,
+          alcohol = EXCLUDED.alcohol
+        """);
+
+    private final Connection conn;
+    private final boolean delta;
+
+    PostgresSink(Connection conn, boolean delta) throws SQLException {
+      if (conn == null) {
+        throw new IllegalStateException("Postgres connection is null in BenchmarkContext");
+      }
+      this.conn = conn;
+      this.delta = delta;
+
+      try (Statement st = conn.createStatement()) {
+        st.execute("CREATE TABLE IF NOT EXISTS bench_meta (key TEXT PRIMARY KEY, value TEXT)");
+      }
+      conn.setAutoCommit(false);
+    }
+
+    @Override
+    public Checkpoint checkpoint() throws SQLException {
+      try (Statement st = conn.createStatement();
+           ResultSet rs = st.executeQuery("SELECT value FROM bench_meta WHERE key = 'load_checkpoint'")) {
+        Checkpoint checkpoint = rs.next() ? Checkpoint.decode(rs.getString(1)) : null;
+        conn.commit();
+        return checkpoint;
+      }
+    }
+
+    @Override
+    public void truncate() throws SQLException {
+      try (Statement st = conn.createStatement()) {
+        st.executeUpdate("TRUNCATE TABLE edges, nodes");
+        st.executeUpdate("DELETE FROM bench_meta WHERE key = 'load_checkpoint'");
+      }
+      SchemaProfile.resetForReload(conn);
+      conn.commit();
+    }
+
+    @Override
+    public void apply(Stage stage, List<Row> rows, Checkpoint next) throws SQLException {
+      try {
+        for (List<Row> run : runs(rows)) {
+          if (stage == Stage.NODES) {
+            applyNodes(run);
+          } else {
+            applyEdges(run);
+          }
+        }
+
+        try (PreparedStatement ps = conn.prepareStatement(
+            "INSERT INTO bench_meta VALUES ('load_checkpoint', ?) ON CONFLICT (key) DO UPDATE SET value = EXCLUDED.value")) {
+          ps.setString(1, next.encode());
+          ps.executeUpdate();
+        }
+        conn.commit();
+      } catch (SQLException e) {
+        conn.rollback();
+        throw e;
+      }
+
+      if (stage == Stage.DONE) {
+        conn.setAutoCommit(true);
+        try (Statement st = conn.createStatement()) {
+          st.execute("ANALYZE nodes");
+          st.execute("ANALYZE edges");
+        }
+      }
+    }
+
+    private void applyNodes(List<Row> run) throws SQLException {
+      if (run.get(0).op() == '+') {
+        try (PreparedStatement ps = conn.prepareStatement(delta ? NODE_UPSERT_SQL : Loader.NODE_SQL)) {
+          for (Row row : run) {
+            Loader.bindPostgresNode(ps, row.cols());
+            ps.addBatch();
+          }
+          ps.executeBatch();
+        }
+        return;
+      }
+
+      long[] ids = run.stream().mapToLong(r -> Long.parseLong(r.cols()[0])).toArray();
+      for (String sql : List.of(
+          "DELETE FROM edges WHERE start_id = ANY(?::bigint[])",
+          "DELETE FROM edges WHERE end_id = ANY(?::bigint[])",
+          "DELETE FROM nodes WHERE id = ANY(?::bigint[])")) {
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+          ps.setObject(1, ids);
+          ps.executeUpdate();
+        }
+      }
+    }
+
+    private void applyEdges(List<Row> run) throws SQLException {
+      // a delta must not duplicate an edge that is already there, the resumable full load starts from empty tables
+      boolean ifAbsent = delta && run.get(0).op() == '+';
+      String sql;
+      if (run.get(0).op() == '-') {
+        sql = "DELETE FROM edges WHERE start_id = ? AND end_id = ?";
+      } else if (ifAbsent) {
+        sql = "INSERT INTO edges (start_id, end_id) SELECT ?, ? WHERE NOT EXISTS (SELECT 1 FROM edges WHERE start_id = ? AND end_id = ?)";
+      } else {
+        sql = "INSERT INTO edges (start_id, end_id) VALUES (?, ?)";
+      }
+
+      try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        for (Row row : run) {
+          long u = Long.parseLong(row.cols()[0]);
+          long v = Long.parseLong(row.cols()[1]);
+          ps.setLong(1, u);
+          ps.setLong(2, v);
+          if (ifAbsent) {
+            ps.setLong(3, u);
+            ps.setLong(4, v);
+          }
+          ps.addBatch();
+        }
+        ps.executeBatch();
+      }
+    }
+
+    @Override
+    public void close() throws SQLException {
+      if (!conn.getAutoCommit()) {
+        conn.rollback();
+        conn.setAutoCommit(true);
+      }
+    }
+  }
+
+  private static final class Neo4jSink implements Sink {
+    private final Session session;
+
+    Neo4jSink(Session session) {
+      this.session = session;
+    }
+
+    @Override
+    public Checkpoint checkpoint() {
+      List<Record> records = session.executeRead(tx ->
+          tx.run("MATCH (c:LoadCheckpoint {key: 'load'}) RETURN c.value AS value").list());
+      return records.isEmpty() ? null : Checkpoint.decode(records.get(0).get("value").asString());
+    }
+
+    // bounded transactions instead of one huge delete, the checkpoint node goes with everything else
+    @Override
+    public void truncate() {
+      session.run("MATCH (n) CALL (n) { DETACH DELETE n } IN TRANSACTIONS OF 10000 ROWS").consume();
+    }
+
+    // executeWrite may retry the whole function, which is fine since every statement is idempotent
+    @Override
+    public void apply(Stage stage, List<Row> rows, Checkpoint next) {
+      session.executeWrite(tx -> {
+        for (List<Row> run : runs(rows)) {
+          if (stage == Stage.NODES) {
+            applyNodes(tx, run);
+          } else {
+            applyEdges(tx, run);
+          }
+        }
+        tx.run("MERGE (c:LoadCheckpoint {key: 'load'}) SET c.value = $value", Map.of("value", next.encode()));
+        return null;
+      });
+    }
+
+    private static void applyNodes(TransactionContext tx, List<Row> run) {
+      if (run.get(0).op() == '+') {
+        Loader.writeNeoNodes(tx, run.stream().map(r -> Loader.neo4jNode(r.cols())).toList());
+      } else {
+        List<Long> ids = run.stream().map(r -> Long.parseLong(r.cols()[0])).toList();
+        tx.run("UNWIND $ids AS id MATCH (p:Person {id: id}) DETACH DELETE p", Map.of("ids", ids));
+      }
+    }
+
+    private static void applyEdges(TransactionContext tx, List<Row> run) {
+      List<Map<String, Object>> edges = run.stream()
+          .map(r -> Map.<String, Object>of("start", Long.parseLong(r.cols()[0]), "end", Long.parseLong(r.cols()[1])))
+          .toList();
+      if (run.get(0).op() == '+') {
+        Loader.writeNeoEdges(tx, edges);
+      } else {
+        tx.run(Loader.NEO_EDGES_DELETE_CYPHER, Map.of("edges", edges));
+      }
+    }
+
+    @Override
+    public void close() {
+      session.close();
+    }
+  }
+}
@@ -0,0 +1,355 @@
+package tailored;
+
+import org.neo4j.driver.Session;
+import org.neo4j.driver.SessionConfig;
+import org.neo4j.graphdb.GraphDatabaseService;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// htap mode: --ingest=<edges file> streams edges into the database from background threads while the
+// runner measures the read workload. Lines are "start<TAB>end" or, like a delta file, "+|-<TAB>start<TAB>end".
+//   --ingest-rate=N     edges per second over all ingest threads, 0 = as fast as the database takes them
+//   --ingest-batch=N    edges per transaction (100)
+//   --ingest-threads=N  concurrent writers (1)
+// every batch is its own transaction, the times they committed at end up on the run's timeline
+final class Ingestor {
+  // one committed (or failed) batch, times relative to the start of the run
+  record Batch(long doneNs, long latencyNs, int edges, boolean failed) {
+  }
+
+  private record Edge(boolean add, long start, long end) {
+  }
+
+  private final BenchmarkContext ctx;
+  private final Path path;
+  private final double edgesPerSec;
+  private final int batchSize;
+  private long startWall; // set by start, before the threads see it
+  private final LineReader reader;
+  private final AtomicLong nextBatch = new AtomicLong();
+  private final AtomicBoolean stopped = new AtomicBoolean();
+  private final List<Batch> batches = new ArrayList<>();
+  private final List<Thread> threads = new ArrayList<>();
+  private final List<Writer> writers = new ArrayList<>(); // closed by their thread once it runs
+  private boolean started;
+  private volatile boolean exhausted;
+
+  private Ingestor(BenchmarkContext ctx, Path path) throws IOException {
+    this.ctx = ctx;
+    this.path = path;
+    this.edgesPerSec = ctx.config.intOption("ingest-rate", 0);
+    this.batchSize = Math.max(1, ctx.config.intOption("ingest-batch", 100));
+    this.reader = LineReader.open(path, 0);
+  }
+
+  // null unless --ingest is set. ctx only lends its configuration and shared driver / database,
+  // every ingest thread gets its own connection or session, opened here before the measurement starts
+  static Ingestor open(BenchmarkContext ctx) throws Exception {
+    String file = ctx.config.option("ingest", null);
+    if (file == null) {
+      return null;
+    }
+
+    Ingestor ingestor = new Ingestor(ctx, Path.of(file));
+    int threads = Math.max(1, ctx.config.intOption("ingest-threads", 1));
+    try {
+      for (int t = 0; t < threads; t++) {
+        Writer writer = ingestor.openWriter();
+        ingestor.writers.add(writer);
+        Thread thread = new Thread(() -> ingestor.loop(writer), "ingest-" + t);
+        thread.setDaemon(true);
+        ingestor.threads.add(thread);
+      }
+    } catch (Exception e) {
+      ingestor.stop(); // the writers opened so far
+      throw e;
+    }
+    return ingestor;
+  }
+
+  // --ingest-rate schedules the batches from startWall on, the start of the measured reads
+  void start(long startWall) {
+    this.startWall = startWall;
+    this.started = true;
+    threads.forEach(Thread::start);
+  }
+
+  // lets the running batches commit, then closes everything. Also when the run failed before start
+  void stop() throws Exception {
+    stopped.set(true);
+    if (started) {
+      for (Thread thread : threads) {
+        thread.join();
+      }
+    } else {
+      for (Writer writer : writers) {
+        writer.close();
+      }
+    }
+    reader.close();
+  }
+
+  List<Batch> batches() {
+    synchronized (batches) {
+      return List.copyOf(batches);
+    }
+  }
+
+  Map<String, String> describe(long runNs) {
+    List<Batch> done = batches();
+    long edges = 0;
+    long failed = 0;
+    long[] latenciesNs = new long[done.size()];
+    for (int i = 0; i < done.size(); i++) {
+      Batch b = done.get(i);
+      if (b.failed()) {
+        failed++;
+        latenciesNs[i] = -1;
+      } else {
+        edges += b.edges();
+        latenciesNs[i] = b.latencyNs();
+      }
+    }
+    LatencyStats stats = LatencyStats.of(latenciesNs, latenciesNs.length);
+
+    Map<String, String> lines = new LinkedHashMap<>();
+    lines.put("INGEST Source", path.toString());
+    lines.put("INGEST Edges", String.valueOf(edges));
+    lines.put("INGEST Batches", String.valueOf(done.size() - failed));
+    lines.put("INGEST FailedBatches", String.valueOf(failed));
+    lines.put("INGEST Throughput(edges/sec)", String.format("%.2f", edges * 1e9 / Math.max(1, runNs)));
+    lines.put("INGEST BatchAvgLatency(us)", String.format("%.2f", stats.avgUs()));
+    lines.put("INGEST BatchP99Latency(us)", String.valueOf(stats.p99Us()));
+    lines.put("INGEST Exhausted", String.valueOf(exhausted));
+    return lines;
+  }
+
+  // reads and ingested edges per --timeline-ms window (1000), reads by the time they completed
+  Map<String, String> timeline(long[] readDoneNs, long[] readLatenciesNs, int n, long runNs) {
+    long bucketNs = Math.max(1, ctx.config.intOption("timeline-ms", 1000)) * 1_000_000L;
+    int buckets = (int) (runNs / bucketNs) + 1;
+
+    int[] sizes = new int[buckets];
+    for (int i = 0; i < n; i++) {
+      sizes[bucket(readDoneNs[i], bucketNs, buckets)]++;
+    }
+    long[][] reads = new long[buckets][];
+    for (int b = 0; b < buckets; b++) {
+      reads[b] = new long[sizes[b]];
+      sizes[b] = 0;
+    }
+    for (int i = 0; i < n; i++) {
+      int b = bucket(readDoneNs[i], bucketNs, buckets);
+      reads[b][sizes[b]++] = readLatenciesNs[i];
+    }
+
+    long[] ingested = new long[buckets];
+    for (Batch batch : batches()) {
+      if (!batch.failed()) {
+        ingested[bucket(batch.doneNs(), bucketNs, buckets)] += batch.edges();
+      }
+    }
+
+    Map<String, String> lines = new LinkedHashMap<>();
+    for (int b = 0; b < buckets; b++) {
+      String key = "TIMELINE[" + b * bucketNs / 1_000_000L + "ms] ";
+      LatencyStats stats = LatencyStats.of(reads[b], reads[b].length);
+      lines.put(key + "Reads", String.valueOf(stats.count()));
+      lines.put(key + "ReadP50Latency(us)", String.valueOf(stats.p50Us()));
+      lines.put(key + "ReadP99Latency(us)", String.valueOf(stats.p99Us()));
+      lines.put(key + "IngestedEdges", String.valueOf(ingested[b]));
+    }
+    return lines;
+  }
+
+  private static int bucket(long ns, long bucketNs, int buckets) {
+    return (int) Math.min(Math.max(0, ns / bucketNs), buckets - 1);
+  }
+
+  private void loop(Writer writer) {
+    boolean reported = false;
+    try (writer) {
+      while (!stopped.get()) {
+        long seq = nextBatch.getAndIncrement();
+        if (edgesPerSec > 0) {
+          long scheduled = startWall + (long) (seq * batchSize * 1_000_000_000.0 / edgesPerSec);
+          for (long now = System.nanoTime(); now < scheduled && !stopped.get(); now = System.nanoTime()) {
+            LockSupport.parkNanos(Math.min(scheduled - now, 10_000_000L));
+          }
+          if (stopped.get()) {
+            break;
+          }
+        }
+
+        List<Edge> edges = nextEdges();
+        if (edges.isEmpty()) {
+          exhausted = true;
+          break;
+        }
+
+        long start = System.nanoTime();
+        boolean failed = false;
+        try {
+          writer.apply(edges);
+        } catch (Exception e) {
+          failed = true;
+          if (!reported) {
+            System.err.println("First ingest error on " + Thread.currentThread().getName() + ": " + e);
+            reported = true;
+          }
+        }
+        long end = System.nanoTime();
+        synchronized (batches) {
+          batches.add(new Batch(end - startWall, end - start, edges.size(), failed));
+        }
+      }
+    } catch (Exception e) {
+      System.err.println("Ingest thread " + Thread.currentThread().getName() + " stopped: " + e);
+    }
+  }
+
+  private List<Edge> nextEdges() throws IOException {
+    List<Edge> edges = new ArrayList<>(batchSize);
+    synchronized (reader) {
+      String line;
+      while (edges.size() < batchSize && (line = reader.readLine()) != null) {
+        String[] cols = line.split("\t", -1);
+        boolean delta = cols.length >= 3 && (cols[0].equals("+") || cols[0].equals("-"));
+        int first = delta ? 1 : 0;
+        if (cols.length < first + 2) {
+          continue; // corrupt line, ignore
+        }
+        edges.add(new Edge(!cols[0].equals("-"), Long.parseLong(cols[first]), Long.parseLong(cols[first + 1])));
+      }
+    }
+    return edges;
+  }
+
+  private Writer openWriter() throws SQLException {
+    Dbms dbms = ctx.config.dbms();
+    if (dbms.sql()) {
+      return new SqlWriter(dbms.dialect().connectForThread(ctx.config, ctx.pgConn));
+    } else if (dbms == Dbms.NEO4J) {
+      assert ctx.neoDriver != null;
+      return new Neo4jWriter(ctx.neoDriver.session(SessionConfig.forDatabase("neo4j")));
+    } else {
+      assert ctx.neoDb != null;
+      return new EmbeddedWriter(ctx.neoDb);
+    }
+  }
+
+  private interface Writer extends AutoCloseable {
+    void apply(List<Edge> edges) throws Exception;
+
+    @Override
+    void close() throws Exception;
+  }
+
+  private static final class SqlWriter implements Writer {
+    private final Connection conn;
+
+    SqlWriter(Connection conn) throws SQLException {
+      this.conn = conn;
+      conn.setAutoCommit(false);
+    }
+
+    @Override
+    public void apply(List<Edge> edges) throws SQLException {
+      try (PreparedStatement insert = conn.prepareStatement("INSERT INTO edges (start_id, end_id) VALUES (?, ?)");
+           PreparedStatement delete = conn.prepareStatement("DELETE FROM edges WHERE start_id = ? AND end_id = ?")) {
+        for (List<Edge> run : runs(edges)) {
+          PreparedStatement ps = run.get(0).add() ? insert : delete;
+          for (Edge e : run) {
+            ps.setLong(1, e.start());
+            ps.setLong(2, e.end());
+            ps.addBatch();
+          }
+          ps.executeBatch();
+        }
+        conn.commit();
+      } catch (SQLException e) {
+        conn.rollback();
+        throw e;
+      }
+    }
+
+    @Override
+    public void close() throws SQLException {
+      conn.close();
+    }
+  }
+
+  private static final class Neo4jWriter implements Writer {
+    private final Session session;
+
+    Neo4jWriter(Session session) {
+      this.session = session;
+    }
+
+    @Override
+    public void apply(List<Edge> edges) {
+      session.executeWrite(tx -> {
+        for (List<Edge> run : runs(edges)) {
+          tx.run(cypher(run), Map.of("edges", params(run)));
+        }
+        return null;
+      });
+    }
+
+    @Override
+    public void close() {
+      session.close();
+    }
+  }
+
+  private record EmbeddedWriter(GraphDatabaseService db) implements Writer {
+    @Override
+    public void apply(List<Edge> edges) {
+      try (org.neo4j.graphdb.Transaction tx = db.beginTx()) {
+        for (List<Edge> run : runs(edges)) {
+          tx.execute(cypher(run), Map.of("edges", params(run))).close();
+        }
+        tx.commit();
+      }
+    }
+
+    @Override
+    public void close() {
+      // the database belongs to the run's context
+    }
+  }
+
+  // runs of consecutive edges with the same op, so adds and removes keep their file order
+  private static List<List<Edge>> runs(List<Edge> edges) {
+    List<List<Edge>> runs = new ArrayList<>();
+    int from = 0;
+    for (int i = 1; i <= edges.size(); i++) {
+      if (i == edges.size() || edges.get(i).add() != edges.get(from).add()) {
+        runs.add(edges.subList(from, i));
+        from = i;
+      }
+    }
+    return runs;
+  }
+
+  private static String cypher(List<Edge> run) {
+    return run.get(0).add() ? Loader.NEO_EDGES_CYPHER : Loader.NEO_EDGES_DELETE_CYPHER;
+  }
+
+  private static List<Map<String, Object>> params(List<Edge> run) {
+    return run.stream()
+        .map(e -> Map.<String, Object>of("start", e.start(), "end", e.end()))
+        .toList();
+  }
+}
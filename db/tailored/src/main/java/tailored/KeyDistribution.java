@@ -0,0 +1,66 @@
+package tailored;
+
+import java.util.Arrays;
+import java.util.Random;
+
+// which sampled node ids the operations run on (--key-distribution).
+// uniform: every operation gets its own random id, as sampled by the workload.
+// zipf: operation i draws one of the sampled ids with probability proportional to 1 / rank^s (--zipf-exponent=s,
+// default 1.0), so a few hot ids are queried over and over the way a skewed production load would
+final class KeyDistribution {
+  private KeyDistribution() {
+  }
+
+  static void apply(BenchmarkContext ctx, Workload workload) throws Exception {
+    String distribution = ctx.config.option("key-distribution", "uniform");
+    if (distribution.equalsIgnoreCase("uniform")) {
+      return;
+    }
+    if (!distribution.equalsIgnoreCase("zipf")) {
+      throw new IllegalArgumentException("Unknown --key-distribution " + distribution + ", expected uniform or zipf");
+    }
+
+    int n = ctx.config.operations();
+    if (n == 0) {
+      throw new IllegalArgumentException("--key-distribution=zipf needs at least one operation");
+    }
+    if (workload.nodeIds(0) == null) {
+      throw new IllegalArgumentException(ctx.config.workloadType() + " doesn't run on node ids, --key-distribution doesn't apply");
+    }
+    long[][] sampled = new long[n][];
+    for (int i = 0; i < n; i++) {
+      sampled[i] = workload.nodeIds(i);
+    }
+
+    double[] cdf = zipfCdf(n, Double.parseDouble(ctx.config.option("zipf-exponent", "1.0")));
+    Random random = new Random(123); // same sequence on every backend
+    boolean pairs = sampled[0].length > 1;
+    long[] startIds = new long[n];
+    long[] endIds = pairs ? new long[n] : null;
+    for (int i = 0; i < n; i++) {
+      int rank = Arrays.binarySearch(cdf, random.nextDouble());
+      long[] ids = sampled[Math.min(n - 1, rank < 0 ? -rank - 1 : rank)];
+      startIds[i] = ids[0];
+      if (pairs) {
+        endIds[i] = ids[1];
+      }
+    }
+    workload.useIds(ctx, startIds, endIds);
+  }
+
+  private static double[] zipfCdf(int n, double exponent) {
+    if (exponent <= 0) {
+      throw new IllegalArgumentException("--zipf-exponent must be positive");
+    }
+    double[] cdf = new double[n];
+    double sum = 0;
+    for (int rank = 0; rank < n; rank++) {
+      sum += 1 / Math.pow(rank + 1, exponent);
+      cdf[rank] = sum;
+    }
+    for (int rank = 0; rank < n; rank++) {
+      cdf[rank] /= sum;
+    }
+    return cdf;
+  }
+}
@@ -0,0 +1,87 @@
+package tailored;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// summary of a set of latencies, negative samples (= not recorded) are ignored
+public record LatencyStats(
+    int count,
+    double avgUs,
+    long p50Us,
+    long p95Us,
+    long p99Us,
+    long maxUs
+) {
+    public static LatencyStats of(long[] latenciesNs, int n) {
+        long[] sorted = new long[n];
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            if (latenciesNs[i] >= 0) {
+                sorted[count++] = latenciesNs[i];
+            }
+        }
+
+        if (count == 0) {
+            return new LatencyStats(0, 0, 0, 0, 0, 0);
+        }
+
+        sorted = Arrays.copyOf(sorted, count);
+        Arrays.sort(sorted);
+
+        long sumNs = 0;
+        for (long v : sorted) sumNs += v;
+
+        return new LatencyStats(
+            count,
+            sumNs / 1000.0 / count,
+            percentile(sorted, 0.50) / 1000,
+            percentile(sorted, 0.95) / 1000,
+            percentile(sorted, 0.99) / 1000,
+            sorted[count - 1] / 1000
+        );
+    }
+
+    // groups latencies by log2 of the matching key (0, 1, 2-3, 4-7, ...), negative keys are skipped
+    public static Map<String, LatencyStats> byLog2Bucket(long[] latenciesNs, long[] keys, int n) {
+        int[] bucketOf = new int[n];
+        int[] sizes = new int[65];
+        for (int i = 0; i < n; i++) {
+            bucketOf[i] = keys[i] < 0 ? -1 : 64 - Long.numberOfLeadingZeros(keys[i]);
+            if (bucketOf[i] >= 0) {
+                sizes[bucketOf[i]]++;
+            }
+        }
+
+        Map<String, LatencyStats> buckets = new LinkedHashMap<>();
+        for (int b = 0; b < sizes.length; b++) {
+            if (sizes[b] == 0) {
+                continue;
+            }
+
+            long[] values = new long[sizes[b]];
+            int j = 0;
+            for (int i = 0; i < n; i++) {
+                if (bucketOf[i] == b) {
+                    values[j++] = latenciesNs[i];
+                }
+            }
+            buckets.put(bucketLabel(b), of(values, values.length));
+        }
+        return buckets;
+    }
+
+    private static String bucketLabel(int bucket) {
+        if (bucket <= 1) {
+            return String.valueOf(bucket);
+        }
+        long lo = 1L << (bucket - 1);
+        long hi = bucket == 64 ? Long.MAX_VALUE : (1L << bucket) - 1;
+        return lo + "-" + hi;
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        int i = (int) Math.floor(p * sorted.length) - 1;
+        return sorted[Math.max(0, i)];
+    }
+}
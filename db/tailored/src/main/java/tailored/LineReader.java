@@ -0,0 +1,79 @@
+package tailored;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// reads a text file line by line and knows the byte offset of the next line, so a load can be
+// checkpointed at a line boundary and reopened there later
+final class LineReader implements AutoCloseable {
+  private final FileChannel channel;
+  private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+  private byte[] line = new byte[256];
+  private long offset;
+
+  private LineReader(FileChannel channel, long offset) {
+    this.channel = channel;
+    this.offset = offset;
+    buffer.flip(); // starts empty
+  }
+
+  static LineReader open(Path path, long offset) throws IOException {
+    FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+    if (offset > channel.size()) {
+      channel.close();
+      throw new IllegalStateException("Checkpoint offset " + offset + " is past the end of " + path);
+    }
+    channel.position(offset);
+    return new LineReader(channel, offset);
+  }
+
+  // next line without its terminator, or null at the end of the file
+  String readLine() throws IOException {
+    int len = 0;
+    boolean any = false;
+    while (true) {
+      if (!buffer.hasRemaining()) {
+        buffer.clear();
+        int read = channel.read(buffer);
+        buffer.flip();
+        if (read <= 0) {
+          break;
+        }
+      }
+
+      byte b = buffer.get();
+      offset++;
+      any = true;
+      if (b == '\n') {
+        break;
+      }
+      if (len == line.length) {
+        line = Arrays.copyOf(line, len * 2);
+      }
+      line[len++] = b;
+    }
+
+    if (!any) {
+      return null;
+    }
+    if (len > 0 && line[len - 1] == '\r') {
+      len--;
+    }
+    return new String(line, 0, len, StandardCharsets.UTF_8);
+  }
+
+  // byte offset of the first line not yet returned
+  long offset() {
+    return offset;
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+}
@@ -3,6 +3,9 @@ package tailored;
 import org.neo4j.driver.Driver;
 import org.neo4j.driver.Session;
 import org.neo4j.driver.SessionConfig;
+import org.neo4j.driver.TransactionContext;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
 
 import java.io.IOException;
 import java.nio.file.Files;
@@ -12,9 +15,55 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Stream;
 
 public class Loader {
+  static final String NODE_SQL = """
+          INSERT INTO nodes (
+            id,
+            public,
+            completion_pct,
+            gender,
+            region,
+            last_login,
+            registration,
+            age,
+            education,
+            smoking,
+            alcohol
+          ) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+          ON CONFLICT (id) DO NOTHING
+          """;
+
+  static final String NEO_NODES_CYPHER = """
+          UNWIND $nodes AS n
+          MERGE (p:Person {id: n.id})
+          SET
+          p.public          = n.public,
+          p.completion_pct  = n.completion_pct,
+          p.gender          = n.gender,
+          p.region          = n.region,
+          p.last_login      = n.last_login,
+          p.registration    = n.registration,
+          p.age             = n.age,
+          p.education       = n.education,
+          p.smoking         = n.smoking,
+          p.alcohol         = n.alcohol
+          """;
+
+  static final String NEO_EDGES_CYPHER = """
+          UNWIND $edges AS e
+          MATCH (u:Person {id: e.start}), (v:Person {id: e.end})
+          MERGE (u)-[:FRIENDS_WITH]->(v)
+          """;
+
+  static final String NEO_EDGES_DELETE_CYPHER = """
+          UNWIND $edges AS e
+          MATCH (:Person {id: e.start})-[r:FRIENDS_WITH]->(:Person {id: e.end})
+          DELETE r
+          """;
+
   public static void runLoad(Dbms dbms, Path nodesPath, Path edgesPath) {
     BenchmarkConfig config = BenchmarkConfig.create(
             dbms,
@@ -27,8 +76,9 @@ public class Loader {
 
     try (BenchmarkContext ctx = ConnectionFactory.openContext(config)) {
       switch (dbms) {
-        case POSTGRES -> loadPostgres(ctx.pgConn, nodesPath, edgesPath);
+        case POSTGRES, DUCKDB, H2, SQLITE -> loadSql(ctx.pgConn, dbms.dialect(), nodesPath, edgesPath);
         case NEO4J -> loadNeo4j(ctx.neoDriver, nodesPath, edgesPath);
+        case NEO4J_EMBEDDED -> loadNeo4jEmbedded(ctx.neoDb, nodesPath, edgesPath);
         default -> throw new IllegalArgumentException("Unsupported DBMS: " + dbms);
       }
     } catch (Exception e) {
@@ -36,38 +86,27 @@ public class Loader {
     }
   }
 
-  private static void loadPostgres(Connection conn, Path nodesPath, Path edgesPath) throws SQLException {
+  private static void loadSql(Connection conn, SqlDialect dialect, Path nodesPath, Path edgesPath) throws SQLException {
     if (conn == null) {
-      throw new IllegalStateException("Postgres connection is null in BenchmarkContext");
+      throw new IllegalStateException("SQL connection is null in BenchmarkContext");
     }
 
+    if (dialect.embedded()) {
+      dialect.createTables(conn); // nothing ran init.sql on a fresh in-process store
+    }
     conn.setAutoCommit(false);
 
     // TODO: need to implement error handling for invalid paths.
 
     try (Statement st = conn.createStatement()) {
-      st.executeUpdate("TRUNCATE TABLE edges");
-      st.executeUpdate("TRUNCATE TABLE nodes");
+      st.executeUpdate(dialect.truncate("edges"));
+      st.executeUpdate(dialect.truncate("nodes"));
+    }
+    if (dialect == SqlDialect.POSTGRES) {
+      SchemaProfile.resetForReload(conn); // on the empty tables, in the load's transaction
     }
 
-    String nodeSql = """
-            INSERT INTO nodes (
-              id,
-              public,
-              completion_pct,
-              gender,
-              region,
-              last_login,
-              registration,
-              age,
-              education,
-              smoking,
-              alcohol
-            ) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
-            ON CONFLICT (id) DO NOTHING
-            """;
-
-    try (PreparedStatement ps = conn.prepareStatement(nodeSql); Stream<String> lines = Files.lines(nodesPath)) {
+    try (PreparedStatement ps = conn.prepareStatement(dialect.nodeInsertSql()); Stream<String> lines = Files.lines(nodesPath)) {
       final int batchSize = 10_000;
       int batchCount = 0;
 
@@ -77,47 +116,7 @@ public class Loader {
           continue; // corrupt line, ignore
         }
 
-        long userId = Long.parseLong(cols[0]);
-        Integer pub = parseIntOrNull(cols[1]);
-        Integer completion = parseIntOrNull(cols[2]);
-        Integer gender = parseIntOrNull(cols[3]);
-        String region = parseTextOrNull(cols[4]);
-        String lastLogin = parseTextOrNull(cols[5]);
-        String registration = parseTextOrNull(cols[6]);
-        Integer age = parseIntOrNull(cols[7]);
-        String education = cols.length > 19 ? parseTextOrNull(cols[19]) : null;
-        String smoking = cols.length > 22 ? parseTextOrNull(cols[22]) : null;
-        String alcohol = cols.length > 23 ? parseTextOrNull(cols[23]) : null;
-
-        int i = 1;
-        ps.setLong(i++, userId);
-        if (pub != null) {
-          ps.setInt(i++, pub);
-        } else {
-          ps.setNull(i++, Types.INTEGER);
-        }
-        if (completion != null) {
-          ps.setInt(i++, completion);
-        } else {
-          ps.setNull(i++, Types.INTEGER);
-        }
-        if (gender != null) {
-          ps.setInt(i++, gender);
-        } else {
-          ps.setNull(i++, Types.INTEGER);
-        }
-        ps.setString(i++, region);
-        ps.setString(i++, lastLogin);
-        ps.setString(i++, registration);
-        if (age != null) {
-          ps.setInt(i++, age);
-        } else {
-          ps.setNull(i++, Types.INTEGER);
-        }
-        ps.setString(i++, education);
-        ps.setString(i++, smoking);
-        ps.setString(i++, alcohol);
-
+        bindPostgresNode(ps, cols);
         ps.addBatch();
         if (++batchCount % batchSize == 0) {
           ps.executeBatch();
@@ -127,39 +126,54 @@ public class Loader {
       ps.executeBatch();
       System.out.println("Batch " + ((batchCount) / batchSize) + " completed");
 
-      String edgeSql = "INSERT INTO edges (start_id, end_id) VALUES (?, ?)";
-      try (PreparedStatement ps2 = conn.prepareStatement(edgeSql);
-           Stream<String> lines2 = Files.lines(edgesPath)) {
+      if (dialect.bulkLoadEdges(conn, edgesPath)) {
+        System.out.println("Edges bulk loaded");
+      } else {
+        loadSqlEdges(conn, edgesPath);
+      }
 
-        final int batchSize2 = 20_000;
-        int batchCount2 = 0;
+      conn.commit();
+      conn.setAutoCommit(true);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
 
-        for (String line : (Iterable<String>) lines2::iterator) {
-          String[] cols = line.split("\t", -1);
-          if (cols.length < 2) {
-            continue;
-          }
+    if (dialect.embedded()) {
+      dialect.createIndexes(conn);
+      try (Statement st = conn.createStatement()) {
+        st.execute("ANALYZE");
+      }
+    }
+  }
 
-          long u = Long.parseLong(cols[0]);
-          long v = Long.parseLong(cols[1]);
+  private static void loadSqlEdges(Connection conn, Path edgesPath) throws SQLException, IOException {
+    String edgeSql = "INSERT INTO edges (start_id, end_id) VALUES (?, ?)";
+    try (PreparedStatement ps2 = conn.prepareStatement(edgeSql);
+         Stream<String> lines2 = Files.lines(edgesPath)) {
 
-          ps2.setLong(1, u);
-          ps2.setLong(2, v);
-          ps2.addBatch();
+      final int batchSize2 = 20_000;
+      int batchCount2 = 0;
 
-          if (++batchCount2 % batchSize2 == 0) {
-            ps2.executeBatch();
-            System.out.println("Batch " + ((batchCount2 - 1) / batchSize2) + " completed");
-          }
+      for (String line : (Iterable<String>) lines2::iterator) {
+        String[] cols = line.split("\t", -1);
+        if (cols.length < 2) {
+          continue;
         }
-        ps2.executeBatch();
-        System.out.println("Batch " + ((batchCount2) / batchSize2) + " completed");
-      }
 
-      conn.commit();
-      conn.setAutoCommit(true);
-    } catch (IOException e) {
-      throw new RuntimeException(e);
+        long u = Long.parseLong(cols[0]);
+        long v = Long.parseLong(cols[1]);
+
+        ps2.setLong(1, u);
+        ps2.setLong(2, v);
+        ps2.addBatch();
+
+        if (++batchCount2 % batchSize2 == 0) {
+          ps2.executeBatch();
+          System.out.println("Batch " + ((batchCount2 - 1) / batchSize2) + " completed");
+        }
+      }
+      ps2.executeBatch();
+      System.out.println("Batch " + ((batchCount2) / batchSize2) + " completed");
     }
   }
 
@@ -187,52 +201,7 @@ public class Loader {
             continue;
           }
 
-          long userId = Long.parseLong(cols[0]);
-          Integer pub = parseIntOrNull(cols[1]);
-          Integer completion = parseIntOrNull(cols[2]);
-          Integer gender = parseIntOrNull(cols[3]);
-          String region = parseTextOrNull(cols[4]);
-          String lastLogin = parseTextOrNull(cols[5]);
-          String registration = parseTextOrNull(cols[6]);
-          Integer age = parseIntOrNull(cols[7]);
-          String education = cols.length > 19 ? parseTextOrNull(cols[19]) : null;
-          String smoking = cols.length > 22 ? parseTextOrNull(cols[22]) : null;
-          String alcohol = cols.length > 23 ? parseTextOrNull(cols[23]) : null;
-
-          Map<String, Object> m = new HashMap<>();
-          m.put("id", userId);
-          if (pub != null) {
-            m.put("public", pub);
-          }
-          if (completion != null) {
-            m.put("completion_pct", completion);
-          }
-          if (gender != null) {
-            m.put("gender", gender);
-          }
-          if (region != null) {
-            m.put("region", region);
-          }
-          if (lastLogin != null) {
-            m.put("last_login", lastLogin);
-          }
-          if (registration != null) {
-            m.put("registration", registration);
-          }
-          if (age != null) {
-            m.put("age", age);
-          }
-          if (education != null) {
-            m.put("education", education);
-          }
-          if (smoking != null) {
-            m.put("smoking", smoking);
-          }
-          if (alcohol != null) {
-            m.put("alcohol", alcohol);
-          }
-
-          batch.add(m);
+          batch.add(neo4jNode(cols));
 
           if (batch.size() >= batchSize) {
             flushNeoNodes(session, batch);
@@ -278,36 +247,182 @@ public class Loader {
 
   private static void flushNeoNodes(Session session, List<Map<String, Object>> batch) {
     session.executeWrite(tx -> {
-      tx.run("""
-                UNWIND $nodes AS n
-                MERGE (p:Person {id: n.id})
-                SET
-                p.public          = n.public,
-                p.completion_pct  = n.completion_pct,
-                p.gender          = n.gender,
-                p.region          = n.region,
-                p.last_login      = n.last_login,
-                p.registration    = n.registration,
-                p.age             = n.age,
-                p.education       = n.education,
-                p.smoking         = n.smoking,
-                p.alcohol         = n.alcohol
-              """, Map.of("nodes", batch));
+      writeNeoNodes(tx, batch);
       return null;
     });
   }
 
   private static void flushNeoEdges(Session session, List<Map<String, Object>> batch) {
     session.executeWrite(tx -> {
-      tx.run("""
-              UNWIND $edges AS e
-              MATCH (u:Person {id: e.start}), (v:Person {id: e.end})
-              MERGE (u)-[:FRIENDS_WITH]->(v)
-              """, Map.of("edges", batch));
+      writeNeoEdges(tx, batch);
       return null;
     });
   }
 
+  static void writeNeoNodes(TransactionContext tx, List<Map<String, Object>> batch) {
+    tx.run(NEO_NODES_CYPHER, Map.of("nodes", batch));
+  }
+
+  static void writeNeoEdges(TransactionContext tx, List<Map<String, Object>> batch) {
+    tx.run(NEO_EDGES_CYPHER, Map.of("edges", batch));
+  }
+
+  // same batches as loadNeo4j, run through the embedded transaction api. An embedded store starts out
+  // without the server's setup, so the index the MERGE/MATCH lookups rely on is created here
+  private static void loadNeo4jEmbedded(GraphDatabaseService db, Path nodesPath, Path edgesPath) throws IOException {
+    if (db == null) {
+      throw new IllegalStateException("Embedded neo4j database is null in BenchmarkContext");
+    }
+
+    // wipe graph, in chunks so a large store doesn't build one huge transaction state
+    long deleted;
+    do {
+      deleted = db.executeTransactionally("MATCH (n) WITH n LIMIT 10000 DETACH DELETE n RETURN count(*) AS deleted",
+          Map.of(), rs -> (Long) rs.next().get("deleted"));
+    } while (deleted > 0);
+    db.executeTransactionally("CREATE INDEX person_id IF NOT EXISTS FOR (p:Person) ON (p.id)");
+    try (Transaction tx = db.beginTx()) {
+      tx.schema().awaitIndexesOnline(10, TimeUnit.MINUTES);
+    }
+
+    final int batchSize = 10_000;
+    int batchCount = 1;
+    try (Stream<String> lines = Files.lines(nodesPath)) {
+      List<Map<String, Object>> batch = new ArrayList<>(batchSize);
+      for (String line : (Iterable<String>) lines::iterator) {
+        String[] cols = line.split("\t", -1);
+        if (cols.length < 8) {
+          continue;
+        }
+
+        batch.add(neo4jNode(cols));
+        if (batch.size() >= batchSize) {
+          db.executeTransactionally(NEO_NODES_CYPHER, Map.of("nodes", batch));
+          batch.clear();
+          System.out.println("Batch " + batchCount++ + " completed");
+        }
+      }
+      if (!batch.isEmpty()) {
+        db.executeTransactionally(NEO_NODES_CYPHER, Map.of("nodes", batch));
+        System.out.println("Batch " + batchCount + " completed");
+      }
+    }
+
+    batchCount = 0;
+    try (Stream<String> lines = Files.lines(edgesPath)) {
+      List<Map<String, Object>> batch = new ArrayList<>(batchSize);
+      for (String line : (Iterable<String>) lines::iterator) {
+        String[] cols = line.split("\t", -1);
+        if (cols.length < 2) {
+          continue;
+        }
+
+        batch.add(Map.of("start", Long.parseLong(cols[0]), "end", Long.parseLong(cols[1])));
+        if (batch.size() >= batchSize) {
+          db.executeTransactionally(NEO_EDGES_CYPHER, Map.of("edges", batch));
+          batch.clear();
+          System.out.println("Batch " + batchCount++ + " completed");
+        }
+      }
+      if (!batch.isEmpty()) {
+        db.executeTransactionally(NEO_EDGES_CYPHER, Map.of("edges", batch));
+        System.out.println("Batch " + batchCount + " completed");
+      }
+    }
+  }
+
+  // cols is one line of the nodes file, only columns 0-7, 19, 22 and 23 are loaded
+  static void bindPostgresNode(PreparedStatement ps, String[] cols) throws SQLException {
+    long userId = Long.parseLong(cols[0]);
+    Integer pub = parseIntOrNull(cols[1]);
+    Integer completion = parseIntOrNull(cols[2]);
+    Integer gender = parseIntOrNull(cols[3]);
+    String region = parseTextOrNull(cols[4]);
+    String lastLogin = parseTextOrNull(cols[5]);
+    String registration = parseTextOrNull(cols[6]);
+    Integer age = parseIntOrNull(cols[7]);
+    String education = cols.length > 19 ? parseTextOrNull(cols[19]) : null;
+    String smoking = cols.length > 22 ? parseTextOrNull(cols[22]) : null;
+    String alcohol = cols.length > 23 ? parseTextOrNull(cols[23]) : null;
+
+    int i = 1;
+    ps.setLong(i++, userId);
+    if (pub != null) {
+      ps.setInt(i++, pub);
+    } else {
+      ps.setNull(i++, Types.INTEGER);
+    }
+    if (completion != null) {
+      ps.setInt(i++, completion);
+    } else {
+      ps.setNull(i++, Types.INTEGER);
+    }
+    if (gender != null) {
+      ps.setInt(i++, gender);
+    } else {
+      ps.setNull(i++, Types.INTEGER);
+    }
+    ps.setString(i++, region);
+    ps.setString(i++, lastLogin);
+    ps.setString(i++, registration);
+    if (age != null) {
+      ps.setInt(i++, age);
+    } else {
+      ps.setNull(i++, Types.INTEGER);
+    }
+    ps.setString(i++, education);
+    ps.setString(i++, smoking);
+    ps.setString(i++, alcohol);
+  }
+
+  static Map<String, Object> neo4jNode(String[] cols) {
+    long userId = Long.parseLong(cols[0]);
+    Integer pub = parseIntOrNull(cols[1]);
+    Integer completion = parseIntOrNull(cols[2]);
+    Integer gender = parseIntOrNull(cols[3]);
+    String region = parseTextOrNull(cols[4]);
+    String lastLogin = parseTextOrNull(cols[5]);
+    String registration = parseTextOrNull(cols[6]);
+    Integer age = parseIntOrNull(cols[7]);
+    String education = cols.length > 19 ? parseTextOrNull(cols[19]) : null;
+    String smoking = cols.length > 22 ? parseTextOrNull(cols[22]) : null;
+    String alcohol = cols.length > 23 ? parseTextOrNull(cols[23]) : null;
+
+    Map<String, Object> m = new HashMap<>();
+    m.put("id", userId);
+    if (pub != null) {
+      m.put("public", pub);
+    }
+    if (completion != null) {
+      m.put("completion_pct", completion);
+    }
+    if (gender != null) {
+      m.put("gender", gender);
+    }
+    if (region != null) {
+      m.put("region", region);
+    }
+    if (lastLogin != null) {
+      m.put("last_login", lastLogin);
+    }
+    if (registration != null) {
+      m.put("registration", registration);
+    }
+    if (age != null) {
+      m.put("age", age);
+    }
+    if (education != null) {
+      m.put("education", education);
+    }
+    if (smoking != null) {
+      m.put("smoking", smoking);
+    }
+    if (alcohol != null) {
+      m.put("alcohol", alcohol);
+    }
+    return m;
+  }
+
   private static Integer parseIntOrNull(String s) {
     if (s == null || s.isEmpty() || s.equals("null")) {
       return null;
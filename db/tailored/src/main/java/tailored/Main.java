@@ -1,44 +1,119 @@
 package tailored;
 
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 // parsing arguments and creating all classes, running workload here
 public class Main {
-    public static void main(String[] args) {
+    public static void main(String[] rawArgs) {
+        Map<String, String> options = parseOptions(rawArgs);
+        String[] args = positionalArgs(rawArgs);
+
         if (args.length < 2) {
-            System.err.println("Not enough arguments.\nUsage: <command> <dbms> [...args]");
+            System.err.println("Not enough arguments.\nUsage: <command> <dbms> [...args]\n"
+                + "or: bench <definition_file> <output_dir> [--key=value overrides], see BenchmarkDefinition for the file's keys.\n"
+                + "output_dir gets the resolved definition, sweep.csv and one result file per measured run. If null, the table is printed in console");
             System.exit(1);
         }
         String command = args[0].toLowerCase();
-        Dbms dbms = parseDbms(args[1]);
 
         switch (command) {
             case "load" -> {
+                Dbms dbms = parseDbms(args[1]);
                 if (args.length < 4) {
-                    System.err.println("Not enough arguments.\nUsage: load <dbms> <nodes_path> <edges_path");
+                    System.err.println("Not enough arguments.\nUsage: load <dbms> <nodes_path> <edges_path> [--mode=full|resume|delta] [--batch-size=10000] [--sort] [--schema=<profile,...>]\n"
+                        + "full truncates and loads everything in one transaction, resume commits every batch and continues an interrupted load,\n"
+                        + "delta applies files of added (+) and removed (-) rows to the loaded data. Use - for a delta file that doesn't exist");
+                    System.exit(1);
+                }
+
+                String mode = options.getOrDefault("mode", "full").toLowerCase();
+                int batchSize = Integer.parseInt(options.getOrDefault("batch-size", "10000"));
+                Path nodesPath = args[2].equals("-") ? null : Paths.get(args[2]);
+                Path edgesPath = args[3].equals("-") ? null : Paths.get(args[3]);
+
+                if (!mode.equals("delta") && (nodesPath == null || edgesPath == null)) {
+                    System.err.println("Only a delta load can skip a file");
+                    System.exit(1);
+                }
+                if (Boolean.parseBoolean(options.getOrDefault("sort", "false"))) {
+                    if (mode.equals("delta")) {
+                        System.err.println("Delta files are applied in file order and can't be sorted");
+                        System.exit(1);
+                    }
+                    edgesPath = sortedEdges(edgesPath, options);
+                }
+
+                switch (mode) {
+                    case "full" -> Loader.runLoad(dbms, nodesPath, edgesPath);
+                    case "resume" -> IncrementalLoader.runLoad(dbms, nodesPath, edgesPath, false, batchSize);
+                    case "delta" -> IncrementalLoader.runLoad(dbms, nodesPath, edgesPath, true, batchSize);
+                    default -> {
+                        System.err.println("Invalid load mode: " + mode + "\nAvailable options: full, resume, delta");
+                        System.exit(1);
+                    }
+                }
+
+                if (options.containsKey("schema")) {
+                    applySchema(dbms, options.get("schema"), options);
+                }
+            }
+            case "sort" -> {
+                if (args.length < 3) {
+                    System.err.println("Not enough arguments.\nUsage: sort <edges_path> <output_path> [--memory-mb=512] [--threads=N] [--order=start|zorder] [--symmetrize] [--keep-self-loops] [--tmp-dir=<dir>]\n"
+                        + "Sorts and deduplicates an edges file of any size with bounded memory. load --sort does the same before loading");
                     System.exit(1);
                 }
 
-                Path nodesPath = Paths.get(args[2]);
-                Path edgesPath = Paths.get(args[3]);
+                Path output = Paths.get(args[2]);
+                try {
+                    EdgeSorter.fromOptions(options, output.toAbsolutePath().getParent()).sort(Paths.get(args[1]), output);
+                } catch (Exception e) {
+                    throw new RuntimeException("Failed to sort edges", e);
+                }
+            }
+            case "generate" -> {
+                if (args.length < 3) {
+                    System.err.println("Not enough arguments.\nUsage: generate <nodes_output> <edges_output> [--model=rmat|ba|lfr] [--scale=1 | --nodes=N] [--avg-degree=18.75] [--seed=42] [--threads=N] [--mixing=0.1]\n"
+                        + "scale is a multiple of the pokec graph (1632803 nodes), mixing is the share of lfr edges leaving their community");
+                    System.exit(1);
+                }
+
+                try {
+                    GraphGenerator.fromOptions(options).generate(Paths.get(args[1]), Paths.get(args[2]));
+                } catch (Exception e) {
+                    throw new RuntimeException("Failed to generate graph", e);
+                }
+            }
+            case "schema" -> {
+                if (args.length < 3) {
+                    System.err.println("Not enough arguments.\nUsage: schema <dbms> <profile,...> [--partitions=8]\nAvailable profiles:\n" + Arrays.toString(SchemaProfile.values()));
+                    System.exit(1);
+                }
 
-                Loader.runLoad(dbms, nodesPath, edgesPath);
+                applySchema(parseDbms(args[1]), args[2], options);
             }
             case "run" -> {
                 if (args.length < 6) {
-                    System.err.println("Not enough arguments.\nUsage: run <dbms> <workload> <depth> <operation_count> <threads> <output_path>\nUse depth = 1 for workloads that don't require it.\noutput_path is optional. If null, output is printed in console");
+                    System.err.println("Not enough arguments.\nUsage: run <dbms> <workload> <depth> <operation_count> <threads> <output_path> [--option=value ...]\nUse depth = 1 for workloads that don't require it.\noutput_path is optional. If null, output is printed in console");
                     System.exit(1);
                 }
 
+                Dbms dbms = parseDbms(args[1]);
                 WorkloadType workloadType = parseWorkload(args[2]);
                 int depth = Integer.parseInt(args[3]);
                 int operationCount = Integer.parseInt(args[4]);
                 int threads = Integer.parseInt(args[5]);
                 Path outputPath = args.length >= 7 ? Paths.get(args[6]) : null;
 
-                BenchmarkConfig config = BenchmarkConfig.create(dbms, workloadType, depth, operationCount, threads, outputPath);
+                BenchmarkConfig config = BenchmarkConfig.create(dbms, workloadType, depth, operationCount, threads, outputPath, options);
 
                 try (BenchmarkContext ctx = ConnectionFactory.openContext(config)) {
                     Workload workload = WorkloadFactory.create(ctx);
@@ -55,8 +130,202 @@ public class Main {
                     throw new RuntimeException(e);
                 }
             }
-            default -> System.err.println("Unknown command: " + command + "\n Use load or run");
+            case "sweep" -> {
+                if (args.length < 6) {
+                    System.err.println("Not enough arguments.\nUsage: sweep <dbms,...> <workload,...> <depth,...> <threads,...> <operation_count> <output_path> [--warmup=1] [--repetitions=3] [--rate=0]\nEvery combination is run in this order, one csv row per measured repetition. A rate > 0 offers rate ops/sec open loop.\noutput_path is optional. If null, the table is printed in console");
+                    System.exit(1);
+                }
+
+                List<Dbms> dbmss = Arrays.stream(args[1].split(",")).map(Main::parseDbms).toList();
+                List<WorkloadType> workloadTypes = Arrays.stream(args[2].split(",")).map(Main::parseWorkload).toList();
+                List<Integer> depths = Arrays.stream(args[3].split(",")).map(Integer::parseInt).toList();
+                List<Integer> threadCounts = Arrays.stream(args[4].split(",")).map(Integer::parseInt).toList();
+                int operationCount = Integer.parseInt(args[5]);
+                Path outputPath = args.length >= 7 ? Paths.get(args[6]) : null;
+
+                int warmups = Integer.parseInt(options.getOrDefault("warmup", "1"));
+                int repetitions = Integer.parseInt(options.getOrDefault("repetitions", "3"));
+                double rate = Double.parseDouble(options.getOrDefault("rate", "0"));
+
+                try {
+                    List<SweepResult> results = new SweepRunner(warmups, repetitions, rate)
+                            .run(dbmss, workloadTypes, depths, threadCounts, operationCount, options);
+
+                    if (outputPath != null) {
+                        ResultWriter.writeSweep(outputPath, results);
+                    } else {
+                        ResultWriter.writeSweep(System.out, results);
+                    }
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            case "bench" -> {
+                // the second positional argument is the definition file, not a dbms
+                Path outputDir = args.length >= 3 ? Paths.get(args[2]) : null;
+
+                try {
+                    BenchmarkDefinition def = BenchmarkDefinition.read(Paths.get(args[1]), options);
+                    List<SweepResult> results = new SweepRunner(def.warmups(), def.repetitions(), def.rate()).run(def);
+
+                    if (outputDir != null) {
+                        ResultWriter.writeBench(outputDir, def, results);
+                    } else {
+                        ResultWriter.writeSweep(System.out, results);
+                    }
+                } catch (IllegalArgumentException e) {
+                    System.err.println(e.getMessage());
+                    System.exit(1);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            case "capacity" -> {
+                if (args.length < 6 || !options.containsKey("sla-ms")) {
+                    System.err.println("Not enough arguments.\nUsage: capacity <dbms> <workload> <depth> <threads> <operation_count> <output_path> --sla-ms=<ms> [--percentile=99] [--start-rate=50] [--step-seconds=10] [--max-rate=1000000]\nthreads is the worker pool serving the offered load, operation_count caps the operations per step.\noutput_path is optional. If null, output is printed in console");
+                    System.exit(1);
+                }
+
+                Dbms dbms = parseDbms(args[1]);
+                WorkloadType workloadType = parseWorkload(args[2]);
+                int depth = Integer.parseInt(args[3]);
+                int threads = Integer.parseInt(args[4]);
+                int operationCount = Integer.parseInt(args[5]);
+                Path outputPath = args.length >= 7 ? Paths.get(args[6]) : null;
+
+                CapacitySearch search = new CapacitySearch(
+                        Integer.parseInt(options.getOrDefault("percentile", "99")),
+                        (long) (Double.parseDouble(options.get("sla-ms")) * 1000),
+                        Double.parseDouble(options.getOrDefault("start-rate", "50")),
+                        Double.parseDouble(options.getOrDefault("step-seconds", "10")),
+                        Double.parseDouble(options.getOrDefault("max-rate", "1000000")));
+
+                BenchmarkConfig config = BenchmarkConfig.create(dbms, workloadType, depth, operationCount, threads, outputPath, options);
+
+                try (BenchmarkContext ctx = ConnectionFactory.openContext(config)) {
+                    Workload workload = WorkloadFactory.create(ctx);
+                    List<BenchmarkContext> threadCtxs = new ArrayList<>();
+                    try {
+                        for (int t = 0; t < threads; t++) {
+                            threadCtxs.add(ConnectionFactory.cloneForThread(ctx));
+                        }
+                        CapacityStep chosen = search.search(workload, threadCtxs, operationCount);
+
+                        if (outputPath != null) {
+                            ResultWriter.writeCapacity(outputPath, config, search, chosen);
+                        } else {
+                            ResultWriter.writeCapacity(System.out, config, search, chosen);
+                        }
+                    } finally {
+                        for (BenchmarkContext threadCtx : threadCtxs) {
+                            threadCtx.close();
+                        }
+                    }
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            case "replay" -> {
+                if (args.length < 4) {
+                    System.err.println("Not enough arguments.\nUsage: replay <dbms> <trace_path> <threads> <output_path> [--speed=1|max]\nRe-issues the operations recorded with run --trace=<trace_path>, --speed=2 at twice the recorded pace.\noutput_path is optional. If null, output is printed in console");
+                    System.exit(1);
+                }
+
+                Dbms dbms = parseDbms(args[1]);
+                Path tracePath = Paths.get(args[2]);
+                int threads = Integer.parseInt(args[3]);
+                Path outputPath = args.length >= 5 ? Paths.get(args[4]) : null;
+
+                try {
+                    List<OperationTrace.Op> ops = OperationTrace.read(tracePath);
+                    if (ops.isEmpty()) {
+                        System.err.println("The trace " + tracePath + " holds no operations");
+                        System.exit(1);
+                    }
+
+                    BenchmarkConfig config = BenchmarkConfig.create(dbms, ops.get(0).type(), ops.get(0).depth(), ops.size(), threads, outputPath, options);
+                    try (BenchmarkContext ctx = ConnectionFactory.openContext(config)) {
+                        Replay replay = Replay.create(ctx, tracePath, ops, options.getOrDefault("speed", "1"));
+                        RunResult res = replay.runner().run(replay, ctx, ops.size(), threads);
+
+                        if (outputPath != null) {
+                            ResultWriter.write(outputPath, config, res);
+                        } else {
+                            System.out.println(res);
+                        }
+                    }
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            default -> System.err.println("Unknown command: " + command + "\n Use load, sort, generate, schema, run, replay, sweep, bench or capacity");
+        }
+    }
+
+    // sorts the edges file next to it (or into --tmp-dir) and reuses an earlier result if the input hasn't changed since,
+    // which also keeps a resumable load's checkpoint valid
+    private static Path sortedEdges(Path edgesPath, Map<String, String> options) {
+        EdgeSorter sorter = EdgeSorter.fromOptions(options, edgesPath.toAbsolutePath().getParent());
+        Path dir = options.containsKey("tmp-dir") ? Paths.get(options.get("tmp-dir")) : edgesPath.toAbsolutePath().getParent();
+        Path sorted = dir.resolve(edgesPath.getFileName() + sorter.suffix());
+
+        try {
+            if (Files.exists(sorted) && Files.getLastModifiedTime(sorted).compareTo(Files.getLastModifiedTime(edgesPath)) > 0) {
+                System.out.println("Using sorted edges " + sorted);
+                return sorted;
+            }
+            Path partial = dir.resolve(sorted.getFileName() + ".partial");
+            sorter.sort(edgesPath, partial);
+            Files.move(partial, sorted, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return sorted;
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to sort edges", e);
+        }
+    }
+
+    private static void applySchema(Dbms dbms, String profileList, Map<String, String> options) {
+        if (dbms != Dbms.POSTGRES) {
+            System.err.println("Schema profiles are only available for postgres");
+            System.exit(1);
+        }
+
+        List<SchemaProfile> profiles = Arrays.stream(profileList.split(",")).map(SchemaProfile::parse).toList();
+        int partitions = Integer.parseInt(options.getOrDefault("partitions", "8"));
+
+        BenchmarkConfig config = BenchmarkConfig.create(dbms, WorkloadType.FOF, 1, 0, 0, null, options);
+        try (BenchmarkContext ctx = ConnectionFactory.openContext(config)) {
+            SchemaProfile.apply(ctx.pgConn, profiles, partitions);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to apply schema profiles", e);
+        }
+    }
+
+    // --key=value (or just --flag, meaning true) arguments may appear anywhere after the command
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                continue;
+            }
+
+            int eq = arg.indexOf('=');
+            if (eq < 0) {
+                options.put(arg.substring(2), "true");
+            } else {
+                options.put(arg.substring(2, eq), arg.substring(eq + 1));
+            }
+        }
+        return options;
+    }
+
+    private static String[] positionalArgs(String[] args) {
+        List<String> positional = new ArrayList<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                positional.add(arg);
+            }
         }
+        return positional.toArray(new String[0]);
     }
 
     private static WorkloadType parseWorkload(String arg) {
@@ -76,7 +345,7 @@ public class Main {
         Dbms dbms = null;
 
         try {
-            dbms = Dbms.valueOf(arg.toUpperCase());
+            dbms = Dbms.valueOf(arg.toUpperCase().replace('-', '_'));
         } catch (IllegalArgumentException e) {
             System.err.println("Invalid dbms argument.\nAvailable options:\n" + Arrays.toString(Dbms.values()));
             System.exit(1);
@@ -0,0 +1,131 @@
+// per-thread recorder that workloads use to report phase timings of the current operation
+
+package tailored;
+
+import org.neo4j.driver.Result;
+import org.neo4j.driver.summary.ResultSummary;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+public final class OperationRecorder {
+  private final long[] phaseNs = new long[Phase.values().length];
+  private long lastMark;
+  private long rows;
+  private long degree;
+
+  // called by the runner right before executeOnce
+  public void begin() {
+    Arrays.fill(phaseNs, -1);
+    rows = -1;
+    degree = -1;
+    lastMark = System.nanoTime();
+  }
+
+  // attributes the time since the previous mark to the given phase.
+  // phases marked more than once (multi-statement operations) are summed up
+  public void mark(Phase phase) {
+    long now = System.nanoTime();
+    add(phase, now - lastMark);
+    lastMark = now;
+  }
+
+  // records a duration measured elsewhere, e.g. reported by the server
+  public void record(Phase phase, long ns) {
+    if (ns >= 0) {
+      add(phase, ns);
+    }
+  }
+
+  // -1 if the phase wasn't recorded for the current operation
+  public long phaseNs(Phase phase) {
+    return phaseNs[phase.ordinal()];
+  }
+
+  // result cardinality of the current operation, -1 if not reported
+  public long rows() {
+    return rows;
+  }
+
+  public void rows(long rows) {
+    this.rows = rows;
+  }
+
+  // out-degree of the operation's start node, -1 if unknown
+  public long degree() {
+    return degree;
+  }
+
+  public void degree(long degree) {
+    this.degree = degree;
+  }
+
+  // drains a jdbc result set, marking FIRST_ROW and CONSUME, returns the number of rows
+  public long consume(ResultSet rs) throws SQLException {
+    boolean more = rs.next();
+    mark(Phase.FIRST_ROW);
+
+    long rows = 0;
+    while (more) {
+      rows++;
+      more = rs.next();
+    }
+    mark(Phase.CONSUME);
+    this.rows = rows;
+    return rows;
+  }
+
+  // reads a single row COUNT(...) result and reports the count as the cardinality
+  public long consumeCount(ResultSet rs) throws SQLException {
+    long count = rs.next() ? rs.getLong(1) : 0;
+    mark(Phase.FIRST_ROW);
+    mark(Phase.CONSUME);
+    this.rows = count;
+    return count;
+  }
+
+  // drains a neo4j result, marking FIRST_ROW and CONSUME and recording the server side timings
+  public long consume(Result rs) {
+    boolean more = rs.hasNext();
+    mark(Phase.FIRST_ROW);
+
+    long rows = 0;
+    while (more) {
+      rs.next();
+      rows++;
+      more = rs.hasNext();
+    }
+    mark(Phase.CONSUME);
+
+    this.rows = rows;
+    recordSummary(rs.consume());
+    return rows;
+  }
+
+  public long consumeCount(Result rs) {
+    long count = rs.hasNext() ? rs.next().get(0).asLong() : 0;
+    mark(Phase.FIRST_ROW);
+    mark(Phase.CONSUME);
+
+    this.rows = count;
+    recordSummary(rs.consume());
+    return count;
+  }
+
+  private void recordSummary(ResultSummary summary) {
+    record(Phase.SERVER_AVAILABLE, toNanos(summary.resultAvailableAfter(TimeUnit.MICROSECONDS)));
+    record(Phase.SERVER_CONSUMED, toNanos(summary.resultConsumedAfter(TimeUnit.MICROSECONDS)));
+    lastMark = System.nanoTime(); // don't bill fetching the summary to the next phase
+  }
+
+  private void add(Phase phase, long ns) {
+    int i = phase.ordinal();
+    phaseNs[i] = phaseNs[i] < 0 ? ns : phaseNs[i] + ns;
+  }
+
+  private static long toNanos(long us) {
+    return us < 0 ? -1 : us * 1000L;
+  }
+}
@@ -0,0 +1,102 @@
+package tailored;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+// binary trace of the operations of a run (--trace=<file>), replayed with the replay command.
+// The file starts with MAGIC and VERSION, followed by fixed size big endian records:
+//   byte   workload type (WorkloadType ordinal)
+//   short  depth
+//   long   start node id
+//   long   end node id, -1 for the single node workloads
+//   long   scheduled start, ns since the start of the run
+//   long   actual start, ns since the start of the run
+// runs append to an existing trace, each one starting again at 0. Traces taken elsewhere just have to follow the layout
+public final class OperationTrace {
+  public record Op(WorkloadType type, int depth, long startId, long endId, long scheduledNs, long actualNs) {
+  }
+
+  private static final int MAGIC = 0x54524345; // "TRCE"
+  private static final short VERSION = 1;
+  private static final int HEADER_BYTES = 6;
+  private static final int RECORD_BYTES = 1 + 2 + 4 * 8;
+
+  private OperationTrace() {
+  }
+
+  public static void append(Path path, List<Op> ops) throws IOException {
+    try (FileChannel channel = FileChannel.open(path,
+        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+      ByteBuffer buf = ByteBuffer.allocate(1 << 16);
+      if (channel.size() == 0) {
+        buf.putInt(MAGIC).putShort(VERSION);
+      }
+      for (Op op : ops) {
+        if (buf.remaining() < RECORD_BYTES) {
+          flush(channel, buf);
+        }
+        buf.put((byte) op.type().ordinal())
+            .putShort((short) op.depth())
+            .putLong(op.startId())
+            .putLong(op.endId())
+            .putLong(op.scheduledNs())
+            .putLong(op.actualNs());
+      }
+      flush(channel, buf);
+    }
+  }
+
+  public static List<Op> read(Path path) throws IOException {
+    WorkloadType[] types = WorkloadType.values();
+    List<Op> ops = new ArrayList<>();
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      ByteBuffer buf = ByteBuffer.allocate(1 << 16).limit(0); // read mode, nothing read yet
+      fill(channel, buf, HEADER_BYTES);
+      if (buf.remaining() < HEADER_BYTES || buf.getInt() != MAGIC) {
+        throw new IOException(path + " is not an operation trace");
+      }
+      short version = buf.getShort();
+      if (version != VERSION) {
+        throw new IOException("Unsupported trace version " + version + " in " + path);
+      }
+
+      while (fill(channel, buf, RECORD_BYTES)) {
+        int type = buf.get();
+        if (type < 0 || type >= types.length) {
+          throw new IOException("Unknown workload type " + type + " in record " + ops.size() + " of " + path);
+        }
+        ops.add(new Op(types[type], buf.getShort(), buf.getLong(), buf.getLong(), buf.getLong(), buf.getLong()));
+      }
+      if (buf.hasRemaining()) {
+        System.err.println("Ignoring " + buf.remaining() + " trailing bytes of a truncated record in " + path);
+      }
+    }
+    return ops;
+  }
+
+  private static void flush(FileChannel channel, ByteBuffer buf) throws IOException {
+    buf.flip();
+    while (buf.hasRemaining()) {
+      channel.write(buf);
+    }
+    buf.clear();
+  }
+
+  // leaves buf in read mode, false if fewer than bytes are left in the file
+  private static boolean fill(FileChannel channel, ByteBuffer buf, int bytes) throws IOException {
+    if (buf.remaining() >= bytes) {
+      return true;
+    }
+    buf.compact();
+    while (buf.position() < bytes && channel.read(buf) > 0) {
+      // keep reading until a whole record is there
+    }
+    buf.flip();
+    return buf.remaining() >= bytes;
+  }
+}
@@ -0,0 +1,15 @@
+package tailored;
+
+// phases a single operation is split into by OperationRecorder
+public enum Phase {
+    BEGIN,            // neo4j only: opening an explicit transaction (--tx-mode). Postgres sends its BEGIN with the
+                      // first statement, so there it's part of EXECUTE
+    CACHE,            // probing and filling the client-side adjacency cache
+    PREPARE,          // building the statement and binding parameters
+    EXECUTE,          // sending the query until the driver hands back a result
+    FIRST_ROW,        // waiting for the first row
+    CONSUME,          // draining the remaining rows
+    COMMIT,           // committing the transaction, only in the operation that ends it
+    SERVER_AVAILABLE, // neo4j only: server-reported time until the result was available
+    SERVER_CONSUMED   // neo4j only: server-reported time until the result was consumed
+}
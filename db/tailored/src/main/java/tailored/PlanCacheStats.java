@@ -0,0 +1,81 @@
+// neo4j query plan cache behaviour of a run (--plan-cache-stats), based on the db.stats query collector.
+// The collector reports the compile time of every invocation; a cache hit only pays for the lookup, so
+// invocations compiling far slower than the typical one for the same query text are counted as misses
+
+package tailored;
+
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.QueryConfig;
+import org.neo4j.driver.Record;
+import org.neo4j.driver.Value;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public final class PlanCacheStats {
+  private static final long MIN_MISS_COMPILE_US = 1_000;
+
+  private PlanCacheStats() {
+  }
+
+  public static void start(Driver driver) {
+    run(driver, "CALL db.stats.clear('QUERIES')");
+    run(driver, "CALL db.stats.collect('QUERIES')");
+  }
+
+  public static Map<String, String> stop(Driver driver) {
+    List<Record> records = run(driver, "CALL db.stats.retrieve('QUERIES') YIELD data RETURN data");
+    run(driver, "CALL db.stats.stop('QUERIES')");
+
+    int queries = 0;
+    long invocations = 0;
+    long misses = 0;
+    long compileUsSum = 0;
+
+    for (Record r : records) {
+      Value data = r.get("data");
+      if (data.get("query").asString("").startsWith("CALL db.stats")) {
+        continue;
+      }
+
+      List<Value> calls = data.get("invocations").asList(v -> v);
+      long[] compileUs = calls.stream()
+          .mapToLong(v -> v.get("elapsedCompileTimeInUs").asLong(0))
+          .toArray();
+      if (compileUs.length == 0) {
+        continue;
+      }
+
+      long[] sorted = compileUs.clone();
+      Arrays.sort(sorted);
+      long missThreshold = Math.max(MIN_MISS_COMPILE_US, 10 * sorted[sorted.length / 2]);
+
+      queries++;
+      invocations += compileUs.length;
+      for (long us : compileUs) {
+        compileUsSum += us;
+        if (us > missThreshold) {
+          misses++;
+        }
+      }
+    }
+
+    Map<String, String> lines = new LinkedHashMap<>();
+    lines.put("PLAN_CACHE DistinctQueries", String.valueOf(queries));
+    lines.put("PLAN_CACHE Invocations", String.valueOf(invocations));
+    lines.put("PLAN_CACHE EstimatedMisses", String.valueOf(misses));
+    lines.put("PLAN_CACHE EstimatedHits", String.valueOf(invocations - misses));
+    lines.put("PLAN_CACHE AvgCompileTime(us)",
+        String.format("%.2f", invocations == 0 ? 0.0 : (double) compileUsSum / invocations));
+    return lines;
+  }
+
+  private static List<Record> run(Driver driver, String cypher) {
+    return driver.executableQuery(cypher)
+        .withConfig(QueryConfig.builder().withDatabase("neo4j").build())
+        .execute()
+        .records();
+  }
+}
@@ -0,0 +1,145 @@
+package tailored;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// re-issues the operations of an OperationTrace (replay command) against any backend, on the node ids of the trace.
+// --speed=N replays the recorded schedule N times as fast (1 = original pace), --speed=max runs closed loop.
+// Operations of every workload type / depth in the trace are interleaved as recorded, each pair gets its own
+// workload instance with the strategy options of the command line
+final class Replay implements Workload {
+  private record Group(BenchmarkConfig config, Workload workload) {
+  }
+
+  private record Key(WorkloadType type, int depth) {
+  }
+
+  private final List<Group> groups;
+  private final int[] groupOf;    // per operation
+  private final int[] localIndex; // iteration within its group
+  private final long[] scheduleNs; // null = as fast as possible
+  private final Map<String, String> summary = new LinkedHashMap<>();
+
+  private Replay(List<Group> groups, int[] groupOf, int[] localIndex, long[] scheduleNs) {
+    this.groups = groups;
+    this.groupOf = groupOf;
+    this.localIndex = localIndex;
+    this.scheduleNs = scheduleNs;
+  }
+
+  static Replay create(BenchmarkContext ctx, Path path, List<OperationTrace.Op> ops, String speed) throws Exception {
+    Map<Key, List<Integer>> byKey = new LinkedHashMap<>();
+    for (int i = 0; i < ops.size(); i++) {
+      OperationTrace.Op op = ops.get(i);
+      byKey.computeIfAbsent(new Key(op.type(), op.depth()), k -> new ArrayList<>()).add(i);
+    }
+
+    List<Group> groups = new ArrayList<>();
+    int[] groupOf = new int[ops.size()];
+    int[] localIndex = new int[ops.size()];
+    for (Map.Entry<Key, List<Integer>> e : byKey.entrySet()) {
+      Key key = e.getKey();
+      List<Integer> members = e.getValue();
+      boolean pairs = key.type() == WorkloadType.RECIPROCAL || key.type() == WorkloadType.SHORTEST_PATH;
+
+      long[] startIds = new long[members.size()];
+      long[] endIds = pairs ? new long[members.size()] : null;
+      for (int j = 0; j < members.size(); j++) {
+        OperationTrace.Op op = ops.get(members.get(j));
+        startIds[j] = op.startId();
+        if (pairs) {
+          endIds[j] = op.endId();
+        }
+        groupOf[members.get(j)] = groups.size();
+        localIndex[members.get(j)] = j;
+      }
+
+      BenchmarkConfig config = ctx.config.withRun(key.type(), key.depth(), ctx.config.threads()).withOperations(members.size());
+      BenchmarkContext view = ctx.withConfig(config);
+      Workload workload = WorkloadFactory.create(view);
+      if (workload.nodeIds(0) == null) {
+        throw new IllegalArgumentException(key.type() + " doesn't run on node ids and can't be replayed");
+      }
+      workload.useIds(view, startIds, endIds);
+      groups.add(new Group(config, workload));
+    }
+
+    Replay replay = new Replay(groups, groupOf, localIndex, schedule(ops, speed));
+    replay.summary.put("REPLAY Trace", path.toString());
+    replay.summary.put("REPLAY Speed", speed);
+    for (Map.Entry<Key, List<Integer>> e : byKey.entrySet()) {
+      replay.summary.put("REPLAY Operations[" + e.getKey().type() + "/" + e.getKey().depth() + "]",
+          String.valueOf(e.getValue().size()));
+    }
+    return replay;
+  }
+
+  // start of every operation on the replay's clock, null for --speed=max.
+  // A run appended after another restarts at 0, its operations are moved behind the previous run's
+  private static long[] schedule(List<OperationTrace.Op> ops, String speed) {
+    if (speed.equalsIgnoreCase("max")) {
+      return null;
+    }
+    double factor = Double.parseDouble(speed);
+    if (factor <= 0) {
+      throw new IllegalArgumentException("--speed must be positive or max");
+    }
+
+    long[] schedule = new long[ops.size()];
+    long base = 0;
+    long latest = 0; // of the current run
+    for (int i = 0; i < ops.size(); i++) {
+      long t = ops.get(i).scheduledNs();
+      // workers pick up operations slightly out of order, only a clear jump back is the start of the next run
+      if (latest - t > 1_000_000L && t < latest / 2) {
+        base += latest;
+        latest = 0;
+      }
+      latest = Math.max(latest, t);
+      schedule[i] = (long) ((base + t) / factor);
+    }
+    return schedule;
+  }
+
+  // open loop on the trace's schedule, closed loop for --speed=max
+  WorkloadRunner runner() {
+    return scheduleNs == null ? new WorkloadRunner() : new WorkloadRunner(scheduleNs);
+  }
+
+  @Override
+  public void executeOnce(BenchmarkContext ctx, int iteration) throws Exception {
+    Group group = groups.get(groupOf[iteration]);
+    boolean same = group.config().workloadType() == ctx.config.workloadType() && group.config().depth() == ctx.config.depth();
+    group.workload().executeOnce(same ? ctx : ctx.view(group.config()), localIndex[iteration]);
+  }
+
+  @Override
+  public String strategy() {
+    Set<String> strategies = new LinkedHashSet<>();
+    for (Group group : groups) {
+      strategies.add(group.workload().strategy());
+    }
+    return String.join("+", strategies);
+  }
+
+  @Override
+  public void beforeRun() {
+    for (Group group : groups) {
+      group.workload().beforeRun();
+    }
+  }
+
+  @Override
+  public Map<String, String> afterRun(int operations) {
+    Map<String, String> lines = new LinkedHashMap<>(summary);
+    for (Group group : groups) {
+      lines.putAll(group.workload().afterRun(group.config().operations()));
+    }
+    return lines;
+  }
+}
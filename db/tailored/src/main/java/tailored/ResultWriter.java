@@ -6,6 +6,9 @@ import java.io.BufferedWriter;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 public class ResultWriter {
     private ResultWriter() {}
@@ -18,8 +21,16 @@ public class ResultWriter {
             w.newLine();
             w.write("DEPTH=" + config.depth());
             w.newLine();
+            w.write("THREADS=" + config.threads());
+            w.newLine();
+            w.write("STRATEGY=" + result.strategy());
+            w.newLine();
             w.write("OPERATIONS=" + result.totalOps());
             w.newLine();
+            for (Map.Entry<String, String> e : new TreeMap<>(config.options()).entrySet()) {
+                w.write("OPTION " + e.getKey() + "=" + e.getValue());
+                w.newLine();
+            }
             w.newLine();
 
             w.write("OVERALL RunTime(ms)=" + result.totalTimeMs());
@@ -40,6 +51,134 @@ public class ResultWriter {
             w.newLine();
             w.write("STATUS Failed=" + result.failedCount());
             w.newLine();
+
+            if (!result.details().isEmpty()) {
+                w.newLine();
+                for (Map.Entry<String, String> e : result.details().entrySet()) {
+                    w.write(e.getKey() + "=" + e.getValue());
+                    w.newLine();
+                }
+            }
+
+            for (Map.Entry<ErrorClass, LatencyStats> e : result.errorLatencies().entrySet()) {
+                w.newLine();
+                writeLatency(w, "ERROR_" + e.getKey(), e.getValue());
+            }
+
+            for (Map.Entry<Phase, LatencyStats> e : result.phaseLatencies().entrySet()) {
+                w.newLine();
+                writeLatency(w, "PHASE_" + e.getKey(), e.getValue());
+            }
+
+            for (Map.Entry<String, LatencyStats> e : result.rowsLatencies().entrySet()) {
+                w.newLine();
+                writeLatency(w, "ROWS[" + e.getKey() + "]", e.getValue());
+            }
+
+            for (Map.Entry<String, LatencyStats> e : result.degreeLatencies().entrySet()) {
+                w.newLine();
+                writeLatency(w, "DEGREE[" + e.getKey() + "]", e.getValue());
+            }
+        }
+    }
+
+    // one row per measured run, meant for plotting throughput / latency curves
+    public static void writeSweep(Path path, List<SweepResult> results) throws IOException {
+        try (BufferedWriter w = Files.newBufferedWriter(path)) {
+            writeSweep(w, results);
+        }
+    }
+
+    public static void writeSweep(Appendable w, List<SweepResult> results) throws IOException {
+        w.append(String.format("dbms,workload,strategy,depth,threads,repetition,operations,runtime_ms,throughput_ops_sec,avg_us,p95_us,p99_us,succeeded,failed,error%n"));
+        for (SweepResult r : results) {
+            BenchmarkConfig c = r.config();
+            RunResult res = r.result();
+            if (res == null) {
+                w.append(String.format("%s,%s,,%d,%d,%d,,,,,,,,,\"%s\"%n",
+                    c.dbms(), c.workloadType(), c.depth(), c.threads(), r.repetition(),
+                    r.error().replace('"', '\'').replace('\n', ' ')));
+                continue;
+            }
+            w.append(String.format("%s,%s,%s,%d,%d,%d,%d,%d,%.2f,%.2f,%d,%d,%d,%d,%n",
+                c.dbms(), c.workloadType(), res.strategy(), c.depth(), c.threads(), r.repetition(),
+                res.totalOps(), res.totalTimeMs(), res.throughputOpsPerSec(), res.avgLatencyUs(),
+                res.p95LatencyUs(), res.p99LatencyUs(), res.succeededCount(), res.failedCount()));
+        }
+    }
+
+    // bench command: the resolved definition, the table of all runs and the full result of every measured run
+    public static void writeBench(Path dir, BenchmarkDefinition def, List<SweepResult> results) throws IOException {
+        Files.createDirectories(dir);
+        def.write(dir.resolve("definition.properties"));
+        writeSweep(dir.resolve("sweep.csv"), results);
+        for (SweepResult r : results) {
+            if (r.result() == null) {
+                continue; // in sweep.csv with its error
+            }
+            BenchmarkConfig c = r.config();
+            String name = String.format("%s-%s-d%d-t%d-r%d.txt", c.dbms(), c.workloadType(), c.depth(), c.threads(), r.repetition());
+            write(dir.resolve(name.toLowerCase()), c, r.result());
+        }
+    }
+
+    public static void writeCapacity(Path path, BenchmarkConfig config, CapacitySearch search,
+                                     CapacityStep chosen) throws IOException {
+        try (BufferedWriter w = Files.newBufferedWriter(path)) {
+            writeCapacity(w, config, search, chosen);
+        }
+    }
+
+    public static void writeCapacity(Appendable w, BenchmarkConfig config, CapacitySearch search,
+                                     CapacityStep chosen) throws IOException {
+        w.append(String.format("DBMS=%s%n", config.dbms()));
+        w.append(String.format("WORKLOAD=%s%n", config.workloadType()));
+        w.append(String.format("DEPTH=%d%n", config.depth()));
+        if (!search.steps().isEmpty()) {
+            w.append(String.format("STRATEGY=%s%n", search.steps().get(0).result().strategy()));
         }
+        w.append(String.format("THREADS=%d%n", config.threads()));
+        w.append(String.format("SLA P%dLatency(us)<=%d%n%n", search.percentile(), search.slaUs()));
+
+        w.append(String.format("offered_ops_sec,achieved_ops_sec,avg_us,p95_us,p99_us,failed,keeps_up,within_sla%n"));
+        for (CapacityStep step : search.steps()) {
+            RunResult res = step.result();
+            w.append(String.format("%.2f,%.2f,%.2f,%d,%d,%d,%b,%b%n",
+                step.offeredOpsPerSec(), res.throughputOpsPerSec(), res.avgLatencyUs(),
+                res.p95LatencyUs(), res.p99LatencyUs(), res.failedCount(), step.keepsUp(), step.withinSla()));
+        }
+        w.append(String.format("%n"));
+
+        CapacityStep knee = search.knee();
+        if (knee != null) {
+            w.append(String.format("KNEE Offered(ops/sec)=%.2f%n", knee.offeredOpsPerSec()));
+            w.append(String.format("KNEE Achieved(ops/sec)=%.2f%n", knee.result().throughputOpsPerSec()));
+        }
+        if (search.maxRateReached()) {
+            w.append(String.format("MAX_RATE Reached(ops/sec)=%.2f%n", search.maxOpsPerSec()));
+            w.append(String.format("MAX_RATE Note=the SLA still held at --max-rate, the capacity is higher%n"));
+        }
+        if (chosen != null) {
+            w.append(String.format("OPERATING_POINT Offered(ops/sec)=%.2f%n", chosen.offeredOpsPerSec()));
+            w.append(String.format("OPERATING_POINT Achieved(ops/sec)=%.2f%n", chosen.result().throughputOpsPerSec()));
+            w.append(String.format("OPERATING_POINT P%dLatency(us)=%d%n", search.percentile(), chosen.percentileLatencyUs()));
+        } else {
+            w.append(String.format("OPERATING_POINT none, the start rate already violates the SLA%n"));
+        }
+    }
+
+    private static void writeLatency(BufferedWriter w, String prefix, LatencyStats stats) throws IOException {
+        w.write(prefix + " Count=" + stats.count());
+        w.newLine();
+        w.write(prefix + " AvgLatency(us)=" + String.format("%.2f", stats.avgUs()));
+        w.newLine();
+        w.write(prefix + " P50Latency(us)=" + stats.p50Us());
+        w.newLine();
+        w.write(prefix + " P95Latency(us)=" + stats.p95Us());
+        w.newLine();
+        w.write(prefix + " P99Latency(us)=" + stats.p99Us());
+        w.newLine();
+        w.write(prefix + " MaxLatency(us)=" + stats.maxUs());
+        w.newLine();
     }
 }
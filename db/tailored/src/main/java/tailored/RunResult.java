@@ -1,6 +1,9 @@
 package tailored;
 
+import java.util.Map;
+
 public record RunResult(
+    String strategy,
     int totalOps,
     long totalTimeMs,
     double throughputOpsPerSec,
@@ -8,5 +11,10 @@ public record RunResult(
     long p95LatencyUs,
     long p99LatencyUs,
     int succeededCount,
-    int failedCount
+    int failedCount,
+    Map<Phase, LatencyStats> phaseLatencies,
+    Map<String, LatencyStats> rowsLatencies,   // keyed by log2 bucket of the result size
+    Map<String, LatencyStats> degreeLatencies, // keyed by log2 bucket of the start node degree
+    Map<ErrorClass, LatencyStats> errorLatencies, // failed operations by the class of their last error
+    Map<String, String> details                 // extra figures, written as "key=value" lines
 ) {}
\ No newline at end of file
@@ -0,0 +1,141 @@
+// physical design variants of the postgres schema. `schema postgres <profile,...>` first resets everything
+// the profiles create back to the init.sql layout, then applies the listed profiles in order and records
+// them in bench_meta so every later run can write down which layout it measured
+
+package tailored;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public enum SchemaProfile {
+    BASELINE,        // init.sql as is
+    CLUSTERED,       // edges rewritten in (start_id, end_id) order
+    COVERING,        // (start_id) INCLUDE (end_id) for index-only scans
+    REVERSE,         // (end_id, start_id) for incoming edges
+    PARTITIONED,     // edges hash-partitioned on start_id
+    AGE_INDEX,       // b-tree on nodes.age for Filtered
+    AGE_BRIN,        // brin on nodes.age for Filtered
+    ADJACENCY_ARRAY; // adjacency(node_id, neighbours bigint[]) next to edges
+
+    public String label() {
+        return name().toLowerCase().replace('_', '-');
+    }
+
+    public static SchemaProfile parse(String name) {
+        return valueOf(name.toUpperCase().replace('-', '_'));
+    }
+
+    public static void apply(Connection conn, List<SchemaProfile> profiles, int partitions) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            reset(conn, st);
+
+            for (SchemaProfile profile : profiles) {
+                System.out.println("Applying schema profile " + profile.label());
+                switch (profile) {
+                    case BASELINE -> {}
+                    case CLUSTERED -> st.execute("CLUSTER edges USING edges_start_end_idx");
+                    case COVERING -> st.execute("CREATE INDEX edges_start_cover_idx ON edges (start_id) INCLUDE (end_id)");
+                    case REVERSE -> st.execute("CREATE INDEX IF NOT EXISTS edges_end_start_idx ON edges (end_id, start_id)");
+                    case PARTITIONED -> partitionEdges(st, partitions);
+                    case AGE_INDEX -> st.execute("CREATE INDEX nodes_age_idx ON nodes (age)");
+                    case AGE_BRIN -> st.execute("CREATE INDEX nodes_age_brin_idx ON nodes USING brin (age)");
+                    case ADJACENCY_ARRAY -> {
+                        st.execute("""
+                            CREATE TABLE adjacency AS
+                            SELECT start_id AS node_id, array_agg(end_id ORDER BY end_id) AS neighbours
+                            FROM edges
+                            GROUP BY start_id
+                            """);
+                        st.execute("ALTER TABLE adjacency ADD PRIMARY KEY (node_id)");
+                    }
+                }
+            }
+
+            // index-only scans need an up to date visibility map, and every profile wants fresh statistics
+            st.execute("VACUUM ANALYZE edges");
+            st.execute("VACUUM ANALYZE nodes");
+
+            record(st, profiles.stream().map(SchemaProfile::label).collect(Collectors.joining(",")));
+        }
+    }
+
+    // a full reload replaces the data the profiles were built from (the adjacency table, the clustered order),
+    // so it goes back to the init.sql layout and records baseline. load --schema applies the profiles again
+    public static void resetForReload(Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            reset(conn, st);
+            record(st, BASELINE.label());
+        }
+    }
+
+    private static void record(Statement st, String label) throws SQLException {
+        st.execute("CREATE TABLE IF NOT EXISTS bench_meta (key TEXT PRIMARY KEY, value TEXT)");
+        st.execute("INSERT INTO bench_meta VALUES ('schema_profile', '" + label + "') "
+            + "ON CONFLICT (key) DO UPDATE SET value = EXCLUDED.value");
+    }
+
+    // "baseline" if the schema was never touched by apply()
+    public static String current(Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            try (ResultSet rs = st.executeQuery("SELECT to_regclass('bench_meta') IS NOT NULL")) {
+                rs.next();
+                if (!rs.getBoolean(1)) {
+                    return BASELINE.label();
+                }
+            }
+            try (ResultSet rs = st.executeQuery("SELECT value FROM bench_meta WHERE key = 'schema_profile'")) {
+                return rs.next() ? rs.getString(1) : BASELINE.label();
+            }
+        }
+    }
+
+    // whether the recorded layout includes profile, for workloads that depend on one
+    public static boolean includes(Connection conn, SchemaProfile profile) throws SQLException {
+        return List.of(current(conn).split(",")).contains(profile.label());
+    }
+
+    // drops whatever the profiles add. The physical row order left behind by CLUSTER can't be undone, a
+    // reload is needed to get back to insertion order
+    private static void reset(Connection conn, Statement st) throws SQLException {
+        boolean partitioned;
+        try (ResultSet rs = st.executeQuery("SELECT relkind = 'p' FROM pg_class WHERE oid = 'edges'::regclass")) {
+            rs.next();
+            partitioned = rs.getBoolean(1);
+        }
+        if (partitioned) {
+            System.out.println("Converting edges back to a plain table");
+            st.execute("ALTER TABLE edges RENAME TO edges_partitioned");
+            st.execute("CREATE TABLE edges (start_id BIGINT NOT NULL, end_id BIGINT NOT NULL)");
+            st.execute("INSERT INTO edges SELECT start_id, end_id FROM edges_partitioned");
+            st.execute("DROP TABLE edges_partitioned");
+            st.execute("CREATE INDEX edges_start_idx ON edges (start_id)");
+            st.execute("CREATE INDEX edges_start_end_idx ON edges (start_id, end_id)");
+        }
+
+        st.execute("DROP INDEX IF EXISTS edges_start_cover_idx");
+        st.execute("DROP INDEX IF EXISTS edges_end_start_idx");
+        st.execute("DROP INDEX IF EXISTS nodes_age_idx");
+        st.execute("DROP INDEX IF EXISTS nodes_age_brin_idx");
+        st.execute("DROP TABLE IF EXISTS adjacency");
+        st.execute("ALTER TABLE edges SET WITHOUT CLUSTER");
+    }
+
+    private static void partitionEdges(Statement st, int partitions) throws SQLException {
+        st.execute("ALTER TABLE edges RENAME TO edges_heap");
+        st.execute("ALTER INDEX edges_start_idx RENAME TO edges_heap_start_idx");
+        st.execute("ALTER INDEX edges_start_end_idx RENAME TO edges_heap_start_end_idx");
+        st.execute("CREATE TABLE edges (start_id BIGINT NOT NULL, end_id BIGINT NOT NULL) PARTITION BY HASH (start_id)");
+        for (int i = 0; i < partitions; i++) {
+            st.execute("CREATE TABLE edges_p" + i + " PARTITION OF edges FOR VALUES WITH (MODULUS " + partitions
+                + ", REMAINDER " + i + ")");
+        }
+        st.execute("INSERT INTO edges SELECT start_id, end_id FROM edges_heap");
+        st.execute("DROP TABLE edges_heap");
+        st.execute("CREATE INDEX edges_start_idx ON edges (start_id)");
+        st.execute("CREATE INDEX edges_start_end_idx ON edges (start_id, end_id)");
+    }
+}
@@ -0,0 +1,106 @@
+// server-side execution time of a run, taken from postgres' statistics views (--server-stats).
+// pg_stat_user_functions covers the pl/pgsql procedures, pg_stat_statements (if installed) every query
+
+package tailored;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public final class ServerStats {
+  private static final Map<String, String> METRICS = Map.of(
+      "total_ms", "TotalTime",
+      "self_ms", "SelfTime",
+      "exec_ms", "ExecTime");
+
+  private ServerStats() {
+  }
+
+  // per session, needs superuser. Without it the function counters simply stay empty
+  public static void enable(Connection conn) {
+    try (Statement st = conn.createStatement()) {
+      st.execute("SET track_functions = 'pl'");
+    } catch (SQLException e) {
+      System.err.println("Could not enable track_functions: " + e.getMessage());
+    }
+  }
+
+  // counters keyed like "fof_count.calls", "fof_count.total_ms", "statements.exec_ms"
+  public static Map<String, Double> capture(Connection conn) throws SQLException {
+    Map<String, Double> counters = new LinkedHashMap<>();
+    try (Statement st = conn.createStatement()) {
+      st.execute("SELECT pg_stat_clear_snapshot()");
+
+      try (ResultSet rs = st.executeQuery(
+          "SELECT funcname, calls, total_time, self_time FROM pg_stat_user_functions WHERE schemaname = 'public'")) {
+        while (rs.next()) {
+          String name = rs.getString(1);
+          counters.put(name + ".calls", rs.getDouble(2));
+          counters.put(name + ".total_ms", rs.getDouble(3));
+          counters.put(name + ".self_ms", rs.getDouble(4));
+        }
+      }
+
+      boolean statements;
+      try (ResultSet rs = st.executeQuery("SELECT 1 FROM pg_extension WHERE extname = 'pg_stat_statements'")) {
+        statements = rs.next();
+      }
+      if (statements) {
+        try (ResultSet rs = st.executeQuery("""
+            SELECT COALESCE(SUM(calls), 0), COALESCE(SUM(total_exec_time), 0)
+            FROM pg_stat_statements
+            WHERE dbid = (SELECT oid FROM pg_database WHERE datname = current_database())
+            """)) {
+          rs.next();
+          counters.put("statements.calls", rs.getDouble(1));
+          counters.put("statements.exec_ms", rs.getDouble(2));
+        }
+      }
+    }
+    return counters;
+  }
+
+  // asks every worker session to publish its pending statistics before the final capture
+  public static void flush(List<BenchmarkContext> threadCtxs) {
+    for (BenchmarkContext threadCtx : threadCtxs) {
+      try (Statement st = threadCtx.pgConn.createStatement()) {
+        st.execute("SELECT pg_stat_force_next_flush()"); // postgres 15+
+      } catch (SQLException e) {
+        return; // older server, stats show up with a delay of up to a few hundred ms
+      }
+    }
+  }
+
+  // result lines for the counters that moved during the run
+  public static Map<String, String> describe(Map<String, Double> before, Map<String, Double> after, int operations) {
+    Map<String, String> lines = new LinkedHashMap<>();
+    for (Map.Entry<String, Double> e : after.entrySet()) {
+      String key = e.getKey();
+      if (!key.endsWith(".calls")) {
+        continue;
+      }
+
+      String name = key.substring(0, key.length() - ".calls".length());
+      double calls = e.getValue() - before.getOrDefault(key, 0.0);
+      if (calls <= 0) {
+        continue;
+      }
+
+      lines.put("SERVER " + name + " Calls", String.format("%.0f", calls));
+      for (Map.Entry<String, String> metric : METRICS.entrySet()) {
+        Double value = after.get(name + "." + metric.getKey());
+        if (value == null) {
+          continue;
+        }
+        double deltaUs = (value - before.getOrDefault(name + "." + metric.getKey(), 0.0)) * 1000.0;
+        lines.put("SERVER " + name + " Avg" + metric.getValue() + "(us)", String.format("%.2f", deltaUs / calls));
+        lines.put("SERVER " + name + " " + metric.getValue() + "PerOp(us)", String.format("%.2f", deltaUs / operations));
+      }
+    }
+    return lines;
+  }
+}
@@ -0,0 +1,244 @@
+package tailored;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+// the parts of the workload and loader sql that differ between the jdbc backed engines.
+// Everything else (recursive ctes, joins, EXISTS) is written once and runs unchanged on all of them
+public enum SqlDialect {
+    POSTGRES {
+        @Override
+        public String bigintParam() {
+            return "?::bigint";
+        }
+
+        @Override
+        public String anyOf(String column) {
+            return column + " = ANY(?::bigint[])";
+        }
+
+        @Override
+        public void bindIds(PreparedStatement ps, int index, long[] ids) throws SQLException {
+            ps.setObject(index, ids); // pgjdbc sends primitive arrays as bigint[] without boxing
+        }
+
+        @Override
+        public String sampleIds(String column, String table, int percent, int limit) {
+            // WARN: only yields enough ids while limit stays below the sampled share of the table
+            return "SELECT DISTINCT " + column + " FROM " + table + " TABLESAMPLE SYSTEM (" + percent + ")";
+        }
+    },
+    DUCKDB {
+        @Override
+        public String anyOf(String column) {
+            return column + " IN (SELECT UNNEST(CAST(string_split(?, ',') AS BIGINT[])))";
+        }
+
+        @Override
+        public void bindIds(PreparedStatement ps, int index, long[] ids) throws SQLException {
+            ps.setString(index, join(ids));
+        }
+
+        @Override
+        public String sampleIds(String column, String table, int percent, int limit) {
+            return "SELECT " + column + " FROM (SELECT DISTINCT " + column + " FROM " + table + ") USING SAMPLE " + limit + " ROWS";
+        }
+
+        @Override
+        public Connection connectForThread(BenchmarkConfig config, Connection base) throws SQLException {
+            // a second DriverManager connection would open the database file again, duplicate() shares the instance
+            return ((org.duckdb.DuckDBConnection) base).duplicate();
+        }
+
+        @Override
+        public boolean bulkLoadEdges(Connection conn, Path edgesPath) throws SQLException {
+            try (Statement st = conn.createStatement()) {
+                st.executeUpdate("INSERT INTO edges SELECT start_id, end_id FROM read_csv(" + literal(edgesPath) + ", "
+                        + "delim = '\\t', header = false, columns = {'start_id': 'BIGINT', 'end_id': 'BIGINT'})");
+            }
+            return true;
+        }
+
+        @Override
+        public String jdbcUrl(Path store) {
+            return "jdbc:duckdb:" + store.toAbsolutePath();
+        }
+    },
+    H2 {
+        @Override
+        public String anyOf(String column) {
+            return column + " = ANY(?)";
+        }
+
+        @Override
+        public void bindIds(PreparedStatement ps, int index, long[] ids) throws SQLException {
+            ps.setObject(index, Arrays.stream(ids).boxed().toArray(Long[]::new));
+        }
+
+        @Override
+        public boolean bulkLoadEdges(Connection conn, Path edgesPath) throws SQLException {
+            try (Statement st = conn.createStatement()) {
+                st.executeUpdate("INSERT INTO edges SELECT CAST(start_id AS BIGINT), CAST(end_id AS BIGINT) FROM CSVREAD("
+                        + literal(edgesPath) + ", 'START_ID' || CHAR(9) || 'END_ID', 'fieldSeparator=' || CHAR(9))");
+            }
+            return true;
+        }
+
+        @Override
+        public String createTempTable(String definition) {
+            // a plain TEMP table is global in h2, visible to the other worker threads
+            return "CREATE LOCAL TEMPORARY TABLE IF NOT EXISTS " + definition;
+        }
+
+        @Override
+        public String nodeInsertSql() {
+            // postgres mode accepts ON CONFLICT DO NOTHING, but not with a conflict target
+            return Loader.NODE_SQL.replace("ON CONFLICT (id)", "ON CONFLICT");
+        }
+
+        @Override
+        public String jdbcUrl(Path store) {
+            return "jdbc:h2:file:" + store.toAbsolutePath() + ";MODE=PostgreSQL";
+        }
+    },
+    SQLITE {
+        @Override
+        public String anyOf(String column) {
+            return column + " IN (SELECT value FROM json_each(?))";
+        }
+
+        @Override
+        public void bindIds(PreparedStatement ps, int index, long[] ids) throws SQLException {
+            ps.setString(index, "[" + join(ids) + "]");
+        }
+
+        @Override
+        public String truncate(String table) {
+            return "DELETE FROM " + table;
+        }
+
+        @Override
+        public String jdbcUrl(Path store) {
+            return "jdbc:sqlite:" + store.toAbsolutePath();
+        }
+    };
+
+    // tables and indexes of init.sql, created by the loader on the in-process engines.
+    // Keep both in step: a column or index added to init.sql has to be added here as well
+    private static final List<String> TABLES = List.of(
+            """
+            CREATE TABLE IF NOT EXISTS nodes (
+              id               BIGINT PRIMARY KEY,
+              age              INTEGER,
+              public           INTEGER,
+              completion_pct   INTEGER,
+              gender           INTEGER,
+              region           TEXT,
+              last_login       TEXT,
+              registration     TEXT,
+              education        TEXT,
+              smoking          TEXT,
+              alcohol          TEXT
+            )""",
+            "CREATE TABLE IF NOT EXISTS edges (start_id BIGINT NOT NULL, end_id BIGINT NOT NULL)");
+    private static final List<String> INDEXES = List.of(
+            "CREATE INDEX IF NOT EXISTS edges_start_idx ON edges (start_id)",
+            "CREATE INDEX IF NOT EXISTS edges_start_end_idx ON edges (start_id, end_id)");
+
+    // null for the neo4j backends
+    public static SqlDialect of(Dbms dbms) {
+        return switch (dbms) {
+            case POSTGRES -> POSTGRES;
+            case DUCKDB -> DUCKDB;
+            case H2 -> H2;
+            case SQLITE -> SQLITE;
+            case NEO4J, NEO4J_EMBEDDED -> null;
+        };
+    }
+
+    // a bigint parameter where the engine can't infer the type, e.g. the anchor of a recursive cte
+    public String bigintParam() {
+        return "CAST(? AS BIGINT)";
+    }
+
+    // predicate matching column against a list of ids bound with bindIds
+    public abstract String anyOf(String column);
+
+    public abstract void bindIds(PreparedStatement ps, int index, long[] ids) throws SQLException;
+
+    // up to limit random distinct values of column
+    public String sampleIds(String column, String table, int percent, int limit) {
+        return "SELECT " + column + " FROM (SELECT DISTINCT " + column + " FROM " + table + ") t ORDER BY RANDOM() LIMIT " + limit;
+    }
+
+    // per-connection table, definition is the name followed by the column list
+    public String createTempTable(String definition) {
+        return "CREATE TEMP TABLE IF NOT EXISTS " + definition;
+    }
+
+    public String nodeInsertSql() {
+        return Loader.NODE_SQL;
+    }
+
+    public String truncate(String table) {
+        return "TRUNCATE TABLE " + table;
+    }
+
+    // true for the engines running inside the harness; postgres is a server with its schema from init.sql
+    public boolean embedded() {
+        return this != POSTGRES;
+    }
+
+    // url of the in-process engine on the store file, null for postgres which is a server reached through PG_URI
+    public String jdbcUrl(Path store) {
+        return null;
+    }
+
+    public Connection connectForThread(BenchmarkConfig config, Connection base) throws SQLException {
+        return connect(config);
+    }
+
+    // loads the edges file with the engine's own csv reader, false to fall back to batched inserts
+    public boolean bulkLoadEdges(Connection conn, Path edgesPath) throws SQLException {
+        return false;
+    }
+
+    public void createTables(Connection conn) throws SQLException {
+        execute(conn, TABLES);
+    }
+
+    // after the bulk load, so the rows aren't indexed one by one
+    public void createIndexes(Connection conn) throws SQLException {
+        execute(conn, INDEXES);
+    }
+
+    public static Connection connect(BenchmarkConfig config) throws SQLException {
+        assert config.pgUrl() != null;
+        return config.pgUser() == null
+                ? DriverManager.getConnection(config.pgUrl())
+                : DriverManager.getConnection(config.pgUrl(), DriverTuning.pgProperties(config));
+    }
+
+    private static void execute(Connection conn, List<String> statements) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            for (String sql : statements) {
+                st.execute(sql);
+            }
+        }
+    }
+
+    private static String join(long[] ids) {
+        return Arrays.stream(ids).mapToObj(Long::toString).collect(Collectors.joining(","));
+    }
+
+    private static String literal(Path path) {
+        return "'" + path.toAbsolutePath().toString().replace("'", "''") + "'";
+    }
+}
@@ -0,0 +1,18 @@
+package tailored;
+
+// one measured run of a sweep cell, or a cell that failed: result is null and error says why.
+// repetition 0 means the cell failed before its first measured run (workload setup or warmup)
+public record SweepResult(
+    BenchmarkConfig config,
+    int repetition,
+    RunResult result,
+    String error
+) {
+    public SweepResult(BenchmarkConfig config, int repetition, RunResult result) {
+        this(config, repetition, result, null);
+    }
+
+    static SweepResult failed(BenchmarkConfig config, int repetition, Exception e) {
+        return new SweepResult(config, repetition, null, String.valueOf(e));
+    }
+}
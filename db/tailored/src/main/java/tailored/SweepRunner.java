@@ -0,0 +1,124 @@
+// runs a matrix of dbms x workload x depth x threads in one jvm, reusing connections and key sets
+
+package tailored;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+public final class SweepRunner {
+  private final int warmups;
+  private final int repetitions;
+  private final double rate; // 0 = closed loop, otherwise open loop at rate ops/sec
+
+  public SweepRunner(int warmups, int repetitions) {
+    this(warmups, repetitions, 0);
+  }
+
+  public SweepRunner(int warmups, int repetitions, double rate) {
+    this.warmups = warmups;
+    this.repetitions = repetitions;
+    this.rate = rate;
+  }
+
+  // every combination of a benchmark definition
+  public List<SweepResult> run(BenchmarkDefinition def) throws Exception {
+    return run(def.dbmss(), def.workloadTypes(), def.depths(), def.threadCounts(), def.operations(), def.runOptions());
+  }
+
+  public List<SweepResult> run(List<Dbms> dbmss,
+                               List<WorkloadType> workloadTypes,
+                               List<Integer> depths,
+                               List<Integer> threadCounts,
+                               int operations,
+                               Map<String, String> options) throws Exception {
+    List<SweepResult> results = new ArrayList<>();
+    int maxThreads = Collections.max(threadCounts);
+
+    // every config up front, so a missing setting of a later dbms fails before the first cell runs
+    List<BenchmarkConfig> bases = new ArrayList<>();
+    for (Dbms dbms : dbmss) {
+      bases.add(BenchmarkConfig.create(dbms, workloadTypes.get(0), depths.get(0), operations, maxThreads, null, options));
+    }
+
+    for (BenchmarkConfig base : bases) {
+      Dbms dbms = base.dbms();
+      List<SweepResult> dbmsResults = new ArrayList<>();
+
+      try (BenchmarkContext ctx = ConnectionFactory.openContext(base)) {
+        // one connection per worker, shared by every cell of this dbms
+        List<BenchmarkContext> pool = new ArrayList<>();
+        try {
+          for (int t = 0; t < maxThreads; t++) {
+            pool.add(ConnectionFactory.cloneForThread(ctx));
+          }
+
+          for (WorkloadType type : workloadTypes) {
+            for (int depth : depths) {
+              runCells(ctx, pool, base, type, depth, threadCounts, operations, dbmsResults);
+            }
+          }
+        } finally {
+          for (BenchmarkContext threadCtx : pool) {
+            threadCtx.close();
+          }
+        }
+      } catch (Exception e) {
+        // no connection to this dbms, every cell that didn't run yet is recorded as failed
+        System.err.println("Sweep of " + dbms + " failed: " + e);
+        for (WorkloadType type : workloadTypes) {
+          for (int depth : depths) {
+            for (int threads : threadCounts) {
+              BenchmarkConfig cell = base.withRun(type, depth, threads);
+              if (dbmsResults.stream().noneMatch(r -> r.config().equals(cell))) {
+                dbmsResults.add(SweepResult.failed(cell, 0, e));
+              }
+            }
+          }
+        }
+      }
+      results.addAll(dbmsResults);
+    }
+
+    return results;
+  }
+
+  // the cells of one workload type and depth. A failing cell is recorded and the sweep goes on with the next one
+  private void runCells(BenchmarkContext ctx, List<BenchmarkContext> pool, BenchmarkConfig base, WorkloadType type,
+                        int depth, List<Integer> threadCounts, int operations, List<SweepResult> results) {
+    // candidate ids depend on the workload type, the depth and the operation count, every thread count reuses them
+    Workload workload;
+    try {
+      workload = WorkloadFactory.create(ctx.withConfig(base.withRun(type, depth, pool.size())));
+    } catch (Exception e) {
+      System.err.println("Sweep cells of " + type + " at depth " + depth + " failed: " + e);
+      for (int threads : threadCounts) {
+        results.add(SweepResult.failed(base.withRun(type, depth, threads), 0, e));
+      }
+      return;
+    }
+
+    for (int threads : threadCounts) {
+      BenchmarkConfig cell = base.withRun(type, depth, threads);
+      List<BenchmarkContext> threadCtxs = pool.subList(0, threads).stream()
+          .map(c -> c.withConfig(cell))
+          .toList();
+
+      System.out.printf("Sweep cell: dbms=%s workload=%s depth=%d threads=%d%n", cell.dbms(), type, depth, threads);
+      WorkloadRunner runner = new WorkloadRunner(rate);
+      int r = 0;
+      try {
+        for (int w = 0; w < warmups; w++) {
+          runner.run(workload, threadCtxs, operations);
+        }
+        for (r = 1; r <= repetitions; r++) {
+          results.add(new SweepResult(cell, r, runner.run(workload, threadCtxs, operations)));
+        }
+      } catch (Exception e) {
+        System.err.println("Sweep cell failed: " + e);
+        results.add(SweepResult.failed(cell, r, e));
+      }
+    }
+  }
+}
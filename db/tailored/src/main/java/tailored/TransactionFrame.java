@@ -0,0 +1,162 @@
+package tailored;
+
+import org.neo4j.driver.Session;
+import org.neo4j.driver.Transaction;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+// wraps the operations of one worker thread in the transactions chosen with --tx-mode:
+//   autocommit  every statement commits on its own (the default, what the workloads did before)
+//   read-only   explicit read only transactions, committed after every --ops-per-tx operations,
+//               postgres at --isolation=read-committed|repeatable-read|serializable. Not on the embedded neo4j,
+//               whose workloads open a transaction per operation themselves
+//   managed     neo4j only, every operation inside session.executeRead, which retries transient errors
+// the time spent opening and committing shows up as the BEGIN and COMMIT phases. Only neo4j has a BEGIN phase:
+// pgjdbc sends BEGIN in the same round trip as the first statement of the transaction, that cost is part of EXECUTE
+public final class TransactionFrame {
+  public enum Mode {
+    AUTOCOMMIT, READ_ONLY, MANAGED;
+
+    static Mode parse(String name) {
+      return valueOf(name.toUpperCase().replace('-', '_'));
+    }
+  }
+
+  private final BenchmarkContext ctx;
+  private final Mode mode;
+  private final int opsPerTx;
+  private Transaction neoTx; // open read_only transaction on neo4j
+  private int pending;       // operations in the open transaction
+
+  TransactionFrame(BenchmarkContext ctx) throws SQLException {
+    this.ctx = ctx;
+    this.mode = mode(ctx.config);
+    this.opsPerTx = Math.max(1, ctx.config.intOption("ops-per-tx", 1));
+
+    if (mode == Mode.READ_ONLY && ctx.pgConn != null) {
+      Connection conn = ctx.pgConn;
+      conn.setAutoCommit(false);
+      conn.setReadOnly(true); // pgjdbc starts every transaction with BEGIN READ ONLY
+      conn.setTransactionIsolation(isolation(ctx.config.option("isolation", "read-committed")));
+    }
+  }
+
+  public static Mode mode(BenchmarkConfig config) {
+    Mode mode = Mode.parse(config.option("tx-mode", "autocommit"));
+    if (mode == Mode.MANAGED && config.dbms() != Dbms.NEO4J) {
+      throw new IllegalArgumentException("--tx-mode=managed is only available for neo4j");
+    }
+    if (mode == Mode.READ_ONLY && config.dbms() == Dbms.NEO4J_EMBEDDED) {
+      throw new IllegalArgumentException("--tx-mode=read-only is not available for neo4j-embedded, every operation runs in its own transaction");
+    }
+    if (mode != Mode.READ_ONLY && config.intOption("ops-per-tx", 1) > 1) {
+      throw new IllegalArgumentException("--ops-per-tx needs --tx-mode=read-only");
+    }
+    return mode;
+  }
+
+  void execute(Workload workload, int iteration) throws Exception {
+    switch (mode) {
+      case AUTOCOMMIT -> workload.executeOnce(ctx, iteration);
+      case READ_ONLY -> executeReadOnly(workload, iteration);
+      case MANAGED -> executeManaged(workload, iteration);
+    }
+  }
+
+  private void executeReadOnly(Workload workload, int iteration) throws Exception {
+    try {
+      // no mark for postgres, its BEGIN goes out with the operation's first statement
+      if (ctx.neoSession != null && neoTx == null) {
+        neoTx = ctx.neoSession.beginTransaction(ctx.neoTxConfig);
+        ctx.bindTransaction(neoTx);
+        ctx.recorder.mark(Phase.BEGIN);
+      }
+
+      workload.executeOnce(ctx, iteration);
+
+      if (++pending >= opsPerTx) {
+        commit();
+        ctx.recorder.mark(Phase.COMMIT);
+      }
+    } catch (Exception e) {
+      try {
+        rollback();
+      } catch (Exception rollbackFailure) {
+        e.addSuppressed(rollbackFailure); // the connection is probably gone, report the original error
+      }
+      throw e;
+    }
+  }
+
+  private void executeManaged(Workload workload, int iteration) throws Exception {
+    Session session = ctx.neoSession;
+    assert session != null;
+    session.executeRead(tx -> {
+      ctx.bindTransaction(tx);
+      try {
+        workload.executeOnce(ctx, iteration);
+      } catch (RuntimeException e) {
+        throw e;
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      } finally {
+        ctx.bindTransaction(null);
+      }
+      return null;
+    }, ctx.neoTxConfig);
+    ctx.recorder.mark(Phase.COMMIT); // since the last mark inside the callback
+  }
+
+  // commits what's still open at the end of the run and hands the connection back in autocommit
+  void finish() throws SQLException {
+    if (mode != Mode.READ_ONLY) {
+      return;
+    }
+    commit();
+    if (ctx.pgConn != null) {
+      ctx.pgConn.setAutoCommit(true);
+      ctx.pgConn.setReadOnly(false);
+    }
+  }
+
+  private void commit() throws SQLException {
+    pending = 0;
+    if (neoTx != null) {
+      try {
+        neoTx.commit();
+      } finally {
+        closeNeoTx();
+      }
+    } else if (ctx.pgConn != null) {
+      ctx.pgConn.commit();
+    }
+  }
+
+  private void rollback() throws SQLException {
+    pending = 0;
+    if (neoTx != null) {
+      closeNeoTx(); // closing an uncommitted transaction rolls it back
+    } else if (ctx.pgConn != null && !ctx.pgConn.isClosed()) {
+      ctx.pgConn.rollback();
+    }
+  }
+
+  private void closeNeoTx() {
+    try {
+      neoTx.close();
+    } finally {
+      neoTx = null;
+      ctx.bindTransaction(null);
+    }
+  }
+
+  private static int isolation(String name) {
+    return switch (name.toLowerCase()) {
+      case "read-committed" -> Connection.TRANSACTION_READ_COMMITTED;
+      case "repeatable-read" -> Connection.TRANSACTION_REPEATABLE_READ;
+      case "serializable" -> Connection.TRANSACTION_SERIALIZABLE;
+      default -> throw new IllegalArgumentException("Unknown isolation level: " + name);
+    };
+  }
+}
@@ -2,6 +2,36 @@
 
 package tailored;
 
+import java.util.Map;
+
 public interface Workload {
+  // ctx.config is the config of the run being measured. A sweep reuses one workload for every thread count of a
+  // workload type and depth, so settings of the run are read from it here rather than kept from the constructor
   void executeOnce(BenchmarkContext ctx, int iteration) throws Exception;
+
+  // name of the query formulation in use, written to the results
+  default String strategy() {
+    return "DEFAULT";
+  }
+
+  // called by the runner right before and after the measured operations
+  default void beforeRun() {
+  }
+
+  // workload specific figures of the run, written as "key=value" lines
+  default Map<String, String> afterRun(int operations) {
+    return Map.of();
+  }
+
+  // node ids of an operation, {start} or {start, end}, recorded with --trace. null if there are none to record
+  default long[] nodeIds(int iteration) {
+    return null;
+  }
+
+  // runs operation i on startIds[i] (and endIds[i]) instead of the sampled ids, see Replay and KeyDistribution.
+  // Only called when nodeIds returns ids, every workload that does has to override it. The default throws, so a
+  // workload that forgets can't report a replay or a zipf run that actually ran on its own ids
+  default void useIds(BenchmarkContext ctx, long[] startIds, long[] endIds) throws Exception {
+    throw new UnsupportedOperationException(getClass().getSimpleName() + " returns node ids but doesn't override useIds");
+  }
 }
\ No newline at end of file
@@ -1,5 +1,8 @@
 package tailored;
 
+import tailored.workloads.Analytics;
+import tailored.workloads.Embedded;
+import tailored.workloads.FilteredTraversal;
 import tailored.workloads.FriendOfFriend;
 import tailored.workloads.Reciprocal;
 import tailored.workloads.ShortestPath;
@@ -9,11 +12,27 @@ import tailored.workloads.Filtered;
 public class WorkloadFactory {
 
   public static Workload create(BenchmarkContext ctx) throws Exception {
+    Workload workload = instantiate(ctx);
+    KeyDistribution.apply(ctx, workload);
+    return workload;
+  }
+
+  private static Workload instantiate(BenchmarkContext ctx) throws Exception {
+    if (ctx.config.workloadType().analytical()) {
+      return new Analytics(ctx); // every dbms, sql or cypher
+    }
+    if (ctx.config.workloadType() == WorkloadType.FILTERED_TRAVERSAL) {
+      return new FilteredTraversal(ctx); // every dbms as well
+    }
+    if (ctx.config.dbms() == Dbms.NEO4J_EMBEDDED) {
+      return new Embedded(ctx); // one class for every workload type, see --embedded-api
+    }
     return switch (ctx.config.workloadType()) {
       case FOF              -> new FriendOfFriend(ctx);
       case RECIPROCAL       -> new Reciprocal(ctx);
       case SHORTEST_PATH    -> new ShortestPath(ctx);
       case FILTERED         -> new Filtered(ctx);
+      case PAGERANK, WCC, TRIANGLES, FILTERED_TRAVERSAL -> throw new IllegalStateException();
     };
   }
 }
\ No newline at end of file
@@ -1,67 +1,224 @@
 package tailored;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 
 public final class WorkloadRunner {
+  private static final int PROGRESS_INTERVAL_S = 10;
+
+  // 0 = closed loop, every worker issues its next operation as soon as the previous one returns
+  private final double targetOpsPerSec;
+  private final long[] scheduleNs; // replay: start of operation i in ns after the start of the run
+
+  public WorkloadRunner() {
+    this(0);
+  }
+
+  // open loop: operation i is scheduled at i / targetOpsPerSec after the start, and its latency is
+  // measured from that scheduled time so queueing behind a saturated system is included
+  public WorkloadRunner(double targetOpsPerSec) {
+    this.targetOpsPerSec = targetOpsPerSec;
+    this.scheduleNs = null;
+  }
+
+  // open loop on an explicit schedule, e.g. the one of a replayed trace
+  public WorkloadRunner(long[] scheduleNs) {
+    this.targetOpsPerSec = 0;
+    this.scheduleNs = scheduleNs;
+  }
+
+  // opens one connection per thread for this run only
   public RunResult run(Workload workload,
                        BenchmarkContext ctx,
                        int operations,
                        int threads) throws Exception {
+    List<BenchmarkContext> threadCtxs = new ArrayList<>();
+    try {
+      for (int t = 0; t < threads; t++) {
+        threadCtxs.add(ConnectionFactory.cloneForThread(ctx));
+      }
+      return run(workload, threadCtxs, operations);
+    } finally {
+      for (BenchmarkContext threadCtx : threadCtxs) {
+        threadCtx.close();
+      }
+    }
+  }
+
+  // runs on caller-provided per-thread contexts, one worker per context. The contexts stay open
+  public RunResult run(Workload workload,
+                       List<BenchmarkContext> threadCtxs,
+                       int operations) throws Exception {
+    int threads = threadCtxs.size();
+    BenchmarkConfig config = threadCtxs.get(0).config;
+    Map<String, String> cacheState = CacheState.prepare(threadCtxs); // before the server counters are captured
+    long[] cacheBefore = CacheState.counters(threadCtxs);
+    String schemaProfile = config.dbms() == Dbms.POSTGRES ? SchemaProfile.current(threadCtxs.get(0).pgConn) : null;
+    boolean serverStats = config.dbms() == Dbms.POSTGRES && config.boolOption("server-stats");
+    Map<String, Double> serverBefore = serverStats ? ServerStats.capture(threadCtxs.get(0).pgConn) : null;
+    boolean planCacheStats = config.dbms() == Dbms.NEO4J && config.boolOption("plan-cache-stats");
+    if (planCacheStats) {
+      PlanCacheStats.start(threadCtxs.get(0).neoDriver);
+    }
+
     System.out.println("Starting workload execution...");
     ExecutorService exec = Executors.newFixedThreadPool(threads);
     long[] latenciesNs = new long[operations];
+    long[] doneNs = new long[operations]; // completion time since the start, for the --ingest timeline
+    Phase[] phases = Phase.values();
+    long[][] phaseNs = new long[phases.length][operations];
+    long[] rows = new long[operations];
+    long[] degrees = new long[operations];
     AtomicInteger index = new AtomicInteger(0);
     AtomicInteger succeeded = new AtomicInteger(0);
     AtomicInteger failed = new AtomicInteger(0);
+    // only transient errors are retried, a timeout or a lost connection would just fail again
+    int retries = config.intOption("retries", 0);
+    long backoffNs = config.intOption("retry-backoff-ms", 10) * 1_000_000L;
+    AtomicInteger retried = new AtomicInteger(0);
+    byte[] errors = new byte[operations]; // ErrorClass ordinal + 1, 0 = succeeded
+    Map<ErrorClass, Boolean> reported = new ConcurrentHashMap<>();
+    String trace = config.option("trace", null);
+    long[] scheduledNs = trace == null ? null : new long[operations]; // since the start, for --trace
+    long[] startedNs = trace == null ? null : new long[operations];
+
+    workload.beforeRun();
 
     int base = operations / threads;
     int remainder = operations % threads;
 
+    // the frames first: they can throw, and nothing has to be cleaned up yet
+    List<TransactionFrame> frames = new ArrayList<>();
+    for (BenchmarkContext threadCtx : threadCtxs) {
+      frames.add(new TransactionFrame(threadCtx));
+    }
+
+    Ingestor ingestor = Ingestor.open(threadCtxs.get(0)); // connects outside of the measured time
+    ClientOverhead overhead = ClientOverhead.start();
     long startWall = System.nanoTime();
 
     List<Future<?>> futures = new ArrayList<>();
-    for (int t = 0; t < threads; t++) {
-      BenchmarkContext threadCtx = ConnectionFactory.cloneForThread(ctx);
-      int opsThis = base + (t < remainder ? 1 : 0);
-      futures.add(exec.submit(() -> {
-        for (int i = 0; i < opsThis; i++) {
-          int idx = index.getAndIncrement();
-          long start = System.nanoTime();
-          try {
-            workload.executeOnce(threadCtx, idx);
-            succeeded.incrementAndGet();
-          } catch (Exception e) {
-            failed.incrementAndGet();
-            System.err.println(e);
+    long endWall;
+    try {
+      if (ingestor != null) {
+        ingestor.start(startWall);
+      }
+
+      for (int t = 0; t < threads; t++) {
+        BenchmarkContext threadCtx = threadCtxs.get(t);
+        TransactionFrame frame = frames.get(t);
+        int opsThis = base + (t < remainder ? 1 : 0);
+        futures.add(exec.submit(() -> {
+          long[] self = overhead.threadStart();
+          for (int i = 0; i < opsThis; i++) {
+            int idx = index.getAndIncrement();
+            long start = System.nanoTime();
+            long started = start;
+            if (targetOpsPerSec > 0 || scheduleNs != null) {
+              long scheduled = startWall + (scheduleNs != null
+                  ? scheduleNs[idx]
+                  : (long) (idx * 1_000_000_000.0 / targetOpsPerSec));
+              while (start < scheduled) {
+                LockSupport.parkNanos(scheduled - start);
+                start = System.nanoTime();
+              }
+              started = start;
+              start = scheduled;
+            }
+            if (scheduledNs != null) {
+              scheduledNs[idx] = start - startWall;
+              startedNs[idx] = started - startWall;
+            }
+            threadCtx.recorder.begin();
+            ErrorClass error = null;
+            for (int attempt = 0; ; attempt++) {
+              try {
+                frame.execute(workload, idx);
+                error = null;
+                break;
+              } catch (Exception e) {
+                error = ErrorClass.of(e);
+                if (reported.putIfAbsent(error, true) == null) {
+                  System.err.println("First " + error + " error: " + e);
+                }
+                if (error != ErrorClass.TRANSIENT || attempt >= retries) {
+                  break;
+                }
+                retried.incrementAndGet();
+                LockSupport.parkNanos(backoffNs << Math.min(attempt, 10));
+                threadCtx.recorder.begin(); // phases describe the last attempt
+              }
+            }
+            if (error == null) {
+              succeeded.incrementAndGet();
+            } else {
+              failed.incrementAndGet();
+              errors[idx] = (byte) (error.ordinal() + 1);
+            }
+            long end = System.nanoTime();
+            latenciesNs[idx] = end - start;
+            doneNs[idx] = end - startWall;
+            for (Phase p : phases) {
+              phaseNs[p.ordinal()][idx] = threadCtx.recorder.phaseNs(p);
+            }
+            // a failed operation's rows say nothing about its result size, it stays out of both bucket tables
+            rows[idx] = error == null ? threadCtx.recorder.rows() : -1;
+            degrees[idx] = error == null ? threadCtx.recorder.degree() : -1;
           }
-          long end = System.nanoTime();
-          latenciesNs[idx] = end - start;
+          frame.finish();
+          overhead.threadEnd(self);
+          return null;
+        }));
+      }
 
-          if ((idx + 1) % 10_000 == 0) {
-              double pct = (idx + 1) * 100.0 / operations;
-              System.out.printf("Progress: %d / %d ops (%.1f%%)%n", idx + 1, operations, pct);
+      // progress is printed from here, so the workers never touch System.out
+      for (Future<?> f : futures) {
+        while (true) {
+          try {
+            f.get(PROGRESS_INTERVAL_S, TimeUnit.SECONDS);
+            break;
+          } catch (TimeoutException e) {
+            int done = succeeded.get() + failed.get();
+            System.out.printf("Progress: %d / %d ops (%.1f%%)%n", done, operations, done * 100.0 / operations);
           }
         }
-      }));
+      }
+    } finally {
+      endWall = System.nanoTime(); // before waiting for the ingest batches in flight
+      exec.shutdown();
+      if (ingestor != null) {
+        ingestor.stop();
+      }
     }
-    for (Future<?> f : futures) f.get();
-    exec.shutdown();
 
-    long endWall = System.nanoTime();
+    Map<String, String> overheadLines = overhead.describe(index.get(), threads, config.dbms());
     long totalTimeMs = (endWall - startWall) / 1_000_000L;
     int n = index.get();
 
+    if (trace != null) {
+      writeTrace(Path.of(trace), workload, config, scheduledNs, startedNs, n);
+    }
+
     long[] sorted = Arrays.copyOf(latenciesNs, n);
     Arrays.sort(sorted);
 
-    long p95Ns = sorted[(int) Math.floor(0.95 * n) - 1]; // could underflow if n == 1
-    long p99Ns = sorted[(int) Math.floor(0.99 * n) - 1]; // same here
+    // clamped for the short runs of the analytical workloads, often a single operation
+    long p95Ns = sorted[Math.max(0, (int) Math.floor(0.95 * n) - 1)];
+    long p99Ns = sorted[Math.max(0, (int) Math.floor(0.99 * n) - 1)];
 
     long sumNs = 0;
     for (int i = 0; i < n; i++) sumNs += sorted[i];
@@ -69,7 +226,52 @@ public final class WorkloadRunner {
     double avgUs = sumNs / 1000.0 / n;
     double throughput = n * 1000.0 / totalTimeMs; // would divide by zero if totalTimeMs was somehow 0
 
+    Map<String, String> details = new LinkedHashMap<>(cacheState);
+    details.putAll(CacheState.describe(cacheBefore, CacheState.counters(threadCtxs)));
+    if (schemaProfile != null) {
+      details.put("SCHEMA Profile", schemaProfile);
+    }
+    details.putAll(workload.afterRun(n));
+    if (serverStats) {
+      ServerStats.flush(threadCtxs);
+      details.putAll(ServerStats.describe(serverBefore, ServerStats.capture(threadCtxs.get(0).pgConn), n));
+    }
+    if (planCacheStats) {
+      details.putAll(PlanCacheStats.stop(threadCtxs.get(0).neoDriver));
+    }
+
+    details.putAll(overheadLines);
+
+    if (retries > 0) {
+      details.put("RETRIES Count", String.valueOf(retried.get()));
+    }
+    if (ingestor != null) {
+      details.putAll(ingestor.describe(endWall - startWall));
+      details.putAll(ingestor.timeline(doneNs, latenciesNs, n, endWall - startWall));
+    }
+
+    Map<ErrorClass, LatencyStats> errorLatencies = new EnumMap<>(ErrorClass.class);
+    for (ErrorClass c : ErrorClass.values()) {
+      long[] ns = new long[n];
+      for (int i = 0; i < n; i++) {
+        ns[i] = errors[i] == c.ordinal() + 1 ? latenciesNs[i] : -1;
+      }
+      LatencyStats stats = LatencyStats.of(ns, n);
+      if (stats.count() > 0) {
+        errorLatencies.put(c, stats);
+      }
+    }
+
+    Map<Phase, LatencyStats> phaseLatencies = new EnumMap<>(Phase.class);
+    for (Phase p : phases) {
+      LatencyStats stats = LatencyStats.of(phaseNs[p.ordinal()], n);
+      if (stats.count() > 0) {
+        phaseLatencies.put(p, stats);
+      }
+    }
+
     return new RunResult(
+        workload.strategy(),
         n,
         totalTimeMs,
         throughput,
@@ -77,7 +279,28 @@ public final class WorkloadRunner {
         p95Ns / 1000,
         p99Ns / 1000,
         succeeded.get(),
-        failed.get()
+        failed.get(),
+        phaseLatencies,
+        LatencyStats.byLog2Bucket(latenciesNs, rows, n),
+        LatencyStats.byLog2Bucket(latenciesNs, degrees, n),
+        errorLatencies,
+        details
     );
   }
-}
\ No newline at end of file
+
+  private static void writeTrace(Path path, Workload workload, BenchmarkConfig config,
+                                 long[] scheduledNs, long[] startedNs, int n) throws IOException {
+    if (n == 0 || workload.nodeIds(0) == null) {
+      System.err.println("Not writing a trace, " + workload.strategy() + " has no node ids to record");
+      return;
+    }
+    List<OperationTrace.Op> ops = new ArrayList<>(n);
+    for (int i = 0; i < n; i++) {
+      long[] ids = workload.nodeIds(i);
+      ops.add(new OperationTrace.Op(config.workloadType(), config.depth(), ids[0], ids.length > 1 ? ids[1] : -1,
+          scheduledNs[i], startedNs[i]));
+    }
+    OperationTrace.append(path, ops);
+    System.out.println("Appended " + n + " operations to trace " + path);
+  }
+}
@@ -4,5 +4,14 @@ public enum WorkloadType {
     FOF, // friend-of-friend
     RECIPROCAL,
     SHORTEST_PATH,
-    FILTERED
+    FILTERED,
+    // whole-graph analytics, see workloads.Analytics
+    PAGERANK,
+    WCC,
+    TRIANGLES,
+    FILTERED_TRAVERSAL; // multi-hop, predicate of chosen selectivity, see workloads.FilteredTraversal
+
+    public boolean analytical() {
+        return this == PAGERANK || this == WCC || this == TRIANGLES;
+    }
 }
@@ -0,0 +1,201 @@
+// bounded node id -> neighbour ids cache shared by all runner threads, modelling the cache services keep in
+// front of the graph store. Keys are spread over independently locked segments, each bounded by the
+// approximate heap footprint of its entries.
+//
+// LRU evicts the least recently used entry. TINY_LFU is a simplified W-TinyLFU: new entries go to a small
+// LRU window, and an entry leaving the window only replaces the main region's LRU victim if the frequency
+// sketch has seen it more often, which keeps one-off lookups from flushing the hot hub nodes
+
+package tailored.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+public final class AdjacencyCache {
+  public enum Policy {
+    LRU, TINY_LFU
+  }
+
+  // map node, boxed key, entry object and array header on top of 8 bytes per neighbour
+  private static final long ENTRY_OVERHEAD_BYTES = 96;
+  private static final double WINDOW_SHARE = 0.01;
+
+  private final Segment[] segments;
+  private final long ttlNanos; // 0 = entries never expire
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  private final LongAdder expirations = new LongAdder();
+  private volatile long lastDrain = System.nanoTime();
+
+  public AdjacencyCache(Policy policy, long capacityBytes, long ttlMillis) {
+    int count = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 4);
+    this.segments = new Segment[count];
+    for (int i = 0; i < count; i++) {
+      segments[i] = new Segment(policy, capacityBytes / count);
+    }
+    this.ttlNanos = ttlMillis * 1_000_000L;
+  }
+
+  // null on a miss
+  public long[] get(long node) {
+    Segment s = segmentFor(node);
+    s.lock.lock();
+    try {
+      if (s.sketch != null) {
+        s.sketch.increment(node);
+      }
+
+      Entry e = s.window.get(node);
+      if (e == null) {
+        e = s.main.get(node);
+      }
+      if (e != null && ttlNanos > 0 && System.nanoTime() - e.loadedAt > ttlNanos) {
+        s.remove(node);
+        expirations.increment();
+        e = null;
+      }
+
+      if (e == null) {
+        misses.increment();
+        return null;
+      }
+      hits.increment();
+      return e.neighbours;
+    } finally {
+      s.lock.unlock();
+    }
+  }
+
+  public void put(long node, long[] neighbours) {
+    Segment s = segmentFor(node);
+    s.lock.lock();
+    try {
+      s.remove(node);
+      evictions.add(s.insert(node, new Entry(neighbours, System.nanoTime())));
+    } finally {
+      s.lock.unlock();
+    }
+  }
+
+  // resets the counters, entries and bytes describe the current content
+  public CacheStats drainStats() {
+    long entries = 0;
+    long bytes = 0;
+    for (Segment s : segments) {
+      s.lock.lock();
+      try {
+        entries += s.window.size() + s.main.size();
+        bytes += s.windowBytes + s.mainBytes + (s.sketch == null ? 0 : s.sketch.sizeBytes());
+      } finally {
+        s.lock.unlock();
+      }
+    }
+
+    long now = System.nanoTime();
+    CacheStats stats = new CacheStats(hits.sumThenReset(), misses.sumThenReset(), evictions.sumThenReset(),
+        expirations.sumThenReset(), entries, bytes, now - lastDrain);
+    lastDrain = now;
+    return stats;
+  }
+
+  private Segment segmentFor(long node) {
+    long h = node * 0x9E3779B97F4A7C15L;
+    return segments[(int) (h >>> 40) & (segments.length - 1)];
+  }
+
+  private static long weight(long[] neighbours) {
+    return ENTRY_OVERHEAD_BYTES + 8L * neighbours.length;
+  }
+
+  private record Entry(long[] neighbours, long loadedAt) {}
+
+  private static final class Segment {
+    final ReentrantLock lock = new ReentrantLock();
+    final LinkedHashMap<Long, Entry> window = new LinkedHashMap<>(16, 0.75f, true);
+    final LinkedHashMap<Long, Entry> main = new LinkedHashMap<>(16, 0.75f, true);
+    final long windowCapacity;
+    final long mainCapacity;
+    final FrequencySketch sketch; // null for plain LRU
+    long windowBytes;
+    long mainBytes;
+
+    Segment(Policy policy, long capacityBytes) {
+      if (policy == Policy.TINY_LFU) {
+        this.windowCapacity = Math.max(1, (long) (capacityBytes * WINDOW_SHARE));
+        this.mainCapacity = capacityBytes - windowCapacity;
+        this.sketch = new FrequencySketch(capacityBytes / (ENTRY_OVERHEAD_BYTES + 8 * 16));
+      } else {
+        this.windowCapacity = 0;
+        this.mainCapacity = capacityBytes;
+        this.sketch = null;
+      }
+    }
+
+    void remove(long node) {
+      Entry e = window.remove(node);
+      if (e != null) {
+        windowBytes -= weight(e.neighbours);
+      }
+      e = main.remove(node);
+      if (e != null) {
+        mainBytes -= weight(e.neighbours);
+      }
+    }
+
+    // returns the number of evicted entries
+    int insert(long node, Entry entry) {
+      if (sketch == null) {
+        main.put(node, entry);
+        mainBytes += weight(entry.neighbours);
+        return evictLru(mainBytes - mainCapacity);
+      }
+
+      window.put(node, entry);
+      windowBytes += weight(entry.neighbours);
+
+      int evicted = 0;
+      while (windowBytes > windowCapacity && !window.isEmpty()) {
+        Map.Entry<Long, Entry> candidate = window.pollFirstEntry();
+        windowBytes -= weight(candidate.getValue().neighbours);
+        evicted += admit(candidate.getKey(), candidate.getValue());
+      }
+      return evicted;
+    }
+
+    // moves an entry leaving the window into main if it is more popular than what it would displace
+    private int admit(long node, Entry entry) {
+      long w = weight(entry.neighbours);
+      if (w > mainCapacity) {
+        return 1;
+      }
+
+      Map.Entry<Long, Entry> victim = main.firstEntry();
+      if (mainBytes + w > mainCapacity && sketch.frequency(victim.getKey()) >= sketch.frequency(node)) {
+        return 1; // candidate rejected
+      }
+
+      int evicted = evictLru(mainBytes + w - mainCapacity);
+      main.put(node, entry);
+      mainBytes += w;
+      return evicted;
+    }
+
+    // evicts least recently used main entries until at least bytes have been freed
+    private int evictLru(long bytes) {
+      int evicted = 0;
+      long freed = 0;
+      while (freed < bytes && !main.isEmpty()) {
+        Map.Entry<Long, Entry> eldest = main.pollFirstEntry();
+        long w = weight(eldest.getValue().neighbours);
+        mainBytes -= w;
+        freed += w;
+        evicted++;
+      }
+      return evicted;
+    }
+  }
+}
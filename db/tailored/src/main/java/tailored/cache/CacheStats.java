@@ -0,0 +1,21 @@
+package tailored.cache;
+
+// counters since the previous AdjacencyCache.drainStats(), plus the current size
+public record CacheStats(
+    long hits,
+    long misses,
+    long evictions,
+    long expirations,
+    long entries,
+    long bytes,
+    long elapsedNanos
+) {
+    public double hitRatio() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    public double evictionsPerSec() {
+        return elapsedNanos == 0 ? 0 : evictions * 1e9 / elapsedNanos;
+    }
+}
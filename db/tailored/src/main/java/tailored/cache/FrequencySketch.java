@@ -0,0 +1,56 @@
+// count-min sketch estimating how often a key was accessed recently, used as the TinyLFU admission filter.
+// Counters are halved every sampleSize increments so old popularity fades out
+
+package tailored.cache;
+
+final class FrequencySketch {
+  private static final long[] SEEDS = {
+      0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L
+  };
+
+  private final int[] table;
+  private final int mask;
+  private final int sampleSize;
+  private int additions;
+
+  FrequencySketch(long expectedEntries) {
+    int width = Integer.highestOneBit((int) Math.max(16, Math.min(1 << 24, expectedEntries)) * 2 - 1);
+    this.table = new int[width * SEEDS.length];
+    this.mask = width - 1;
+    this.sampleSize = 10 * width;
+  }
+
+  void increment(long key) {
+    for (int i = 0; i < SEEDS.length; i++) {
+      table[index(key, i)]++;
+    }
+    if (++additions >= sampleSize) {
+      reset();
+    }
+  }
+
+  int frequency(long key) {
+    int min = Integer.MAX_VALUE;
+    for (int i = 0; i < SEEDS.length; i++) {
+      min = Math.min(min, table[index(key, i)]);
+    }
+    return min;
+  }
+
+  long sizeBytes() {
+    return 16L + 4L * table.length;
+  }
+
+  private int index(long key, int row) {
+    long h = (key + SEEDS[row]) * SEEDS[(row + 1) % SEEDS.length];
+    h ^= h >>> 32;
+    return row * (mask + 1) + ((int) h & mask);
+  }
+
+  private void reset() {
+    for (int i = 0; i < table.length; i++) {
+      table[i] >>>= 1;
+    }
+    additions /= 2;
+  }
+}
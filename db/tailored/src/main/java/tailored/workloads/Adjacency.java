@@ -0,0 +1,146 @@
+// read-through access to neighbour lists via the optional adjacency cache (--cache=lru|tiny-lfu)
+
+package tailored.workloads;
+
+import org.neo4j.driver.Record;
+import org.neo4j.driver.Result;
+import tailored.BenchmarkContext;
+import tailored.Phase;
+import tailored.SqlDialect;
+import tailored.cache.AdjacencyCache;
+import tailored.cache.CacheStats;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+final class Adjacency {
+  private Adjacency() {
+  }
+
+  // null unless --cache is set
+  static AdjacencyCache createCache(BenchmarkContext ctx) {
+    String policy = ctx.config.option("cache", null);
+    if (policy == null) {
+      return null;
+    }
+
+    return new AdjacencyCache(
+        AdjacencyCache.Policy.valueOf(policy.toUpperCase().replace('-', '_')),
+        ctx.config.intOption("cache-mb", 256) * 1024L * 1024L,
+        ctx.config.intOption("cache-ttl-ms", 0));
+  }
+
+  // neighbour lists of ids (same order), fetching only the cache misses from the database in one query
+  static long[][] lookup(AdjacencyCache cache, BenchmarkContext ctx, long[] ids) throws Exception {
+    long[][] result = new long[ids.length][];
+    long[] missing = new long[ids.length];
+    int missCount = 0;
+    for (int i = 0; i < ids.length; i++) {
+      result[i] = cache.get(ids[i]);
+      if (result[i] == null) {
+        missing[missCount++] = ids[i];
+      }
+    }
+    ctx.recorder.mark(Phase.CACHE);
+
+    if (missCount == 0) {
+      return result;
+    }
+
+    missing = Arrays.copyOf(missing, missCount);
+    Map<Long, long[]> loaded = ctx.config.dbms().sql()
+        ? loadSql(ctx, missing)
+        : loadNeo4j(ctx, missing);
+
+    for (int i = 0; i < ids.length; i++) {
+      if (result[i] == null) {
+        // nodes without outgoing edges are cached as empty lists so they don't miss again
+        result[i] = loaded.getOrDefault(ids[i], new long[0]);
+        cache.put(ids[i], result[i]);
+      }
+    }
+    ctx.recorder.mark(Phase.CACHE);
+    return result;
+  }
+
+  static Map<String, String> describe(AdjacencyCache cache, int operations) {
+    CacheStats stats = cache.drainStats();
+
+    Map<String, String> lines = new LinkedHashMap<>();
+    lines.put("CACHE Hits", String.valueOf(stats.hits()));
+    lines.put("CACHE Misses", String.valueOf(stats.misses()));
+    lines.put("CACHE HitRatio", String.format("%.4f", stats.hitRatio()));
+    lines.put("CACHE Evictions", String.valueOf(stats.evictions()));
+    lines.put("CACHE Evictions(per sec)", String.format("%.2f", stats.evictionsPerSec()));
+    lines.put("CACHE Expirations", String.valueOf(stats.expirations()));
+    lines.put("CACHE LookupsPerOp", String.format("%.2f", (double) (stats.hits() + stats.misses()) / Math.max(1, operations)));
+    lines.put("CACHE Entries", String.valueOf(stats.entries()));
+    lines.put("CACHE Memory(bytes)", String.valueOf(stats.bytes()));
+    return lines;
+  }
+
+  private static Map<Long, long[]> loadSql(BenchmarkContext ctx, long[] ids) throws Exception {
+    SqlDialect dialect = ctx.config.dbms().dialect();
+    String sql = "SELECT start_id, end_id FROM edges WHERE " + dialect.anyOf("start_id") + " ORDER BY start_id";
+
+    assert ctx.pgConn != null;
+    Map<Long, long[]> lists = new HashMap<>();
+    try (PreparedStatement ps = ctx.pgConn.prepareStatement(sql)) {
+      dialect.bindIds(ps, 1, ids);
+      ctx.recorder.mark(Phase.PREPARE);
+
+      try (ResultSet rs = ps.executeQuery()) {
+        ctx.recorder.mark(Phase.EXECUTE);
+
+        long current = 0;
+        long[] buf = new long[16];
+        int size = 0;
+        boolean more = rs.next();
+        ctx.recorder.mark(Phase.FIRST_ROW);
+        while (more) {
+          long start = rs.getLong(1);
+          if (size > 0 && start != current) {
+            lists.put(current, Arrays.copyOf(buf, size));
+            size = 0;
+          }
+          current = start;
+          if (size == buf.length) {
+            buf = Arrays.copyOf(buf, size * 2);
+          }
+          buf[size++] = rs.getLong(2);
+          more = rs.next();
+        }
+        if (size > 0) {
+          lists.put(current, Arrays.copyOf(buf, size));
+        }
+        ctx.recorder.mark(Phase.CONSUME);
+      }
+    }
+    return lists;
+  }
+
+  private static Map<Long, long[]> loadNeo4j(BenchmarkContext ctx, long[] ids) {
+    String cypher = """
+        UNWIND $ids AS id
+        MATCH (p:Person {id: id})
+        RETURN id, [(p)-[:FRIENDS_WITH]->(f) | f.id] AS neighbours
+        """;
+
+    assert ctx.neoSession != null;
+    Result rs = ctx.neoRun(cypher, Map.of("ids", Arrays.stream(ids).boxed().toList()));
+    ctx.recorder.mark(Phase.EXECUTE);
+
+    Map<Long, long[]> lists = new HashMap<>();
+    while (rs.hasNext()) {
+      Record r = rs.next();
+      long[] neighbours = r.get("neighbours").asList(v -> v.asLong()).stream().mapToLong(Long::longValue).toArray();
+      lists.put(r.get("id").asLong(), neighbours);
+    }
+    ctx.recorder.mark(Phase.CONSUME);
+    return lists;
+  }
+}
@@ -0,0 +1,372 @@
+package tailored.workloads;
+
+import org.neo4j.driver.Record;
+import org.neo4j.graphdb.GraphDatabaseService;
+import tailored.BenchmarkContext;
+import tailored.Dbms;
+import tailored.Phase;
+import tailored.SqlDialect;
+import tailored.TransactionFrame;
+import tailored.Workload;
+import tailored.WorkloadType;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// whole-graph analytics over the friendship graph, every operation runs the complete algorithm:
+//   PAGERANK   --iterations=20 rounds of pagerank with --damping=0.85 (the rank of dangling nodes is dropped)
+//   WCC        weakly connected components by min-label propagation, until no label changes (--max-iterations=100)
+//   TRIANGLES  directed 3-cycles a->b->c->a, each counted once
+// Every round is one statement (per-round timings in the ANALYTICS lines), on the sql dbmss between temp tables,
+// on neo4j between scratch properties of the Person nodes that are removed again at the end. Neo4j runs the
+// rounds through apoc.periodic.iterate in parallel batches, --apoc=false (and the embedded database) in one
+// plain cypher statement each
+public class Analytics implements Workload {
+  private static final String TRIANGLES_SQL = """
+      SELECT COUNT(*)
+      FROM edges e1
+      JOIN edges e2 ON e2.start_id = e1.end_id
+      JOIN edges e3 ON e3.start_id = e2.end_id AND e3.end_id = e1.start_id
+      WHERE e1.start_id < e2.start_id AND e1.start_id < e3.start_id
+      """;
+  private static final String TRIANGLES_CYPHER = """
+      MATCH (a:Person)-[:FRIENDS_WITH]->(b:Person)-[:FRIENDS_WITH]->(c:Person)-[:FRIENDS_WITH]->(a)
+      WHERE a.id < b.id AND a.id < c.id
+      RETURN count(*)
+      """;
+
+  private final WorkloadType type;
+  private final Dbms dbms;
+  private final boolean apoc;
+  private final int iterations;
+  private final int maxIterations;
+  private final double damping;
+  private final long nodes;
+  private final long edges;
+
+  // per round, summed over the operations of the run
+  private final List<Long> roundNs = new ArrayList<>();
+  private final List<Integer> roundRuns = new ArrayList<>();
+  private long rounds;
+  private long result;
+
+  public Analytics(BenchmarkContext ctx) throws Exception {
+    this.type = ctx.config.workloadType();
+    this.dbms = ctx.config.dbms();
+    this.apoc = dbms == Dbms.NEO4J && Boolean.parseBoolean(ctx.config.option("apoc", "true"));
+    this.iterations = ctx.config.intOption("iterations", 20);
+    this.maxIterations = ctx.config.intOption("max-iterations", 100);
+    this.damping = Double.parseDouble(ctx.config.option("damping", "0.85"));
+
+    if (TransactionFrame.mode(ctx.config) != TransactionFrame.Mode.AUTOCOMMIT) {
+      throw new IllegalArgumentException("The analytical workloads write scratch tables / properties and need --tx-mode=autocommit");
+    }
+    if (!dbms.sql() && ctx.config.threads() > 1) {
+      throw new IllegalArgumentException("The analytical workloads share their scratch properties on neo4j, run them with 1 thread");
+    }
+
+    if (dbms.sql()) {
+      this.nodes = querySql(ctx.pgConn, "SELECT COUNT(*) FROM nodes");
+      this.edges = querySql(ctx.pgConn, "SELECT COUNT(*) FROM edges");
+    } else {
+      this.nodes = queryNeo4j(ctx, "MATCH (n:Person) RETURN count(n)", Map.of());
+      this.edges = queryNeo4j(ctx, "MATCH ()-[r:FRIENDS_WITH]->() RETURN count(r)", Map.of());
+    }
+  }
+
+  @Override
+  public void executeOnce(BenchmarkContext ctx, int iteration) throws Exception {
+    long[] ns;
+    if (dbms.sql()) {
+      ns = switch (type) {
+        case PAGERANK -> pageRankSql(ctx);
+        case WCC -> wccSql(ctx);
+        case TRIANGLES -> trianglesSql(ctx);
+        default -> throw new IllegalStateException("Unsupported workload: " + type);
+      };
+    } else {
+      ns = switch (type) {
+        case PAGERANK -> pageRankNeo4j(ctx);
+        case WCC -> wccNeo4j(ctx);
+        case TRIANGLES -> trianglesNeo4j(ctx);
+        default -> throw new IllegalStateException("Unsupported workload: " + type);
+      };
+    }
+    record(ns);
+  }
+
+  @Override
+  public String strategy() {
+    if (dbms.sql()) {
+      return "SQL";
+    }
+    return apoc ? "APOC" : dbms == Dbms.NEO4J_EMBEDDED ? "EMBEDDED_CYPHER" : "CYPHER";
+  }
+
+  @Override
+  public synchronized void beforeRun() {
+    roundNs.clear();
+    roundRuns.clear();
+    rounds = 0;
+  }
+
+  @Override
+  public synchronized Map<String, String> afterRun(int operations) {
+    long totalNs = roundNs.stream().mapToLong(Long::longValue).sum();
+
+    Map<String, String> lines = new LinkedHashMap<>();
+    lines.put("ANALYTICS Nodes", String.valueOf(nodes));
+    lines.put("ANALYTICS Edges", String.valueOf(edges));
+    lines.put("ANALYTICS Rounds", String.format("%.2f", (double) rounds / Math.max(1, operations)));
+    // every round scans every edge once
+    lines.put("ANALYTICS EdgesPerSec", String.format("%.2f", edges * rounds * 1e9 / Math.max(1, totalNs)));
+    switch (type) {
+      case WCC -> lines.put("ANALYTICS Components", String.valueOf(result));
+      case TRIANGLES -> lines.put("ANALYTICS Triangles", String.valueOf(result));
+      default -> {
+      }
+    }
+    for (int i = 0; i < roundNs.size(); i++) {
+      lines.put("ANALYTICS Round[" + (i + 1) + "](ms)", String.format("%.2f", roundNs.get(i) / 1e6 / roundRuns.get(i)));
+    }
+    return lines;
+  }
+
+  private synchronized void record(long[] ns) {
+    for (int i = 0; i < ns.length; i++) {
+      if (i == roundNs.size()) {
+        roundNs.add(0L);
+        roundRuns.add(0);
+      }
+      roundNs.set(i, roundNs.get(i) + ns[i]);
+      roundRuns.set(i, roundRuns.get(i) + 1);
+    }
+    rounds += ns.length;
+  }
+
+  private synchronized void result(long value) {
+    this.result = value;
+  }
+
+  // ranks alternate between pr_a and pr_b, the out-degrees are kept in pr_deg
+  private long[] pageRankSql(BenchmarkContext ctx) throws SQLException {
+    Connection conn = ctx.pgConn;
+    assert conn != null;
+    SqlDialect dialect = dbms.dialect();
+    execute(conn,
+        dialect.createTempTable("pr_deg (id BIGINT PRIMARY KEY, deg BIGINT)"),
+        dialect.createTempTable("pr_a (id BIGINT PRIMARY KEY, rank DOUBLE PRECISION)"),
+        dialect.createTempTable("pr_b (id BIGINT PRIMARY KEY, rank DOUBLE PRECISION)"),
+        dialect.truncate("pr_deg"), dialect.truncate("pr_a"), dialect.truncate("pr_b"),
+        "INSERT INTO pr_deg (id, deg) SELECT start_id, COUNT(*) FROM edges GROUP BY start_id");
+    try (PreparedStatement ps = conn.prepareStatement("INSERT INTO pr_a (id, rank) SELECT id, CAST(? AS DOUBLE PRECISION) FROM nodes")) {
+      ps.setDouble(1, 1.0 / Math.max(1, nodes));
+      ps.executeUpdate();
+    }
+    ctx.recorder.mark(Phase.PREPARE);
+
+    long[] ns = new long[iterations];
+    for (int i = 0; i < iterations; i++) {
+      String cur = i % 2 == 0 ? "pr_a" : "pr_b";
+      String next = i % 2 == 0 ? "pr_b" : "pr_a";
+      long start = System.nanoTime();
+      execute(conn, dialect.truncate(next));
+      try (PreparedStatement ps = conn.prepareStatement("""
+          INSERT INTO %2$s (id, rank)
+          SELECT n.id, CAST(? AS DOUBLE PRECISION) + CAST(? AS DOUBLE PRECISION) * COALESCE(s.contrib, 0)
+          FROM nodes n
+          LEFT JOIN (
+              SELECT e.end_id AS id, SUM(c.rank / d.deg) AS contrib
+              FROM edges e
+              JOIN %1$s c ON c.id = e.start_id
+              JOIN pr_deg d ON d.id = e.start_id
+              GROUP BY e.end_id
+          ) s ON s.id = n.id
+          """.formatted(cur, next))) {
+        ps.setDouble(1, (1 - damping) / Math.max(1, nodes));
+        ps.setDouble(2, damping);
+        ps.executeUpdate();
+      }
+      ns[i] = System.nanoTime() - start;
+    }
+    ctx.recorder.mark(Phase.EXECUTE);
+    ctx.recorder.rows(nodes);
+    return ns;
+  }
+
+  private long[] wccSql(BenchmarkContext ctx) throws SQLException {
+    Connection conn = ctx.pgConn;
+    assert conn != null;
+    SqlDialect dialect = dbms.dialect();
+    execute(conn,
+        dialect.createTempTable("wcc_a (id BIGINT PRIMARY KEY, label BIGINT)"),
+        dialect.createTempTable("wcc_b (id BIGINT PRIMARY KEY, label BIGINT)"),
+        dialect.truncate("wcc_a"), dialect.truncate("wcc_b"),
+        "INSERT INTO wcc_a (id, label) SELECT id, id FROM nodes");
+    ctx.recorder.mark(Phase.PREPARE);
+
+    List<Long> ns = new ArrayList<>();
+    String cur = "wcc_a";
+    for (int i = 0; i < maxIterations; i++) {
+      String next = cur.equals("wcc_a") ? "wcc_b" : "wcc_a";
+      long start = System.nanoTime();
+      execute(conn, dialect.truncate(next), """
+          INSERT INTO %2$s (id, label)
+          SELECT id, MIN(label)
+          FROM (
+              SELECT id, label FROM %1$s
+              UNION ALL
+              SELECT e.end_id, c.label FROM edges e JOIN %1$s c ON c.id = e.start_id
+              UNION ALL
+              SELECT e.start_id, c.label FROM edges e JOIN %1$s c ON c.id = e.end_id
+          ) t
+          GROUP BY id
+          """.formatted(cur, next));
+      long changed = querySql(conn, """
+          SELECT COUNT(*) FROM %2$s n LEFT JOIN %1$s c ON c.id = n.id
+          WHERE c.id IS NULL OR n.label <> c.label
+          """.formatted(cur, next));
+      ns.add(System.nanoTime() - start);
+      cur = next;
+      if (changed == 0) {
+        break;
+      }
+    }
+    ctx.recorder.mark(Phase.EXECUTE);
+
+    result(querySql(conn, "SELECT COUNT(DISTINCT label) FROM " + cur));
+    ctx.recorder.mark(Phase.CONSUME);
+    ctx.recorder.rows(1);
+    return ns.stream().mapToLong(Long::longValue).toArray();
+  }
+
+  private long[] trianglesSql(BenchmarkContext ctx) throws SQLException {
+    assert ctx.pgConn != null;
+    long start = System.nanoTime();
+    result(querySql(ctx.pgConn, TRIANGLES_SQL));
+    long ns = System.nanoTime() - start;
+    ctx.recorder.mark(Phase.EXECUTE);
+    ctx.recorder.rows(1);
+    return new long[]{ns};
+  }
+
+  private long[] pageRankNeo4j(BenchmarkContext ctx) {
+    try {
+      forEachPerson(ctx, "SET n.pr_deg = COUNT { (n)-[:FRIENDS_WITH]->() }, n.pr_a = $init",
+          Map.of("init", 1.0 / Math.max(1, nodes)));
+      ctx.recorder.mark(Phase.PREPARE);
+
+      long[] ns = new long[iterations];
+      for (int i = 0; i < iterations; i++) {
+        String cur = i % 2 == 0 ? "pr_a" : "pr_b";
+        String next = i % 2 == 0 ? "pr_b" : "pr_a";
+        long start = System.nanoTime();
+        forEachPerson(ctx, """
+            OPTIONAL MATCH (m:Person)-[:FRIENDS_WITH]->(n)
+            WITH n, sum(m.%1$s / m.pr_deg) AS contrib
+            SET n.%2$s = $base + $damping * contrib
+            """.formatted(cur, next), Map.of("base", (1 - damping) / Math.max(1, nodes), "damping", damping));
+        ns[i] = System.nanoTime() - start;
+      }
+      ctx.recorder.mark(Phase.EXECUTE);
+      ctx.recorder.rows(nodes);
+      return ns;
+    } finally {
+      forEachPerson(ctx, "REMOVE n.pr_deg, n.pr_a, n.pr_b", Map.of());
+    }
+  }
+
+  private long[] wccNeo4j(BenchmarkContext ctx) {
+    try {
+      forEachPerson(ctx, "SET n.wcc_a = n.id", Map.of());
+      ctx.recorder.mark(Phase.PREPARE);
+
+      List<Long> ns = new ArrayList<>();
+      String cur = "wcc_a";
+      for (int i = 0; i < maxIterations; i++) {
+        String next = cur.equals("wcc_a") ? "wcc_b" : "wcc_a";
+        long start = System.nanoTime();
+        forEachPerson(ctx, """
+            OPTIONAL MATCH (n)-[:FRIENDS_WITH]-(m:Person)
+            WITH n, min(m.%1$s) AS low
+            SET n.%2$s = CASE WHEN low < n.%1$s THEN low ELSE n.%1$s END
+            """.formatted(cur, next), Map.of());
+        long changed = queryNeo4j(ctx,
+            "MATCH (n:Person) WHERE n.%2$s <> n.%1$s RETURN count(n)".formatted(cur, next), Map.of());
+        ns.add(System.nanoTime() - start);
+        cur = next;
+        if (changed == 0) {
+          break;
+        }
+      }
+      ctx.recorder.mark(Phase.EXECUTE);
+
+      result(queryNeo4j(ctx, "MATCH (n:Person) RETURN count(DISTINCT n." + cur + ")", Map.of()));
+      ctx.recorder.mark(Phase.CONSUME);
+      ctx.recorder.rows(1);
+      return ns.stream().mapToLong(Long::longValue).toArray();
+    } finally {
+      forEachPerson(ctx, "REMOVE n.wcc_a, n.wcc_b", Map.of());
+    }
+  }
+
+  private long[] trianglesNeo4j(BenchmarkContext ctx) {
+    long start = System.nanoTime();
+    result(queryNeo4j(ctx, TRIANGLES_CYPHER, Map.of()));
+    long ns = System.nanoTime() - start;
+    ctx.recorder.mark(Phase.EXECUTE);
+    ctx.recorder.rows(1);
+    return new long[]{ns};
+  }
+
+  // runs update (with n bound to every Person) as one round
+  private void forEachPerson(BenchmarkContext ctx, String update, Map<String, Object> params) {
+    if (apoc) {
+      long failed = queryNeo4j(ctx, """
+          CALL apoc.periodic.iterate('MATCH (n:Person) RETURN n', $update,
+                                     {batchSize: 10000, parallel: true, params: $params})
+          YIELD failedOperations
+          RETURN failedOperations
+          """, Map.of("update", update, "params", params));
+      if (failed > 0) {
+        throw new IllegalStateException(failed + " nodes failed in apoc.periodic.iterate of: " + update);
+      }
+    } else {
+      queryNeo4j(ctx, "MATCH (n:Person) " + update + " RETURN count(*)", params);
+    }
+  }
+
+  // first column of the single row
+  private static long queryNeo4j(BenchmarkContext ctx, String cypher, Map<String, Object> params) {
+    GraphDatabaseService db = ctx.neoDb;
+    if (db != null) {
+      return db.executeTransactionally(cypher, params, rs -> ((Number) rs.next().values().iterator().next()).longValue());
+    }
+    assert ctx.neoSession != null;
+    Record row = ctx.neoSession.run(cypher, params, ctx.neoTxConfig).single();
+    return row.get(0).asLong();
+  }
+
+  private static long querySql(Connection conn, String sql) throws SQLException {
+    try (Statement st = conn.createStatement();
+         ResultSet rs = st.executeQuery(sql)) {
+      rs.next();
+      return rs.getLong(1);
+    }
+  }
+
+  private static void execute(Connection conn, String... statements) throws SQLException {
+    try (Statement st = conn.createStatement()) {
+      for (String sql : statements) {
+        st.execute(sql);
+      }
+    }
+  }
+}
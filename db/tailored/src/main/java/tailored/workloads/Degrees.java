@@ -0,0 +1,61 @@
+// looks up the out-degree of sampled start nodes so latencies can be bucketed by fan-out
+
+package tailored.workloads;
+
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.EagerResult;
+import org.neo4j.driver.QueryConfig;
+import org.neo4j.driver.Record;
+import tailored.SqlDialect;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+final class Degrees {
+  private Degrees() {
+  }
+
+  static long[] sql(Connection conn, SqlDialect dialect, long[] ids) {
+    String sql = "SELECT start_id, COUNT(*) FROM edges WHERE " + dialect.anyOf("start_id") + " GROUP BY start_id";
+
+    Map<Long, Long> degrees = new HashMap<>();
+    try (PreparedStatement ps = conn.prepareStatement(sql)) {
+      dialect.bindIds(ps, 1, ids);
+
+      try (ResultSet rs = ps.executeQuery()) {
+        while (rs.next()) {
+          degrees.put(rs.getLong(1), rs.getLong(2));
+        }
+      }
+    } catch (SQLException e) {
+      throw new RuntimeException(e);
+    }
+
+    return Arrays.stream(ids).map(id -> degrees.getOrDefault(id, 0L)).toArray();
+  }
+
+  static long[] neo4j(Driver driver, long[] ids) {
+    String cypher = """
+        UNWIND $ids AS id
+        MATCH (p:Person {id: id})
+        RETURN id, COUNT { (p)-[:FRIENDS_WITH]->() } AS degree
+        """;
+
+    EagerResult rs = driver.executableQuery(cypher)
+        .withParameters(Map.of("ids", Arrays.stream(ids).boxed().toList()))
+        .withConfig(QueryConfig.builder().withDatabase("neo4j").build())
+        .execute();
+
+    Map<Long, Long> degrees = new HashMap<>();
+    List<Record> records = rs.records();
+    records.forEach(r -> degrees.put(r.get("id").asLong(), r.get("degree").asLong()));
+
+    return Arrays.stream(ids).map(id -> degrees.getOrDefault(id, 0L)).toArray();
+  }
+}
@@ -0,0 +1,282 @@
+package tailored.workloads;
+
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.Result;
+import org.neo4j.graphdb.Transaction;
+import tailored.BenchmarkContext;
+import tailored.Phase;
+import tailored.Workload;
+import tailored.WorkloadType;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// all four workloads against the in-process neo4j of NEO4J_EMBEDDED, so there is no bolt, driver or network
+// between the harness and the engine. Every operation runs in its own embedded transaction (BEGIN / COMMIT),
+// so --tx-mode=read-only is refused for this dbms
+public class Embedded implements Workload {
+  public enum Api {
+    CYPHER, // the queries of the bolt workloads through Transaction.execute
+    CORE;   // the same questions answered by walking relationships with the core api, no query planning at all
+
+    // --embedded-api=<name>
+    static Api parse(String name) {
+      return valueOf(name.toUpperCase());
+    }
+  }
+
+  private static final Label PERSON = Label.label("Person");
+  private static final RelationshipType FRIENDS_WITH = RelationshipType.withName("FRIENDS_WITH");
+
+  private final WorkloadType type;
+  private final Api api;
+  private final int timeoutMs;
+  private long[] startCandidateIds;
+  private long[] endCandidateIds; // reciprocal and shortest path only
+  private long[] degrees;         // only filled with --degrees
+
+  public Embedded(BenchmarkContext ctx) {
+    assert ctx.neoDb != null;
+    this.type = ctx.config.workloadType();
+    this.api = Api.parse(ctx.config.option("embedded-api", "cypher"));
+    this.timeoutMs = ctx.config.intOption("timeout-ms", 0);
+
+    int operations = ctx.config.operations();
+    if (type == WorkloadType.RECIPROCAL || type == WorkloadType.SHORTEST_PATH) {
+      long[] ids = sampleIds(ctx.neoDb, "MATCH (p:Person) RETURN p.id AS id ORDER BY rand() LIMIT " + operations * 2);
+      if (ids.length < operations * 2) {
+        throw new IllegalStateException("Only " + ids.length + " nodes loaded, " + type
+            + " needs two per operation: run at most " + ids.length / 2 + " operations");
+      }
+      this.startCandidateIds = new long[operations];
+      this.endCandidateIds = new long[operations];
+      for (int i = 0; i < operations; i++) {
+        startCandidateIds[i] = ids[2 * i];
+        endCandidateIds[i] = ids[2 * i + 1];
+      }
+    } else {
+      this.startCandidateIds = sampleIds(ctx.neoDb,
+          "MATCH (p:Person)-[:FRIENDS_WITH]->() WITH DISTINCT p ORDER BY rand() LIMIT " + operations + " RETURN p.id AS id");
+    }
+
+    if (ctx.config.boolOption("degrees") && type != WorkloadType.SHORTEST_PATH) {
+      this.degrees = degrees(ctx.neoDb, startCandidateIds);
+    }
+  }
+
+  @Override
+  public void executeOnce(BenchmarkContext ctx, int iteration) throws Exception {
+    if (degrees != null) {
+      ctx.recorder.degree(degrees[iteration]);
+    }
+
+    GraphDatabaseService db = ctx.neoDb;
+    assert db != null;
+    try (Transaction tx = timeoutMs > 0 ? db.beginTx(timeoutMs, TimeUnit.MILLISECONDS) : db.beginTx()) {
+      ctx.recorder.mark(Phase.BEGIN);
+
+      if (api == Api.CYPHER) {
+        executeCypher(ctx, tx, iteration);
+      } else {
+        executeCore(ctx, tx, iteration);
+      }
+
+      tx.commit();
+      ctx.recorder.mark(Phase.COMMIT);
+    }
+  }
+
+  @Override
+  public String strategy() {
+    return "EMBEDDED_" + api.name();
+  }
+
+  @Override
+  public long[] nodeIds(int iteration) {
+    return endCandidateIds == null
+        ? new long[]{startCandidateIds[iteration]}
+        : new long[]{startCandidateIds[iteration], endCandidateIds[iteration]};
+  }
+
+  @Override
+  public void useIds(BenchmarkContext ctx, long[] startIds, long[] endIds) {
+    this.startCandidateIds = startIds;
+    this.endCandidateIds = endIds;
+    if (degrees != null) {
+      this.degrees = degrees(ctx.neoDb, startIds);
+    }
+  }
+
+  private void executeCypher(BenchmarkContext ctx, Transaction tx, int iteration) {
+    int depth = ctx.config.depth(); // per operation, one workload serves every depth of a sweep
+    long startId = startCandidateIds[iteration];
+    String cypher;
+    Map<String, Object> params;
+    switch (type) {
+      case FOF -> {
+        cypher = FriendOfFriend.varLengthCypher(depth);
+        params = Map.of("startId", startId);
+      }
+      case RECIPROCAL -> {
+        cypher = Reciprocal.CYPHER;
+        params = Map.of("startId", startId, "endId", endCandidateIds[iteration]);
+      }
+      case SHORTEST_PATH -> {
+        cypher = ShortestPath.cypher(depth);
+        params = Map.of("u", startId, "v", endCandidateIds[iteration]);
+      }
+      case FILTERED -> {
+        cypher = Filtered.CYPHER;
+        params = Map.of("startId", startId);
+      }
+      default -> throw new IllegalStateException("Unsupported workload: " + type);
+    }
+    ctx.recorder.mark(Phase.PREPARE);
+
+    try (Result rs = tx.execute(cypher, params)) {
+      ctx.recorder.mark(Phase.EXECUTE);
+
+      boolean more = rs.hasNext();
+      ctx.recorder.mark(Phase.FIRST_ROW);
+      long rows = 0;
+      long count = 0;
+      while (more) {
+        Map<String, Object> row = rs.next();
+        if (rows++ == 0 && type == WorkloadType.FOF) {
+          count = (Long) row.get("fof_count");
+        }
+        more = rs.hasNext();
+      }
+      ctx.recorder.mark(Phase.CONSUME);
+      ctx.recorder.rows(type == WorkloadType.FOF ? count : rows); // fof reports the count, as the bolt path does
+    }
+  }
+
+  private void executeCore(BenchmarkContext ctx, Transaction tx, int iteration) {
+    int depth = ctx.config.depth();
+    Node start = tx.findNode(PERSON, "id", startCandidateIds[iteration]);
+    Node end = endCandidateIds == null ? null : tx.findNode(PERSON, "id", endCandidateIds[iteration]);
+    ctx.recorder.mark(Phase.PREPARE); // index lookups of the start / end node
+
+    long rows;
+    if (start == null || (endCandidateIds != null && end == null)) {
+      rows = 0;
+    } else {
+      rows = switch (type) {
+        case FOF -> friendsAtDepth(start, depth);
+        case RECIPROCAL -> linked(start, end) && linked(end, start) ? 1 : 0;
+        case SHORTEST_PATH -> shortestDistance(start, end, depth) >= 0 ? 1 : 0;
+        case FILTERED -> filteredNeighbours(start);
+        case PAGERANK, WCC, TRIANGLES, FILTERED_TRAVERSAL -> throw new IllegalStateException("Unsupported workload: " + type);
+      };
+    }
+    ctx.recorder.mark(Phase.EXECUTE);
+    ctx.recorder.rows(rows);
+  }
+
+  // distinct nodes at the end of a walk of exactly depth hops, one frontier per level.
+  // Unlike the var-length pattern this doesn't enumerate every trail, it dedupes per level like CTE_UNION
+  private static long friendsAtDepth(Node start, int depth) {
+    Set<Node> frontier = Set.of(start);
+    for (int level = 0; level < depth && !frontier.isEmpty(); level++) {
+      Set<Node> next = new HashSet<>();
+      for (Node node : frontier) {
+        for (Relationship rel : node.getRelationships(Direction.OUTGOING, FRIENDS_WITH)) {
+          next.add(rel.getEndNode());
+        }
+      }
+      frontier = next;
+    }
+    return frontier.size();
+  }
+
+  private static boolean linked(Node from, Node to) {
+    for (Relationship rel : from.getRelationships(Direction.OUTGOING, FRIENDS_WITH)) {
+      if (rel.getEndNode().equals(to)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // bfs from both ends, always expanding the smaller frontier, -1 if the nodes are further apart than maxDepth
+  private static int shortestDistance(Node start, Node end, int maxDepth) {
+    if (start.equals(end)) {
+      return 0;
+    }
+
+    Set<Node> forwardSeen = new HashSet<>(List.of(start));
+    Set<Node> backwardSeen = new HashSet<>(List.of(end));
+    List<Node> forward = List.of(start);
+    List<Node> backward = List.of(end);
+
+    for (int dist = 1; dist <= maxDepth; dist++) {
+      boolean expandForward = forward.size() <= backward.size();
+      Direction direction = expandForward ? Direction.OUTGOING : Direction.INCOMING;
+      Set<Node> seen = expandForward ? forwardSeen : backwardSeen;
+      Set<Node> other = expandForward ? backwardSeen : forwardSeen;
+
+      List<Node> next = new ArrayList<>();
+      for (Node node : expandForward ? forward : backward) {
+        for (Relationship rel : node.getRelationships(direction, FRIENDS_WITH)) {
+          Node neighbour = rel.getOtherNode(node);
+          if (other.contains(neighbour)) {
+            return dist;
+          }
+          if (seen.add(neighbour)) {
+            next.add(neighbour);
+          }
+        }
+      }
+      if (next.isEmpty()) {
+        return -1;
+      }
+
+      if (expandForward) {
+        forward = next;
+      } else {
+        backward = next;
+      }
+    }
+    return -1;
+  }
+
+  private static long filteredNeighbours(Node start) {
+    Set<Node> matches = new HashSet<>();
+    for (Relationship rel : start.getRelationships(Direction.OUTGOING, FRIENDS_WITH)) {
+      Node neighbour = rel.getEndNode();
+      if (neighbour.getProperty("age", null) instanceof Number age && age.longValue() > 18 && age.longValue() < 25) {
+        matches.add(neighbour);
+      }
+    }
+    return matches.size();
+  }
+
+  private static long[] sampleIds(GraphDatabaseService db, String cypher) {
+    return db.executeTransactionally(cypher, Map.of(), rs -> {
+      List<Long> ids = new ArrayList<>();
+      rs.forEachRemaining(row -> ids.add((Long) row.get("id")));
+      return ids.stream().mapToLong(Long::longValue).toArray();
+    });
+  }
+
+  private static long[] degrees(GraphDatabaseService db, long[] ids) {
+    try (Transaction tx = db.beginTx()) {
+      long[] degrees = new long[ids.length];
+      for (int i = 0; i < ids.length; i++) {
+        Node node = tx.findNode(PERSON, "id", ids[i]);
+        degrees[i] = node == null ? 0 : node.getDegree(FRIENDS_WITH, Direction.OUTGOING);
+      }
+      return degrees;
+    }
+  }
+}
@@ -6,35 +6,51 @@ import org.neo4j.driver.QueryConfig;
 import org.neo4j.driver.Result;
 import tailored.BenchmarkContext;
 import tailored.Dbms;
+import tailored.Phase;
+import tailored.SqlDialect;
 import tailored.Workload;
+import tailored.cache.AdjacencyCache;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
 public class Filtered implements Workload {
-  private long[] candidateIds;
+  public enum Strategy {
+    JOIN(null, true),         // edges joined with nodes in one statement
+    PROCEDURE(Dbms.POSTGRES), // the filtered_neighbors() pl/pgsql function
+    MATCH(Dbms.NEO4J),        // one-hop cypher pattern
+    CACHED(null);             // neighbours from the adjacency cache, age predicate checked in the database
 
-  public Filtered(BenchmarkContext ctx) throws Exception {
-    if (ctx.config.dbms() == Dbms.POSTGRES) {
-      this.candidateIds = genIdsPostgres(ctx.pgConn, ctx.config.operations());
-    } else if (ctx.config.dbms() == Dbms.NEO4J) {
-      this.candidateIds = genIdsNeo4j(ctx.neoDriver, ctx.config.operations());
+    final Dbms dbms;   // null = any
+    final boolean sql; // only on the sql dbmss, through their SqlDialect
+
+    Strategy(Dbms dbms) {
+      this(dbms, false);
     }
-  }
 
-  @Override
-  public void executeOnce(BenchmarkContext ctx, int iteration) throws Exception {
-    if (ctx.config.dbms() == Dbms.POSTGRES) {
-      executePostgres(ctx, iteration);
-    } else if (ctx.config.dbms() == Dbms.NEO4J) {
-      executeNeo4j(ctx, iteration);
+    Strategy(Dbms dbms, boolean sql) {
+      this.dbms = dbms;
+      this.sql = sql;
+    }
+
+    // --filtered-strategy=<name>, defaults to the original query of each dbms
+    static Strategy parse(String name, Dbms dbms) {
+      if (name == null) {
+        return dbms.sql() ? JOIN : MATCH;
+      }
+
+      Strategy strategy = valueOf(name.toUpperCase().replace('-', '_'));
+      if ((strategy.dbms != null && strategy.dbms != dbms) || (strategy.sql && !dbms.sql())) {
+        throw new IllegalArgumentException("Filtered strategy " + strategy + " is not available for " + dbms);
+      }
+      return strategy;
     }
   }
 
-  private void executePostgres(BenchmarkContext ctx, int iteration) throws Exception {
-    String sql = """
+  private static final String JOIN_SQL = """
             SELECT DISTINCT n.id
             FROM edges e
             JOIN nodes n ON n.id = e.end_id
@@ -43,36 +59,149 @@ public class Filtered implements Workload {
               AND n.age < 25;
         """;
 
+  private long[] candidateIds;
+  private long[] degrees; // only filled with --degrees
+  private final Strategy strategy;
+  private final AdjacencyCache cache; // only with --cache
+
+  public Filtered(BenchmarkContext ctx) throws Exception {
+    this.strategy = Strategy.parse(ctx.config.option("filtered-strategy", null), ctx.config.dbms());
+    this.cache = strategy == Strategy.CACHED ? Adjacency.createCache(ctx) : null;
+    if (strategy == Strategy.CACHED && cache == null) {
+      throw new IllegalArgumentException("The cached strategy needs --cache=lru|tiny-lfu");
+    }
+    if (strategy == Strategy.PROCEDURE) {
+      PostgresFunctions.install(ctx.pgConn, PostgresFunctions.PROCEDURES);
+    }
+
+    if (ctx.config.dbms().sql()) {
+      this.candidateIds = genIdsSql(ctx.pgConn, ctx.config.dbms().dialect(), ctx.config.operations());
+      if (ctx.config.boolOption("degrees")) {
+        this.degrees = Degrees.sql(ctx.pgConn, ctx.config.dbms().dialect(), candidateIds);
+      }
+    } else if (ctx.config.dbms() == Dbms.NEO4J) {
+      this.candidateIds = genIdsNeo4j(ctx.neoDriver, ctx.config.operations());
+      if (ctx.config.boolOption("degrees")) {
+        this.degrees = Degrees.neo4j(ctx.neoDriver, candidateIds);
+      }
+    }
+  }
+
+  @Override
+  public void executeOnce(BenchmarkContext ctx, int iteration) throws Exception {
+    if (degrees != null) {
+      ctx.recorder.degree(degrees[iteration]);
+    }
+
+    switch (strategy) {
+      case JOIN -> executePostgres(ctx, iteration, JOIN_SQL);
+      case PROCEDURE -> executePostgres(ctx, iteration, "SELECT * FROM filtered_neighbors(?, 18, 25)");
+      case MATCH -> executeNeo4j(ctx, iteration);
+      case CACHED -> executeCached(ctx, iteration);
+    }
+  }
+
+  @Override
+  public String strategy() {
+    return strategy.name();
+  }
+
+  @Override
+  public void beforeRun() {
+    if (cache != null) {
+      cache.drainStats();
+    }
+  }
+
+  @Override
+  public Map<String, String> afterRun(int operations) {
+    return cache == null ? Map.of() : Adjacency.describe(cache, operations);
+  }
+
+  @Override
+  public long[] nodeIds(int iteration) {
+    return new long[]{candidateIds[iteration]};
+  }
+
+  @Override
+  public void useIds(BenchmarkContext ctx, long[] startIds, long[] endIds) throws Exception {
+    this.candidateIds = startIds;
+    if (degrees != null) {
+      this.degrees = ctx.config.dbms().sql()
+          ? Degrees.sql(ctx.pgConn, ctx.config.dbms().dialect(), startIds)
+          : Degrees.neo4j(ctx.neoDriver, startIds);
+    }
+  }
+
+  private void executePostgres(BenchmarkContext ctx, int iteration, String sql) throws Exception {
     assert ctx.pgConn != null;
     try (PreparedStatement ps = ctx.pgConn.prepareStatement(sql)) {
       long startId = candidateIds[iteration];
       ps.setLong(1, startId);
 
+      ctx.recorder.mark(Phase.PREPARE);
+
       try (ResultSet rs = ps.executeQuery()) {
-        while (rs.next()) {}
+        ctx.recorder.mark(Phase.EXECUTE);
+        ctx.recorder.consume(rs);
       }
     }
   }
 
-  private void executeNeo4j(BenchmarkContext ctx, int iteration) throws Exception {
-    String cypher = """
-                    MATCH (u:Person {id: $startId})-[:FRIENDS_WITH]->(v:Person)
-                    WHERE v.age > 18 AND v.age < 25
-                    RETURN v.id AS nodeId;
-                """;
+  // also run by Embedded, so both neo4j paths execute the same query
+  static final String CYPHER = """
+      MATCH (u:Person {id: $startId})-[:FRIENDS_WITH]->(v:Person)
+      WHERE v.age > 18 AND v.age < 25
+      RETURN v.id AS nodeId;
+      """;
 
+  private void executeNeo4j(BenchmarkContext ctx, int iteration) throws Exception {
     assert ctx.neoDriver != null;
 
     assert ctx.neoSession != null;
-    Result rs = ctx.neoSession.run(cypher, Map.of("startId", candidateIds[iteration]));
 
-    while (rs.hasNext()) {
-      rs.next();
+    Result rs = ctx.neoRun(CYPHER, Map.of("startId", candidateIds[iteration]));
+    ctx.recorder.mark(Phase.EXECUTE);
+    ctx.recorder.consume(rs);
+  }
+
+  private void executeCached(BenchmarkContext ctx, int iteration) throws Exception {
+    long[] neighbours = Adjacency.lookup(cache, ctx, new long[]{candidateIds[iteration]})[0];
+    if (neighbours.length == 0) {
+      ctx.recorder.rows(0);
+      return;
+    }
+
+    if (ctx.config.dbms().sql()) {
+      SqlDialect dialect = ctx.config.dbms().dialect();
+      String sql = "SELECT id FROM nodes WHERE " + dialect.anyOf("id") + " AND age > 18 AND age < 25";
+
+      assert ctx.pgConn != null;
+      try (PreparedStatement ps = ctx.pgConn.prepareStatement(sql)) {
+        dialect.bindIds(ps, 1, neighbours);
+        ctx.recorder.mark(Phase.PREPARE);
+
+        try (ResultSet rs = ps.executeQuery()) {
+          ctx.recorder.mark(Phase.EXECUTE);
+          ctx.recorder.consume(rs);
+        }
+      }
+    } else {
+      String cypher = """
+          MATCH (v:Person)
+          WHERE v.id IN $ids AND v.age > 18 AND v.age < 25
+          RETURN v.id AS nodeId;
+          """;
+
+      assert ctx.neoSession != null;
+      Result rs = ctx.neoRun(cypher, Map.of("ids", Arrays.stream(neighbours).boxed().toList()));
+      ctx.recorder.mark(Phase.EXECUTE);
+      ctx.recorder.consume(rs);
     }
   }
 
-  private long[] genIdsPostgres(Connection conn, int operations) {
-    String sql = "SELECT DISTINCT start_id FROM edges TABLESAMPLE SYSTEM (20)"; // WARN: This will work only for operation count < ~300k, need to make it dynamic
+  private long[] genIdsSql(Connection conn, SqlDialect dialect, int operations) {
+    String sql = dialect.sampleIds("start_id", "edges", 20, operations); // WARN: postgres samples 20%, enough for operation count < ~300k
 
     try (Statement st = conn.createStatement();
          ResultSet rs = st.executeQuery(sql)) {
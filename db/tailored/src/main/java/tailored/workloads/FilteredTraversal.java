@@ -0,0 +1,356 @@
+package tailored.workloads;
+
+import org.neo4j.driver.EagerResult;
+import org.neo4j.driver.QueryConfig;
+import org.neo4j.driver.Record;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+import tailored.BenchmarkContext;
+import tailored.Dbms;
+import tailored.LatencyStats;
+import tailored.Phase;
+import tailored.SqlDialect;
+import tailored.Workload;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// distinct nodes exactly depth hops away that match a predicate over one node attribute, on every dbms.
+//   --filter=age|region|gender|public  attribute of the predicate (age)
+//   --selectivity=1,10,50              target shares of all nodes in %, the operations take turns between them
+//   --filter-hops=final|all            check only the nodes at the end of the walk, or every node along it
+// the predicates are derived from the value distribution of the loaded dataset: a window lo <= age < hi, an IN list
+// of the least frequent values for the other attributes. Their actual selectivity is reported next to the latencies
+// of each target as FILTER[<target>%] lines; sweep over depths for the breakdown by depth, the depth is taken
+// from the config of each operation
+public class FilteredTraversal implements Workload {
+  private static final Set<String> ATTRIBUTES = Set.of("age", "region", "gender", "public");
+
+  // from <= attribute < below, or attribute IN values
+  record Predicate(int targetPct, String attribute, Long from, Long below, List<Object> values, double selectivity) {
+    String sql(String alias) {
+      if (below != null) {
+        return "(" + alias + "." + attribute + " >= " + from + " AND " + alias + "." + attribute + " < " + below + ")";
+      }
+      return alias + "." + attribute + " IN (" + String.join(", ", values.stream().map(v -> literal(v, "''")).toList()) + ")";
+    }
+
+    String cypher(String variable) {
+      if (below != null) {
+        return "(" + variable + "." + attribute + " >= " + from + " AND " + variable + "." + attribute + " < " + below + ")";
+      }
+      return variable + "." + attribute + " IN [" + String.join(", ", values.stream().map(v -> literal(v, "\\'")).toList()) + "]";
+    }
+
+    private static String literal(Object v, String quote) {
+      return v instanceof Number ? v.toString() : "'" + v.toString().replace("'", quote) + "'";
+    }
+  }
+
+  private final Dbms dbms;
+  private final boolean allHops;
+  private final List<Predicate> predicates;
+  private final Map<Integer, String[]> queries = new ConcurrentHashMap<>(); // depth -> query per predicate
+  private final int timeoutMs;
+  private long[] candidateIds;
+  private long[] latenciesNs; // per operation as measured here, -1 = failed
+  private long[] rows;
+
+  public FilteredTraversal(BenchmarkContext ctx) throws Exception {
+    this.dbms = ctx.config.dbms();
+    this.allHops = switch (ctx.config.option("filter-hops", "final")) {
+      case "final" -> false;
+      case "all" -> true;
+      default -> throw new IllegalArgumentException("--filter-hops must be final or all");
+    };
+    this.timeoutMs = ctx.config.intOption("timeout-ms", 0);
+
+    String attribute = ctx.config.option("filter", "age");
+    if (!ATTRIBUTES.contains(attribute)) {
+      throw new IllegalArgumentException("--filter must be one of " + ATTRIBUTES);
+    }
+    Map<Object, Long> counts = dbms.sql() ? countsSql(ctx.pgConn, attribute) : countsNeo4j(ctx, attribute);
+    long total = counts.values().stream().mapToLong(Long::longValue).sum();
+    counts.remove(null); // matches no predicate, but counts towards the total
+
+    this.predicates = new ArrayList<>();
+    for (String pct : ctx.config.option("selectivity", "1,10,50").split(",")) {
+      predicates.add(choose(attribute, Integer.parseInt(pct.trim()), counts, total));
+    }
+
+    int operations = ctx.config.operations();
+    this.candidateIds = dbms.sql()
+        ? genIdsSql(ctx.pgConn, dbms.dialect(), operations)
+        : genIdsNeo4j(ctx, operations);
+    this.latenciesNs = new long[operations];
+    this.rows = new long[operations];
+  }
+
+  @Override
+  public void executeOnce(BenchmarkContext ctx, int iteration) throws Exception {
+    long start = System.nanoTime();
+    latenciesNs[iteration] = -1;
+    String query = queries(ctx.config.depth())[iteration % predicates.size()];
+
+    long count;
+    if (dbms.sql()) {
+      count = executeSql(ctx, iteration, query);
+    } else if (ctx.neoDb != null) {
+      count = executeEmbedded(ctx, ctx.neoDb, iteration, query);
+    } else {
+      org.neo4j.driver.Result rs = ctx.neoRun(query, Map.of("startId", candidateIds[iteration]));
+      ctx.recorder.mark(Phase.EXECUTE);
+      count = ctx.recorder.consumeCount(rs);
+    }
+
+    rows[iteration] = count;
+    latenciesNs[iteration] = System.nanoTime() - start;
+  }
+
+  @Override
+  public String strategy() {
+    String hops = allHops ? "ALL_HOPS" : "FINAL_HOP";
+    return dbms.sql() ? "CTE_" + hops : "VAR_LENGTH_" + hops;
+  }
+
+  @Override
+  public void beforeRun() {
+    Arrays.fill(latenciesNs, -1);
+    Arrays.fill(rows, 0);
+  }
+
+  @Override
+  public Map<String, String> afterRun(int operations) {
+    Map<String, String> lines = new LinkedHashMap<>();
+    lines.put("FILTER Hops", allHops ? "all" : "final");
+    for (int p = 0; p < predicates.size(); p++) {
+      Predicate predicate = predicates.get(p);
+      long[] ns = new long[operations];
+      long rowSum = 0;
+      for (int i = 0; i < operations; i++) {
+        boolean mine = i % predicates.size() == p;
+        ns[i] = mine ? latenciesNs[i] : -1;
+        rowSum += mine && latenciesNs[i] >= 0 ? rows[i] : 0;
+      }
+      LatencyStats stats = LatencyStats.of(ns, operations);
+
+      String key = "FILTER[" + predicate.targetPct() + "%] ";
+      lines.put(key + "Predicate", dbms.sql() ? predicate.sql("n") : predicate.cypher("t"));
+      lines.put(key + "ActualSelectivity(%)", String.format("%.2f", 100 * predicate.selectivity()));
+      lines.put(key + "Ops", String.valueOf(stats.count()));
+      lines.put(key + "AvgLatency(us)", String.format("%.2f", stats.avgUs()));
+      lines.put(key + "P50Latency(us)", String.valueOf(stats.p50Us()));
+      lines.put(key + "P99Latency(us)", String.valueOf(stats.p99Us()));
+      lines.put(key + "AvgRows", String.format("%.2f", (double) rowSum / Math.max(1, stats.count())));
+    }
+    return lines;
+  }
+
+  @Override
+  public long[] nodeIds(int iteration) {
+    return new long[]{candidateIds[iteration]};
+  }
+
+  @Override
+  public void useIds(BenchmarkContext ctx, long[] startIds, long[] endIds) {
+    this.candidateIds = startIds;
+    this.latenciesNs = new long[startIds.length];
+    this.rows = new long[startIds.length];
+  }
+
+  // the predicate whose share of all nodes comes closest to targetPct
+  static Predicate choose(String attribute, int targetPct, Map<Object, Long> counts, long total) {
+    double target = targetPct / 100.0 * total;
+
+    if (attribute.equals("age")) {
+      // the window of consecutive ages closest to the target, the narrowest one on a tie. Age 0 means unknown
+      // and is a large group of its own (pokec and the generator alike), so no window includes it
+      TreeMap<Long, Long> sorted = new TreeMap<>();
+      counts.forEach((v, c) -> sorted.merge(((Number) v).longValue(), c, Long::sum));
+      sorted.remove(0L);
+      List<Long> ages = new ArrayList<>(sorted.keySet());
+      long bestCount = -1;
+      int bestFrom = 0;
+      int bestTo = -1;
+      for (int i = 0; i < ages.size(); i++) {
+        long cumulative = 0;
+        for (int j = i; j < ages.size(); j++) {
+          cumulative += sorted.get(ages.get(j));
+          if (bestCount < 0 || Math.abs(cumulative - target) < Math.abs(bestCount - target)
+              || Math.abs(cumulative - target) == Math.abs(bestCount - target) && j - i < bestTo - bestFrom) {
+            bestCount = cumulative;
+            bestFrom = i;
+            bestTo = j;
+          }
+        }
+      }
+      if (bestCount < 0) {
+        return new Predicate(targetPct, attribute, 1L, 1L, null, 0); // no known ages, matches nothing
+      }
+      return new Predicate(targetPct, attribute, ages.get(bestFrom), ages.get(bestTo) + 1, null,
+          (double) bestCount / Math.max(1, total));
+    }
+
+    // least frequent values first, each one taken if it brings the share closer to the target
+    List<Map.Entry<Object, Long>> entries = new ArrayList<>(counts.entrySet());
+    entries.sort(Map.Entry.comparingByValue());
+    List<Object> values = new ArrayList<>();
+    long cumulative = 0;
+    for (Map.Entry<Object, Long> e : entries) {
+      if (Math.abs(cumulative + e.getValue() - target) < Math.abs(cumulative - target)) {
+        values.add(e.getKey());
+        cumulative += e.getValue();
+      }
+    }
+    if (values.isEmpty() && !entries.isEmpty()) {
+      Map.Entry<Object, Long> closest = entries.stream()
+          .min(Comparator.comparingDouble(e -> Math.abs(e.getValue() - target))).orElseThrow();
+      values.add(closest.getKey());
+      cumulative = closest.getValue();
+    }
+    return new Predicate(targetPct, attribute, null, null, values, (double) cumulative / Math.max(1, total));
+  }
+
+  private String[] queries(int depth) {
+    return queries.computeIfAbsent(depth, d -> predicates.stream()
+        .map(p -> dbms.sql() ? sql(p, d) : cypher(p, d))
+        .toArray(String[]::new));
+  }
+
+  private String sql(Predicate p, int depth) {
+    return """
+        WITH RECURSIVE bfs (depth, node_id) AS (
+            SELECT
+                0 AS depth,
+                %s AS node_id
+            UNION
+
+            SELECT
+                bfs.depth + 1,
+                e.end_id
+            FROM bfs
+            JOIN edges e ON e.start_id = bfs.node_id
+            %s
+            WHERE bfs.depth < %d
+        )
+
+        SELECT COUNT(DISTINCT bfs.node_id)
+        FROM bfs
+        JOIN nodes n ON n.id = bfs.node_id
+        WHERE bfs.depth = %d AND %s
+        """.formatted(dbms.dialect().bigintParam(),
+        allHops ? "JOIN nodes h ON h.id = e.end_id AND " + p.sql("h") : "",
+        depth, depth, p.sql("n"));
+  }
+
+  private String cypher(Predicate p, int depth) {
+    String filter = allHops
+        ? "all(x IN nodes(path)[1..] WHERE " + p.cypher("x") + ")"
+        : p.cypher("t");
+    return "MATCH path = (s:Person {id: $startId})-[:FRIENDS_WITH*" + depth + "]->(t:Person) "
+        + "WHERE " + filter + " RETURN count(DISTINCT t) AS matches";
+  }
+
+  private long executeSql(BenchmarkContext ctx, int iteration, String sql) throws SQLException {
+    assert ctx.pgConn != null;
+    try (PreparedStatement ps = ctx.pgConn.prepareStatement(sql)) {
+      ps.setLong(1, candidateIds[iteration]);
+      ctx.recorder.mark(Phase.PREPARE);
+
+      try (ResultSet rs = ps.executeQuery()) {
+        ctx.recorder.mark(Phase.EXECUTE);
+        return ctx.recorder.consumeCount(rs);
+      }
+    }
+  }
+
+  private long executeEmbedded(BenchmarkContext ctx, GraphDatabaseService db, int iteration, String cypher) {
+    try (Transaction tx = timeoutMs > 0 ? db.beginTx(timeoutMs, TimeUnit.MILLISECONDS) : db.beginTx()) {
+      ctx.recorder.mark(Phase.BEGIN);
+      try (org.neo4j.graphdb.Result rs = tx.execute(cypher, Map.of("startId", candidateIds[iteration]))) {
+        ctx.recorder.mark(Phase.EXECUTE);
+        long count = rs.hasNext() ? (Long) rs.next().get("matches") : 0;
+        ctx.recorder.mark(Phase.FIRST_ROW);
+        ctx.recorder.rows(count);
+        tx.commit();
+        ctx.recorder.mark(Phase.COMMIT);
+        return count;
+      }
+    }
+  }
+
+  // value -> number of nodes, null included
+  private static Map<Object, Long> countsSql(Connection conn, String attribute) throws SQLException {
+    Map<Object, Long> counts = new LinkedHashMap<>();
+    try (Statement st = conn.createStatement();
+         ResultSet rs = st.executeQuery("SELECT " + attribute + ", COUNT(*) FROM nodes GROUP BY " + attribute)) {
+      while (rs.next()) {
+        Object v = rs.getObject(1);
+        counts.put(v instanceof Number n ? (Object) n.longValue() : v, rs.getLong(2));
+      }
+    }
+    return counts;
+  }
+
+  private static Map<Object, Long> countsNeo4j(BenchmarkContext ctx, String attribute) {
+    String cypher = "MATCH (n:Person) RETURN n." + attribute + " AS v, count(*) AS c";
+    Map<Object, Long> counts = new LinkedHashMap<>();
+    if (ctx.neoDb != null) {
+      ctx.neoDb.executeTransactionally(cypher, Map.of(), rs -> {
+        rs.forEachRemaining(row -> counts.put(row.get("v"), (Long) row.get("c")));
+        return null;
+      });
+    } else {
+      assert ctx.neoDriver != null;
+      EagerResult rs = ctx.neoDriver.executableQuery(cypher)
+          .withConfig(QueryConfig.builder().withDatabase("neo4j").build())
+          .execute();
+      for (Record r : rs.records()) {
+        counts.put(r.get("v").asObject(), r.get("c").asLong());
+      }
+    }
+    return counts;
+  }
+
+  private static long[] genIdsSql(Connection conn, SqlDialect dialect, int operations) throws SQLException {
+    String sql = dialect.sampleIds("start_id", "edges", 20, operations); // WARN: postgres samples 20%, enough for operation count < ~350k
+
+    try (Statement st = conn.createStatement();
+         ResultSet rs = st.executeQuery(sql)) {
+      List<Long> ids = new ArrayList<>(operations);
+      while (rs.next()) {
+        ids.add(rs.getLong(1));
+      }
+      return ids.stream().mapToLong(Long::longValue).toArray();
+    }
+  }
+
+  private static long[] genIdsNeo4j(BenchmarkContext ctx, int operations) {
+    String cypher = "MATCH (p:Person)-[:FRIENDS_WITH]->() WITH DISTINCT p ORDER BY rand() LIMIT " + operations + " RETURN p.id AS id";
+    if (ctx.neoDb != null) {
+      return ctx.neoDb.executeTransactionally(cypher, Map.of(), rs -> {
+        List<Long> ids = new ArrayList<>();
+        rs.forEachRemaining(row -> ids.add((Long) row.get("id")));
+        return ids.stream().mapToLong(Long::longValue).toArray();
+      });
+    }
+    assert ctx.neoDriver != null;
+    EagerResult rs = ctx.neoDriver.executableQuery(cypher)
+        .withConfig(QueryConfig.builder().withDatabase("neo4j").build())
+        .execute();
+    return rs.records().stream().mapToLong(r -> r.get("id").asLong()).toArray();
+  }
+}
@@ -6,39 +6,160 @@ import org.neo4j.driver.QueryConfig;
 import org.neo4j.driver.Result;
 import tailored.BenchmarkContext;
 import tailored.Dbms;
+import tailored.Phase;
+import tailored.SchemaProfile;
+import tailored.SqlDialect;
+import tailored.TransactionFrame;
 import tailored.Workload;
+import tailored.cache.AdjacencyCache;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class FriendOfFriend implements Workload {
+  public enum Strategy {
+    CTE(null, true),           // recursive cte with UNION ALL, enumerates every walk
+    CTE_UNION(null, true),     // recursive cte with UNION, dedupes per level
+    FRONTIER(null, true),      // one query per level with the frontier as array parameter
+    TEMP_TABLE(null, true),    // frontier kept in temp tables on the server
+    PROCEDURE(Dbms.POSTGRES),  // single call of the fof_count() pl/pgsql function
+    ADJACENCY_ARRAY(Dbms.POSTGRES), // level-deduplicating cte over the adjacency-array schema profile
+    VAR_LENGTH(Dbms.NEO4J),    // [:FRIENDS_WITH*depth], depth inlined into the query text
+    QPP(Dbms.NEO4J),           // cypher 5 quantified path pattern, depth inlined as well
+    APOC_SUBGRAPH(Dbms.NEO4J),      // apoc.path.subgraphNodes, node-global bfs, $depth parameter
+    APOC_SPANNING_TREE(Dbms.NEO4J), // apoc.path.spanningTree, node-global bfs, $depth parameter
+    APOC_NODE_LEVEL(Dbms.NEO4J),    // apoc.path.expandConfig with NODE_LEVEL uniqueness, $depth parameter
+    CACHED(null, false);       // level by level over the adjacency cache, misses batched per level
+
+    final Dbms dbms;     // null = any
+    final boolean sql;   // only on the sql dbmss, through their SqlDialect
+
+    Strategy(Dbms dbms) {
+      this(dbms, false);
+    }
+
+    Strategy(Dbms dbms, boolean sql) {
+      this.dbms = dbms;
+      this.sql = sql;
+    }
+
+    // --fof-strategy=<name>, defaults to the original query of each dbms
+    static Strategy parse(String name, Dbms dbms) {
+      if (name == null) {
+        return dbms.sql() ? CTE : VAR_LENGTH;
+      }
+
+      Strategy strategy = valueOf(name.toUpperCase().replace('-', '_'));
+      if ((strategy.dbms != null && strategy.dbms != dbms) || (strategy.sql && !dbms.sql())) {
+        throw new IllegalArgumentException("FOF strategy " + strategy + " is not available for " + dbms);
+      }
+      return strategy;
+    }
+  }
+
   private long[] candidateIds;
+  private long[] degrees; // only filled with --degrees
+  private final Strategy strategy;
+  private final AdjacencyCache cache; // only with --cache
+  private final Set<Connection> tempTablesCreated = ConcurrentHashMap.newKeySet();
 
   public FriendOfFriend(BenchmarkContext ctx) throws Exception {
-    if (ctx.config.dbms() == Dbms.POSTGRES) {
-      this.candidateIds = genIdsPostgres(ctx.pgConn, ctx.config.operations());
+    this.strategy = Strategy.parse(ctx.config.option("fof-strategy", null), ctx.config.dbms());
+    this.cache = strategy == Strategy.CACHED ? Adjacency.createCache(ctx) : null;
+    if (strategy == Strategy.CACHED && cache == null) {
+      throw new IllegalArgumentException("The cached strategy needs --cache=lru|tiny-lfu");
+    }
+    if (strategy == Strategy.PROCEDURE) {
+      PostgresFunctions.install(ctx.pgConn, PostgresFunctions.PROCEDURES);
+    }
+    if (strategy == Strategy.ADJACENCY_ARRAY && !SchemaProfile.includes(ctx.pgConn, SchemaProfile.ADJACENCY_ARRAY)) {
+      throw new IllegalStateException("The adjacency-array strategy reads the adjacency table of that schema profile, "
+          + "run `schema postgres adjacency-array` (plus any other profiles) first");
+    }
+    if (strategy == Strategy.TEMP_TABLE && TransactionFrame.mode(ctx.config) == TransactionFrame.Mode.READ_ONLY) {
+      throw new IllegalArgumentException("The temp-table strategy creates its tables inside the operation, which a read only transaction refuses");
+    }
+
+    if (ctx.config.dbms().sql()) {
+      this.candidateIds = genIdsSql(ctx.pgConn, ctx.config.dbms().dialect(), ctx.config.operations());
+      if (ctx.config.boolOption("degrees")) {
+        this.degrees = Degrees.sql(ctx.pgConn, ctx.config.dbms().dialect(), candidateIds);
+      }
     } else if (ctx.config.dbms() == Dbms.NEO4J) {
       this.candidateIds = genIdsNeo4j(ctx.neoDriver, ctx.config.operations());
+      if (ctx.config.boolOption("degrees")) {
+        this.degrees = Degrees.neo4j(ctx.neoDriver, candidateIds);
+      }
     }
   }
 
   @Override
   public void executeOnce(BenchmarkContext ctx, int iteration) throws Exception {
-    if (ctx.config.dbms() == Dbms.POSTGRES) {
-      executePostgres(ctx, iteration);
-    } else if (ctx.config.dbms() == Dbms.NEO4J) {
-      executeNeo4j(ctx, iteration);
+    if (degrees != null) {
+      ctx.recorder.degree(degrees[iteration]);
     }
+
+    switch (strategy) {
+      case CTE -> executeCte(ctx, iteration);
+      case CTE_UNION -> executeCteUnion(ctx, iteration);
+      case FRONTIER -> executeFrontier(ctx, iteration);
+      case TEMP_TABLE -> executeTempTable(ctx, iteration);
+      case PROCEDURE -> executeProcedure(ctx, iteration);
+      case ADJACENCY_ARRAY -> executeAdjacencyArray(ctx, iteration);
+      case VAR_LENGTH -> executeNeo4j(ctx, iteration, varLengthCypher(ctx.config.depth()));
+      case QPP -> executeNeo4j(ctx, iteration,
+          "MATCH (start:Person {id: $startId}) (()-[:FRIENDS_WITH]->()){" + ctx.config.depth() + "} (fof) " +
+          "RETURN count(DISTINCT fof.id) AS fof_count;");
+      case APOC_SUBGRAPH -> executeNeo4j(ctx, iteration, APOC_SUBGRAPH_CYPHER);
+      case APOC_SPANNING_TREE -> executeNeo4j(ctx, iteration, APOC_SPANNING_TREE_CYPHER);
+      case APOC_NODE_LEVEL -> executeNeo4j(ctx, iteration, APOC_NODE_LEVEL_CYPHER);
+      case CACHED -> executeCached(ctx, iteration);
+    }
+  }
+
+  @Override
+  public String strategy() {
+    return strategy.name();
+  }
+
+  @Override
+  public void beforeRun() {
+    if (cache != null) {
+      cache.drainStats();
+    }
+  }
+
+  @Override
+  public Map<String, String> afterRun(int operations) {
+    return cache == null ? Map.of() : Adjacency.describe(cache, operations);
+  }
+
+  @Override
+  public long[] nodeIds(int iteration) {
+    return new long[]{candidateIds[iteration]};
   }
 
-  private void executePostgres(BenchmarkContext ctx, int iteration) throws Exception {
+  @Override
+  public void useIds(BenchmarkContext ctx, long[] startIds, long[] endIds) throws Exception {
+    this.candidateIds = startIds;
+    if (degrees != null) {
+      this.degrees = ctx.config.dbms().sql()
+          ? Degrees.sql(ctx.pgConn, ctx.config.dbms().dialect(), startIds)
+          : Degrees.neo4j(ctx.neoDriver, startIds);
+    }
+  }
+
+  private void executeCte(BenchmarkContext ctx, int iteration) throws Exception {
     String sql = """
-                WITH RECURSIVE bfs AS (
+                WITH RECURSIVE bfs (depth, node_id) AS (
                     SELECT
                         0 AS depth,
-                        ? AS node_id
+                        %s AS node_id
                     UNION ALL
             
                     SELECT
@@ -52,7 +173,7 @@ public class FriendOfFriend implements Workload {
                 SELECT COUNT(DISTINCT node_id) AS fof_count
                 FROM bfs
                 WHERE depth = ?;
-            """;
+            """.formatted(ctx.config.dbms().dialect().bigintParam());
 
     assert ctx.pgConn != null;
     try (PreparedStatement ps = ctx.pgConn.prepareStatement(sql)) {
@@ -61,26 +182,247 @@ public class FriendOfFriend implements Workload {
       ps.setInt(2, ctx.config.depth());
       ps.setInt(3, ctx.config.depth());
 
+      ctx.recorder.mark(Phase.PREPARE);
+
       try (ResultSet rs = ps.executeQuery()) {
-        while (rs.next()) {}
+        ctx.recorder.mark(Phase.EXECUTE);
+        ctx.recorder.consumeCount(rs);
       }
     }
   }
 
-  private void executeNeo4j(BenchmarkContext ctx, int iteration) throws Exception {
-    String cypher = "MATCH p = (start:Person {id: $startId})-[:FRIENDS_WITH*" + ctx.config.depth() + "]->(fof) " +
-            "RETURN count(DISTINCT fof.id) AS fof_count;";
+  // same walk-length semantics as the UNION ALL cte, but UNION collapses duplicate (depth, node) rows,
+  // so every node is expanded at most once per level instead of once per walk reaching it
+  private void executeCteUnion(BenchmarkContext ctx, int iteration) throws Exception {
+    String sql = """
+                WITH RECURSIVE bfs (depth, node_id) AS (
+                    SELECT
+                        0 AS depth,
+                        %s AS node_id
+                    UNION
 
-    assert ctx.neoSession != null;
-    Result rs = ctx.neoSession.run(cypher, Map.of("startId", candidateIds[iteration], "depth", ctx.config.depth()));
+                    SELECT
+                        bfs.depth + 1,
+                        e.end_id
+                    FROM bfs
+                    JOIN edges e ON e.start_id = bfs.node_id
+                    WHERE bfs.depth < ?
+                )
+
+                SELECT COUNT(*) AS fof_count
+                FROM bfs
+                WHERE depth = ?;
+            """.formatted(ctx.config.dbms().dialect().bigintParam());
+
+    assert ctx.pgConn != null;
+    try (PreparedStatement ps = ctx.pgConn.prepareStatement(sql)) {
+      ps.setLong(1, candidateIds[iteration]);
+      ps.setInt(2, ctx.config.depth());
+      ps.setInt(3, ctx.config.depth());
+      ctx.recorder.mark(Phase.PREPARE);
 
-    while (rs.hasNext()) {
-      rs.next();
+      try (ResultSet rs = ps.executeQuery()) {
+        ctx.recorder.mark(Phase.EXECUTE);
+        ctx.recorder.consumeCount(rs);
+      }
     }
   }
 
-  private long[] genIdsPostgres(Connection conn, int operations) {
-    String sql = "SELECT DISTINCT start_id FROM edges TABLESAMPLE SYSTEM (20)"; // WARN: This will work only for operation count < ~350k, need to make it dynamic
+  // needs `schema postgres adjacency-array`: one row per node holding all its neighbours
+  private void executeAdjacencyArray(BenchmarkContext ctx, int iteration) throws Exception {
+    String sql = """
+                WITH RECURSIVE bfs AS (
+                    SELECT
+                        0 AS depth,
+                        ?::bigint AS node_id
+                    UNION
+
+                    SELECT
+                        bfs.depth + 1,
+                        n.node_id
+                    FROM bfs
+                    JOIN adjacency a ON a.node_id = bfs.node_id
+                    CROSS JOIN LATERAL unnest(a.neighbours) AS n(node_id)
+                    WHERE bfs.depth < ?
+                )
+
+                SELECT COUNT(*) AS fof_count
+                FROM bfs
+                WHERE depth = ?;
+            """;
+
+    assert ctx.pgConn != null;
+    try (PreparedStatement ps = ctx.pgConn.prepareStatement(sql)) {
+      ps.setLong(1, candidateIds[iteration]);
+      ps.setInt(2, ctx.config.depth());
+      ps.setInt(3, ctx.config.depth());
+      ctx.recorder.mark(Phase.PREPARE);
+
+      try (ResultSet rs = ps.executeQuery()) {
+        ctx.recorder.mark(Phase.EXECUTE);
+        ctx.recorder.consumeCount(rs);
+      }
+    }
+  }
+
+  // client-driven bfs: one round trip per level, the frontier is deduplicated on the client
+  private void executeFrontier(BenchmarkContext ctx, int iteration) throws Exception {
+    SqlDialect dialect = ctx.config.dbms().dialect();
+    String sql = "SELECT end_id FROM edges WHERE " + dialect.anyOf("start_id");
+
+    assert ctx.pgConn != null;
+    long[] frontier = {candidateIds[iteration]};
+    try (PreparedStatement ps = ctx.pgConn.prepareStatement(sql)) {
+      for (int level = 0; level < ctx.config.depth() && frontier.length > 0; level++) {
+        dialect.bindIds(ps, 1, frontier);
+        ctx.recorder.mark(Phase.PREPARE);
+
+        try (ResultSet rs = ps.executeQuery()) {
+          ctx.recorder.mark(Phase.EXECUTE);
+
+          long[] next = new long[64];
+          int size = 0;
+          boolean more = rs.next();
+          ctx.recorder.mark(Phase.FIRST_ROW);
+          while (more) {
+            if (size == next.length) {
+              next = Arrays.copyOf(next, size * 2);
+            }
+            next[size++] = rs.getLong(1);
+            more = rs.next();
+          }
+          frontier = distinct(next, size);
+          ctx.recorder.mark(Phase.CONSUME);
+        }
+      }
+    }
+    ctx.recorder.rows(frontier.length);
+  }
+
+  // server-side bfs with the frontier in two per-connection temp tables that swap roles every level
+  private void executeTempTable(BenchmarkContext ctx, int iteration) throws Exception {
+    assert ctx.pgConn != null;
+    Connection conn = ctx.pgConn;
+    if (tempTablesCreated.add(conn)) {
+      try (Statement st = conn.createStatement()) {
+        SqlDialect dialect = ctx.config.dbms().dialect();
+        st.execute(dialect.createTempTable("fof_frontier_0 (node_id BIGINT PRIMARY KEY)"));
+        st.execute(dialect.createTempTable("fof_frontier_1 (node_id BIGINT PRIMARY KEY)"));
+      }
+    }
+
+    try (Statement st = conn.createStatement()) {
+      st.executeUpdate("DELETE FROM fof_frontier_0");
+      st.executeUpdate("INSERT INTO fof_frontier_0 VALUES (" + candidateIds[iteration] + ")");
+      ctx.recorder.mark(Phase.PREPARE);
+
+      int cur = 0;
+      for (int level = 0; level < ctx.config.depth(); level++) {
+        int next = 1 - cur;
+        st.executeUpdate("DELETE FROM fof_frontier_" + next);
+        st.executeUpdate("INSERT INTO fof_frontier_" + next + " "
+            + "SELECT DISTINCT e.end_id FROM fof_frontier_" + cur + " f JOIN edges e ON e.start_id = f.node_id");
+        cur = next;
+      }
+      ctx.recorder.mark(Phase.EXECUTE);
+
+      try (ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM fof_frontier_" + cur)) {
+        ctx.recorder.consumeCount(rs);
+      }
+    }
+  }
+
+  private void executeProcedure(BenchmarkContext ctx, int iteration) throws Exception {
+    String sql = "SELECT fof_count(?, ?) AS fof_count";
+
+    assert ctx.pgConn != null;
+    try (PreparedStatement ps = ctx.pgConn.prepareStatement(sql)) {
+      ps.setLong(1, candidateIds[iteration]);
+      ps.setInt(2, ctx.config.depth());
+      ctx.recorder.mark(Phase.PREPARE);
+
+      try (ResultSet rs = ps.executeQuery()) {
+        ctx.recorder.mark(Phase.EXECUTE);
+        ctx.recorder.consumeCount(rs);
+      }
+    }
+  }
+
+  private void executeCached(BenchmarkContext ctx, int iteration) throws Exception {
+    long[] frontier = {candidateIds[iteration]};
+    for (int level = 0; level < ctx.config.depth() && frontier.length > 0; level++) {
+      long[][] lists = Adjacency.lookup(cache, ctx, frontier);
+
+      int size = 0;
+      for (long[] list : lists) {
+        size += list.length;
+      }
+      long[] next = new long[size];
+      int pos = 0;
+      for (long[] list : lists) {
+        System.arraycopy(list, 0, next, pos, list.length);
+        pos += list.length;
+      }
+      frontier = distinct(next, size);
+    }
+    ctx.recorder.rows(frontier.length);
+  }
+
+  // sorts and removes duplicates, returns a new array of the distinct values
+  private static long[] distinct(long[] values, int size) {
+    Arrays.sort(values, 0, size);
+    int n = 0;
+    for (int i = 0; i < size; i++) {
+      if (n == 0 || values[i] != values[n - 1]) {
+        values[n++] = values[i];
+      }
+    }
+    return Arrays.copyOf(values, n);
+  }
+
+  // var-length and qpp patterns enumerate every trail and count the distinct end nodes.
+  // The two node-global apoc expanders visit each node once, at its bfs level, so they count nodes whose
+  // shortest distance is exactly depth. NODE_LEVEL allows one visit per node and level, which matches the
+  // walk semantics of the postgres strategies
+  private static final String APOC_SUBGRAPH_CYPHER = """
+      MATCH (start:Person {id: $startId})
+      CALL apoc.path.subgraphNodes(start, {relationshipFilter: 'FRIENDS_WITH>', minLevel: $depth, maxLevel: $depth})
+      YIELD node
+      RETURN count(node) AS fof_count;
+      """;
+
+  private static final String APOC_SPANNING_TREE_CYPHER = """
+      MATCH (start:Person {id: $startId})
+      CALL apoc.path.spanningTree(start, {relationshipFilter: 'FRIENDS_WITH>', minLevel: $depth, maxLevel: $depth})
+      YIELD path
+      RETURN count(DISTINCT last(nodes(path))) AS fof_count;
+      """;
+
+  private static final String APOC_NODE_LEVEL_CYPHER = """
+      MATCH (start:Person {id: $startId})
+      CALL apoc.path.expandConfig(start, {
+        relationshipFilter: 'FRIENDS_WITH>', minLevel: $depth, maxLevel: $depth, uniqueness: 'NODE_LEVEL', bfs: true
+      })
+      YIELD path
+      RETURN count(DISTINCT last(nodes(path))) AS fof_count;
+      """;
+
+  // also run by Embedded, so both neo4j paths execute the same query
+  static String varLengthCypher(int depth) {
+    return "MATCH (start:Person {id: $startId})-[:FRIENDS_WITH*" + depth + "]->(fof) " +
+        "RETURN count(DISTINCT fof.id) AS fof_count;";
+  }
+
+  private void executeNeo4j(BenchmarkContext ctx, int iteration, String cypher) throws Exception {
+    assert ctx.neoSession != null;
+
+    Result rs = ctx.neoRun(cypher, Map.of("startId", candidateIds[iteration], "depth", ctx.config.depth()));
+    ctx.recorder.mark(Phase.EXECUTE);
+    ctx.recorder.consumeCount(rs);
+  }
+
+  private long[] genIdsSql(Connection conn, SqlDialect dialect, int operations) {
+    String sql = dialect.sampleIds("start_id", "edges", 20, operations); // WARN: postgres samples 20%, enough for operation count < ~350k
 
     try (Statement st = conn.createStatement();
          ResultSet rs = st.executeQuery(sql)) {
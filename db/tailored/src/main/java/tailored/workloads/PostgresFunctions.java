@@ -0,0 +1,168 @@
+// pl/pgsql functions some postgres strategies call, installed with CREATE OR REPLACE before a run
+
+package tailored.workloads;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+final class PostgresFunctions {
+  private PostgresFunctions() {
+  }
+
+  // bidirectional bfs, always expanding the smaller frontier. Returns the hop count of the shortest
+  // directed path from src to dst, or NULL if there is none within max_depth
+  static final String SP_BIDIRECTIONAL = """
+      CREATE OR REPLACE FUNCTION sp_bidirectional(src BIGINT, dst BIGINT, max_depth INT)
+      RETURNS INT
+      LANGUAGE plpgsql STABLE AS $$
+      DECLARE
+        fwd_frontier BIGINT[] := ARRAY[src];
+        bwd_frontier BIGINT[] := ARRAY[dst];
+        fwd_seen     BIGINT[] := ARRAY[src];
+        bwd_seen     BIGINT[] := ARRAY[dst];
+        fwd_dist     INT[]    := ARRAY[0];
+        bwd_dist     INT[]    := ARRAY[0];
+        fwd_depth    INT := 0;
+        bwd_depth    INT := 0;
+        meet         INT;
+      BEGIN
+        IF src = dst THEN
+          RETURN 0;
+        END IF;
+
+        WHILE fwd_depth + bwd_depth < max_depth LOOP
+          IF cardinality(fwd_frontier) <= cardinality(bwd_frontier) THEN
+            SELECT array_agg(n) INTO fwd_frontier FROM (
+              SELECT e.end_id AS n FROM edges e WHERE e.start_id = ANY(fwd_frontier)
+              EXCEPT
+              SELECT unnest(fwd_seen)
+            ) s;
+            fwd_depth := fwd_depth + 1;
+            IF fwd_frontier IS NULL THEN
+              RETURN NULL;
+            END IF;
+
+            SELECT min(b.d) INTO meet
+            FROM unnest(bwd_seen, bwd_dist) AS b(n, d)
+            JOIN unnest(fwd_frontier) AS f(n) ON f.n = b.n;
+            IF meet IS NOT NULL THEN
+              RETURN fwd_depth + meet;
+            END IF;
+
+            fwd_seen := fwd_seen || fwd_frontier;
+            fwd_dist := fwd_dist || array_fill(fwd_depth, ARRAY[cardinality(fwd_frontier)]);
+          ELSE
+            SELECT array_agg(n) INTO bwd_frontier FROM (
+              SELECT e.start_id AS n FROM edges e WHERE e.end_id = ANY(bwd_frontier)
+              EXCEPT
+              SELECT unnest(bwd_seen)
+            ) s;
+            bwd_depth := bwd_depth + 1;
+            IF bwd_frontier IS NULL THEN
+              RETURN NULL;
+            END IF;
+
+            SELECT min(f.d) INTO meet
+            FROM unnest(fwd_seen, fwd_dist) AS f(n, d)
+            JOIN unnest(bwd_frontier) AS b(n) ON b.n = f.n;
+            IF meet IS NOT NULL THEN
+              RETURN bwd_depth + meet;
+            END IF;
+
+            bwd_seen := bwd_seen || bwd_frontier;
+            bwd_dist := bwd_dist || array_fill(bwd_depth, ARRAY[cardinality(bwd_frontier)]);
+          END IF;
+        END LOOP;
+
+        RETURN NULL;
+      END;
+      $$;
+      """;
+
+  // level-wise walk expansion, each level deduplicated before it is expanded.
+  // Same result as the FOF cte: number of nodes reachable by a walk of exactly depth hops
+  static final String FOF_COUNT = """
+      CREATE OR REPLACE FUNCTION fof_count(start_node BIGINT, depth INT)
+      RETURNS BIGINT
+      LANGUAGE plpgsql STABLE AS $$
+      DECLARE
+        frontier BIGINT[] := ARRAY[start_node];
+      BEGIN
+        FOR i IN 1..depth LOOP
+          SELECT array_agg(DISTINCT e.end_id) INTO frontier
+          FROM edges e
+          WHERE e.start_id = ANY(frontier);
+          IF frontier IS NULL THEN
+            RETURN 0;
+          END IF;
+        END LOOP;
+        RETURN cardinality(frontier);
+      END;
+      $$;
+      """;
+
+  // forward bfs with a visited array, returns as soon as dst shows up in a frontier
+  static final String SP_DIST = """
+      CREATE OR REPLACE FUNCTION sp_dist(src BIGINT, dst BIGINT, max_depth INT)
+      RETURNS INT
+      LANGUAGE plpgsql STABLE AS $$
+      DECLARE
+        frontier BIGINT[] := ARRAY[src];
+        seen     BIGINT[] := ARRAY[src];
+        depth    INT := 0;
+      BEGIN
+        IF src = dst THEN
+          RETURN 0;
+        END IF;
+
+        WHILE depth < max_depth LOOP
+          SELECT array_agg(n) INTO frontier FROM (
+            SELECT e.end_id AS n FROM edges e WHERE e.start_id = ANY(frontier)
+            EXCEPT
+            SELECT unnest(seen)
+          ) s;
+          depth := depth + 1;
+          IF frontier IS NULL THEN
+            RETURN NULL;
+          END IF;
+          IF dst = ANY(frontier) THEN
+            RETURN depth;
+          END IF;
+          seen := seen || frontier;
+        END LOOP;
+
+        RETURN NULL;
+      END;
+      $$;
+      """;
+
+  static final String FILTERED_NEIGHBORS = """
+      CREATE OR REPLACE FUNCTION filtered_neighbors(start_node BIGINT, min_age INT, max_age INT)
+      RETURNS SETOF BIGINT
+      LANGUAGE plpgsql STABLE AS $$
+      BEGIN
+        RETURN QUERY
+          SELECT DISTINCT n.id
+          FROM edges e
+          JOIN nodes n ON n.id = e.end_id
+          WHERE e.start_id = start_node
+            AND n.age > min_age
+            AND n.age < max_age;
+      END;
+      $$;
+      """;
+
+  // everything the procedure strategies call
+  static final String[] PROCEDURES = {FOF_COUNT, SP_DIST, FILTERED_NEIGHBORS};
+
+  static void install(Connection conn, String... ddl) {
+    try (Statement st = conn.createStatement()) {
+      for (String sql : ddl) {
+        st.execute(sql);
+      }
+    } catch (SQLException e) {
+      throw new RuntimeException("Failed to install postgres functions", e);
+    }
+  }
+}
@@ -6,6 +6,8 @@ import org.neo4j.driver.QueryConfig;
 import org.neo4j.driver.Result;
 import tailored.BenchmarkContext;
 import tailored.Dbms;
+import tailored.Phase;
+import tailored.SqlDialect;
 import tailored.Workload;
 
 import java.sql.Connection;
@@ -21,8 +23,8 @@ public class Reciprocal implements Workload {
   private long[] endCandidateIds;
 
   public Reciprocal(BenchmarkContext ctx) throws Exception {
-    if (ctx.config.dbms() == Dbms.POSTGRES) {
-      long[][] pairs = genPairsPostgres(ctx.pgConn, ctx.config.operations());
+    if (ctx.config.dbms().sql()) {
+      long[][] pairs = genPairsSql(ctx.pgConn, ctx.config.dbms().dialect(), ctx.config.operations());
       this.startCandidateIds = pairs[0];
       this.endCandidateIds   = pairs[1];
     } else if (ctx.config.dbms() == Dbms.NEO4J) {
@@ -35,14 +37,25 @@ public class Reciprocal implements Workload {
 
   @Override
   public void executeOnce(BenchmarkContext ctx, int iteration) throws Exception {
-    if (ctx.config.dbms() == Dbms.POSTGRES) {
-      executePostgres(ctx, iteration);
+    if (ctx.config.dbms().sql()) {
+      executeSql(ctx, iteration);
     } else if (ctx.config.dbms() == Dbms.NEO4J) {
       executeNeo4j(ctx, iteration);
     }
   }
 
-  private void executePostgres(BenchmarkContext ctx, int iteration) throws Exception {
+  @Override
+  public long[] nodeIds(int iteration) {
+    return new long[]{startCandidateIds[iteration], endCandidateIds[iteration]};
+  }
+
+  @Override
+  public void useIds(BenchmarkContext ctx, long[] startIds, long[] endIds) {
+    this.startCandidateIds = startIds;
+    this.endCandidateIds = endIds;
+  }
+
+  private void executeSql(BenchmarkContext ctx, int iteration) throws Exception {
     String sql = """
         SELECT
           EXISTS (
@@ -63,32 +76,35 @@ public class Reciprocal implements Workload {
       ps.setLong(3, v);
       ps.setLong(4, u);
 
+      ctx.recorder.mark(Phase.PREPARE);
+
       try (ResultSet rs = ps.executeQuery()) {
-        while (rs.next()) {}
+        ctx.recorder.mark(Phase.EXECUTE);
+        ctx.recorder.consume(rs);
       }
     }
   }
 
-  private void executeNeo4j(BenchmarkContext ctx, int iteration) throws Exception {
-    String cypher = """
-          MATCH (u:Person {id: $startId})-[:FRIENDS_WITH]->(v:Person {id: $endId}),
-                (v)-[:FRIENDS_WITH]->(u)
-          RETURN u.id as startId, v.id as endId
-        """;
+  // also run by Embedded, so both neo4j paths execute the same query
+  static final String CYPHER = """
+        MATCH (u:Person {id: $startId})-[:FRIENDS_WITH]->(v:Person {id: $endId}),
+              (v)-[:FRIENDS_WITH]->(u)
+        RETURN u.id as startId, v.id as endId
+      """;
 
+  private void executeNeo4j(BenchmarkContext ctx, int iteration) throws Exception {
     long u = startCandidateIds[iteration];
     long v = endCandidateIds[iteration];
 
     assert ctx.neoSession != null;
-    Result rs = ctx.neoSession.run(cypher, Map.of("startId", u, "endId", v));
 
-    while (rs.hasNext()) {
-      rs.next();
-    }
+    Result rs = ctx.neoRun(CYPHER, Map.of("startId", u, "endId", v));
+    ctx.recorder.mark(Phase.EXECUTE);
+    ctx.recorder.consume(rs);
   }
 
-  private long[][] genPairsPostgres(Connection conn, int operations) throws Exception {
-    String sql = "SELECT DISTINCT start_id FROM edges TABLESAMPLE SYSTEM (40)"; // WARN: This will work only for operation count < ~300k, need to make it dynamic
+  private long[][] genPairsSql(Connection conn, SqlDialect dialect, int operations) throws Exception {
+    String sql = dialect.sampleIds("start_id", "edges", 40, operations * 2); // WARN: postgres samples 40%, enough for operation count < ~300k
 
     try (Statement st = conn.createStatement();
          ResultSet rs = st.executeQuery(sql)) {
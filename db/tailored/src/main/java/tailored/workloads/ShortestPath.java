@@ -6,6 +6,9 @@ import org.neo4j.driver.QueryConfig;
 import org.neo4j.driver.Result;
 import tailored.BenchmarkContext;
 import tailored.Dbms;
+import tailored.Phase;
+import tailored.SchemaProfile;
+import tailored.SqlDialect;
 import tailored.Workload;
 
 import java.sql.Connection;
@@ -13,16 +16,60 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 public class ShortestPath implements Workload {
+  public enum Strategy {
+    CTE(null),                            // recursive cte expanded to full depth from the start node, any sql dbms
+    BIDIRECTIONAL(Dbms.POSTGRES),         // client-driven bfs from both ends, stops when they meet
+    BIDIRECTIONAL_PLPGSQL(Dbms.POSTGRES), // the same search inside a pl/pgsql function
+    PROCEDURE(Dbms.POSTGRES),             // forward bfs with early exit inside the sp_dist() function
+    SHORTEST_PATH(Dbms.NEO4J);            // cypher shortestPath()
+
+    final Dbms dbms; // null = any sql dbms
+
+    Strategy(Dbms dbms) {
+      this.dbms = dbms;
+    }
+
+    // --sp-strategy=<name>, defaults to the original query of each dbms
+    static Strategy parse(String name, Dbms dbms) {
+      if (name == null) {
+        return dbms.sql() ? CTE : SHORTEST_PATH;
+      }
+
+      Strategy strategy = valueOf(name.toUpperCase().replace('-', '_'));
+      if (strategy.dbms == null ? !dbms.sql() : strategy.dbms != dbms) {
+        throw new IllegalArgumentException("Shortest path strategy " + strategy + " is not available for " + dbms);
+      }
+      return strategy;
+    }
+  }
+
   private long[] startCandidateIds;
   private long[] endCandidateIds;
+  private final Strategy strategy;
 
   public ShortestPath(BenchmarkContext ctx) throws Exception {
-    if (ctx.config.dbms() == Dbms.POSTGRES) {
-      long[][] pairs = genPairsPostgres(ctx.pgConn, ctx.config.operations());
+    this.strategy = Strategy.parse(ctx.config.option("sp-strategy", null), ctx.config.dbms());
+    if (strategy == Strategy.BIDIRECTIONAL || strategy == Strategy.BIDIRECTIONAL_PLPGSQL) {
+      // backward expansion needs edges by end_id, init.sql only indexes start_id. The index belongs to the
+      // reverse schema profile, so every run reports the layout it measured
+      if (!SchemaProfile.includes(ctx.pgConn, SchemaProfile.REVERSE)) {
+        throw new IllegalStateException("Shortest path strategy " + strategy
+            + " needs the reverse edge index, run `schema postgres reverse` (plus any other profiles) first");
+      }
+    }
+    if (strategy == Strategy.BIDIRECTIONAL_PLPGSQL) {
+      PostgresFunctions.install(ctx.pgConn, PostgresFunctions.SP_BIDIRECTIONAL);
+    } else if (strategy == Strategy.PROCEDURE) {
+      PostgresFunctions.install(ctx.pgConn, PostgresFunctions.PROCEDURES);
+    }
+
+    if (ctx.config.dbms().sql()) {
+      long[][] pairs = genPairsSql(ctx.pgConn, ctx.config.dbms().dialect(), ctx.config.operations());
       this.startCandidateIds = pairs[0];
       this.endCandidateIds   = pairs[1];
     } else if (ctx.config.dbms() == Dbms.NEO4J) {
@@ -35,19 +82,37 @@ public class ShortestPath implements Workload {
 
   @Override
   public void executeOnce(BenchmarkContext ctx, int iteration) throws Exception {
-    if (ctx.config.dbms() == Dbms.POSTGRES) {
-      executePostgres(ctx, iteration);
-    } else if (ctx.config.dbms() == Dbms.NEO4J) {
-      executeNeo4j(ctx, iteration);
+    switch (strategy) {
+      case CTE -> executeCte(ctx, iteration);
+      case BIDIRECTIONAL -> executeBidirectional(ctx, iteration);
+      case BIDIRECTIONAL_PLPGSQL -> executeFunction(ctx, iteration, "SELECT sp_bidirectional(?, ?, ?) AS dist");
+      case PROCEDURE -> executeFunction(ctx, iteration, "SELECT sp_dist(?, ?, ?) AS dist");
+      case SHORTEST_PATH -> executeNeo4j(ctx, iteration);
     }
   }
 
-  private void executePostgres(BenchmarkContext ctx, int iteration) throws Exception {
+  @Override
+  public String strategy() {
+    return strategy.name();
+  }
+
+  @Override
+  public long[] nodeIds(int iteration) {
+    return new long[]{startCandidateIds[iteration], endCandidateIds[iteration]};
+  }
+
+  @Override
+  public void useIds(BenchmarkContext ctx, long[] startIds, long[] endIds) {
+    this.startCandidateIds = startIds;
+    this.endCandidateIds = endIds;
+  }
+
+  private void executeCte(BenchmarkContext ctx, int iteration) throws Exception {
     String sql = """
-        WITH RECURSIVE bfs AS (
+        WITH RECURSIVE bfs (depth, node_id) AS (
             SELECT
                 0 AS depth,
-                ? AS node_id
+                %s AS node_id
             UNION ALL
             SELECT
                 bfs.depth + 1,
@@ -59,7 +124,7 @@ public class ShortestPath implements Workload {
         SELECT MIN(depth) AS dist
         FROM bfs
         WHERE node_id = ?;
-        """;
+        """.formatted(ctx.config.dbms().dialect().bigintParam());
 
     assert ctx.pgConn != null;
     try (PreparedStatement ps = ctx.pgConn.prepareStatement(sql)) {
@@ -70,32 +135,123 @@ public class ShortestPath implements Workload {
       ps.setInt(2, ctx.config.depth()); // max depth
       ps.setLong(3, endId);
 
+      ctx.recorder.mark(Phase.PREPARE);
+
       try (ResultSet rs = ps.executeQuery()) {
-        while (rs.next()) {}
+        ctx.recorder.mark(Phase.EXECUTE);
+        ctx.recorder.consume(rs);
       }
     }
   }
 
-  private void executeNeo4j(BenchmarkContext ctx, int iteration) throws Exception {
+  // alternates one bfs level forwards over edges_start_idx or backwards over edges_end_start_idx,
+  // whichever frontier is smaller, and stops at the first level where both searches meet
+  private void executeBidirectional(BenchmarkContext ctx, int iteration) throws Exception {
+    String forwardSql = "SELECT end_id FROM edges WHERE start_id = ANY(?::bigint[])";
+    String backwardSql = "SELECT start_id FROM edges WHERE end_id = ANY(?::bigint[])";
+
+    assert ctx.pgConn != null;
     long startId = startCandidateIds[iteration];
     long endId   = endCandidateIds[iteration];
+    int maxDepth = ctx.config.depth();
 
-    String cypher =
-        "MATCH (u:Person {id: $u}), (v:Person {id: $v}) " +
-            "MATCH p = shortestPath((u)-[:FRIENDS_WITH*.." + ctx.config.depth() + "]->(v)) " +
-            "RETURN length(p) AS dist";
+    Integer dist = null;
+    try (PreparedStatement fwd = ctx.pgConn.prepareStatement(forwardSql);
+         PreparedStatement bwd = ctx.pgConn.prepareStatement(backwardSql)) {
+      Map<Long, Integer> fwdSeen = new HashMap<>(Map.of(startId, 0));
+      Map<Long, Integer> bwdSeen = new HashMap<>(Map.of(endId, 0));
+      long[] fwdFrontier = {startId};
+      long[] bwdFrontier = {endId};
+      int fwdDepth = 0;
+      int bwdDepth = 0;
 
-    assert ctx.neoSession != null;
-    Result rs = ctx.neoSession.run(cypher, Map.of("u", startId, "v", endId));
+      if (startId == endId) {
+        dist = 0;
+      }
+
+      while (dist == null && fwdDepth + bwdDepth < maxDepth) {
+        boolean forward = fwdFrontier.length <= bwdFrontier.length;
+        PreparedStatement ps = forward ? fwd : bwd;
+        Map<Long, Integer> seen = forward ? fwdSeen : bwdSeen;
+        Map<Long, Integer> other = forward ? bwdSeen : fwdSeen;
+        int level = (forward ? ++fwdDepth : ++bwdDepth);
+
+        ps.setObject(1, forward ? fwdFrontier : bwdFrontier);
+        ctx.recorder.mark(Phase.PREPARE);
+
+        List<Long> next = new ArrayList<>();
+        try (ResultSet rs = ps.executeQuery()) {
+          ctx.recorder.mark(Phase.EXECUTE);
+          boolean more = rs.next();
+          ctx.recorder.mark(Phase.FIRST_ROW);
+          while (more) {
+            long node = rs.getLong(1);
+            if (seen.putIfAbsent(node, level) == null) {
+              next.add(node);
+              Integer otherDist = other.get(node);
+              if (otherDist != null && (dist == null || level + otherDist < dist)) {
+                dist = level + otherDist;
+              }
+            }
+            more = rs.next();
+          }
+          ctx.recorder.mark(Phase.CONSUME);
+        }
+
+        if (next.isEmpty()) {
+          break; // one side ran out of nodes, dst isn't reachable
+        }
+        long[] frontier = next.stream().mapToLong(Long::longValue).toArray();
+        if (forward) {
+          fwdFrontier = frontier;
+        } else {
+          bwdFrontier = frontier;
+        }
+      }
+    }
+    ctx.recorder.rows(dist == null ? 0 : 1);
+  }
+
+  // sql calls a function taking (src, dst, max_depth) and returning the distance or NULL
+  private void executeFunction(BenchmarkContext ctx, int iteration, String sql) throws Exception {
+    assert ctx.pgConn != null;
+    try (PreparedStatement ps = ctx.pgConn.prepareStatement(sql)) {
+      ps.setLong(1, startCandidateIds[iteration]);
+      ps.setLong(2, endCandidateIds[iteration]);
+      ps.setInt(3, ctx.config.depth());
+      ctx.recorder.mark(Phase.PREPARE);
 
-    while (rs.hasNext()) {
-      rs.next();
+      try (ResultSet rs = ps.executeQuery()) {
+        ctx.recorder.mark(Phase.EXECUTE);
+        rs.next();
+        rs.getInt(1);
+        ctx.recorder.mark(Phase.FIRST_ROW);
+        ctx.recorder.rows(rs.wasNull() ? 0 : 1);
+        ctx.recorder.mark(Phase.CONSUME);
+      }
     }
   }
 
+  private void executeNeo4j(BenchmarkContext ctx, int iteration) throws Exception {
+    long startId = startCandidateIds[iteration];
+    long endId   = endCandidateIds[iteration];
+
+    assert ctx.neoSession != null;
+
+    Result rs = ctx.neoRun(cypher(ctx.config.depth()), Map.of("u", startId, "v", endId));
+    ctx.recorder.mark(Phase.EXECUTE);
+    ctx.recorder.consume(rs);
+  }
+
+  // also run by Embedded, so both neo4j paths execute the same query
+  static String cypher(int depth) {
+    return "MATCH (u:Person {id: $u}), (v:Person {id: $v}) " +
+        "MATCH p = shortestPath((u)-[:FRIENDS_WITH*.." + depth + "]->(v)) " +
+        "RETURN length(p) AS dist";
+  }
 
-  private long[][] genPairsPostgres(Connection conn, int operations) throws Exception {
-    String sql = "SELECT DISTINCT start_id FROM edges TABLESAMPLE SYSTEM (40)"; // WARN: This will work only for operation count < ~350k, need to make it dynamic
+  private long[][] genPairsSql(Connection conn, SqlDialect dialect, int operations) throws Exception {
+    String sql = dialect.sampleIds("start_id", "edges", 40, operations * 2); // WARN: postgres samples 40%, enough for operation count < ~350k
 
     try (Statement st = conn.createStatement();
          ResultSet rs = st.executeQuery(sql)) {